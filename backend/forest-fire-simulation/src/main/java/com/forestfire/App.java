@@ -1,8 +1,20 @@
 package com.forestfire;
 
+import com.forestfire.config.SimulationConfig;
+import com.forestfire.controller.ComparisonRunner;
+import com.forestfire.controller.EnsembleRunner;
+import com.forestfire.controller.HeadlessRunner;
+import com.forestfire.controller.ThresholdRunner;
+import com.forestfire.distributed.DistributedSimulationService;
+import com.forestfire.distributed.EnsembleWorker;
+import com.forestfire.distributed.SubdomainWorker;
+import com.forestfire.ensemble.StoppingRule;
 import com.forestfire.gui.ForestFireGUI;
 
 import javax.swing.*;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Modified App class that provides options to run either the command-line or GUI version.
@@ -19,6 +31,34 @@ public class App {
     public static void main(String[] args) {
         // Check if GUI mode is specified
         boolean guiMode = false;
+        boolean headless = false;
+        int steps = -1;
+        int summaryInterval = 0;
+        boolean jsonReport = false;
+        String exportPath = null;
+        String until = null;
+        boolean clusterReport = false;
+        int workerPort = -1;
+        String bindAddress = null;
+        String workers = null;
+        String blocks = null;
+        long seed = System.nanoTime();
+        int ensembleWorkerPort = -1;
+        int replicas = 0;
+        int batchSize = 64;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String replicasPath = null;
+        String burnMapPath = null;
+        double[] quantiles = new double[0];
+        int bins = 32;
+        int binWidth = 0;
+        String thresholdSizes = null;
+        String probabilityRange = "0,1";
+        double tolerance = 0.002;
+        int maxReplicas = 0;
+        String ciWidths = null;
+        int minReplicas = 30;
+        String comparePath = null;
         String configPath = "config/simulation.properties";
         
         // Parse command line arguments
@@ -28,11 +68,96 @@ public class App {
             } else if (args[i].equals("--config") && i + 1 < args.length) {
                 configPath = args[i + 1];
                 i++; // Skip the next argument
+            } else if (args[i].equals("--headless")) {
+                headless = true;
+            } else if (args[i].equals("--steps") && i + 1 < args.length) {
+                steps = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--summary-every") && i + 1 < args.length) {
+                summaryInterval = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--report") && i + 1 < args.length) {
+                jsonReport = args[++i].equalsIgnoreCase("json");
+            } else if (args[i].equals("--export") && i + 1 < args.length) {
+                exportPath = args[++i];
+            } else if (args[i].equals("--until") && i + 1 < args.length) {
+                until = args[++i];
+            } else if (args[i].equals("--clusters")) {
+                clusterReport = true;
+            } else if (args[i].equals("--worker") && i + 1 < args.length) {
+                workerPort = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--bind") && i + 1 < args.length) {
+                bindAddress = args[++i];
+            } else if (args[i].equals("--workers") && i + 1 < args.length) {
+                workers = args[++i];
+            } else if (args[i].equals("--blocks") && i + 1 < args.length) {
+                blocks = args[++i];
+            } else if (args[i].equals("--seed") && i + 1 < args.length) {
+                seed = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--ensemble-worker") && i + 1 < args.length) {
+                ensembleWorkerPort = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--ensemble") && i + 1 < args.length) {
+                replicas = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--batch-size") && i + 1 < args.length) {
+                batchSize = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--replicas") && i + 1 < args.length) {
+                replicasPath = args[++i];
+            } else if (args[i].equals("--burn-map") && i + 1 < args.length) {
+                burnMapPath = args[++i];
+            } else if (args[i].equals("--quantiles") && i + 1 < args.length) {
+                quantiles = parseQuantiles(args[++i]);
+            } else if (args[i].equals("--bins") && i + 1 < args.length) {
+                bins = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--bin-width") && i + 1 < args.length) {
+                binWidth = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--threshold") && i + 1 < args.length) {
+                thresholdSizes = args[++i];
+            } else if (args[i].equals("--p-range") && i + 1 < args.length) {
+                probabilityRange = args[++i];
+            } else if (args[i].equals("--tolerance") && i + 1 < args.length) {
+                tolerance = Double.parseDouble(args[++i]);
+            } else if (args[i].equals("--max-replicas") && i + 1 < args.length) {
+                maxReplicas = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--ci-width") && i + 1 < args.length) {
+                ciWidths = args[++i];
+            } else if (args[i].equals("--min-replicas") && i + 1 < args.length) {
+                minReplicas = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--compare") && i + 1 < args.length) {
+                comparePath = args[++i];
             }
         }
         
         // Run in appropriate mode
-        if (guiMode) {
+        if (workerPort >= 0) {
+            // Serve one block of distributed simulations until the process is stopped
+            runWorker(bindAddress, workerPort);
+        } else if (ensembleWorkerPort >= 0) {
+            // Serve ensemble batches until the process is stopped
+            runEnsembleWorker(bindAddress, ensembleWorkerPort, threads);
+        } else if (thresholdSizes != null) {
+            // Search for the critical probability and exit with a non-zero status on failure
+            if (!runThreshold(configPath, thresholdSizes, probabilityRange, tolerance, replicas, maxReplicas,
+                    threads, seed, jsonReport)) {
+                System.exit(1);
+            }
+        } else if (comparePath != null) {
+            // Compare two scenarios with paired replicas and exit with a non-zero status on failure
+            if (!runComparison(configPath, comparePath, replicas, seed, steps, threads, jsonReport)) {
+                System.exit(1);
+            }
+        } else if (replicas > 0) {
+            // Run a Monte Carlo ensemble and exit with a non-zero status on failure
+            if (!runEnsemble(configPath, replicas, seed, steps, workers, batchSize, threads, replicasPath, jsonReport,
+                    burnMapPath, quantiles, bins, binWidth, ciWidths, minReplicas)) {
+                System.exit(1);
+            }
+        } else if (headless) {
+            // Run without prompting and exit with a non-zero status on failure
+            if (!runHeadless(configPath, steps, summaryInterval, jsonReport, exportPath, workers, blocks, seed,
+                    until, clusterReport)) {
+                System.exit(1);
+            }
+        } else if (guiMode) {
             // Run in GUI mode
             runGUI(configPath);
         } else {
@@ -68,6 +193,253 @@ public class App {
         });
     }
     
+    /**
+     * Runs the simulation without user interaction and prints a timing report.
+     * 
+     * @param configPath Path to the configuration file
+     * @param steps The maximum number of steps, or -1 to run until no cell is burning
+     * @param summaryInterval Print a progress summary every this many steps, or 0 for none
+     * @param jsonReport true for a JSON report, false for plain text
+     * @param exportPath File to export the final grid to, or null for none
+     * @param workers Comma-separated host:port list of workers to distribute the run over, or null to run locally
+     * @param blocks The block layout as ROWSxCOLS, or null for one row of blocks per worker
+     * @param seed The seed for the random draws of the workers
+     * @param until Comma-separated conditions to stop at, e.g. "spanning" or "edge=top,burned=25%", or null
+     * @param clusterReport true to report the burned clusters of the final grid
+     * @return true if the run succeeded
+     */
+    private static boolean runHeadless(String configPath, int steps, int summaryInterval, boolean jsonReport,
+                                       String exportPath, String workers, String blocks, long seed,
+                                       String until, boolean clusterReport) {
+        try {
+            HeadlessRunner runner;
+            if (workers == null) {
+                runner = new HeadlessRunner(configPath);
+            } else {
+                List<InetSocketAddress> addresses = parseAddresses(workers);
+                int blockRows = addresses.size();
+                int blockCols = 1;
+                if (blocks != null) {
+                    String[] parts = blocks.toLowerCase().split("x");
+                    if (parts.length != 2) {
+                        throw new IllegalArgumentException("Block layout must be ROWSxCOLS: " + blocks);
+                    }
+                    blockRows = Integer.parseInt(parts[0].trim());
+                    blockCols = Integer.parseInt(parts[1].trim());
+                }
+                runner = new HeadlessRunner(new DistributedSimulationService(
+                    new SimulationConfig(configPath), addresses, blockRows, blockCols, seed));
+            }
+            runner.setUntil(until);
+            runner.setClusterReport(clusterReport);
+            runner.run(steps, summaryInterval, jsonReport);
+            if (exportPath != null) {
+                runner.export(exportPath);
+            }
+            runner.close();
+            return true;
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Runs a Monte Carlo ensemble and prints its statistics.
+     * 
+     * @param configPath Path to the configuration file
+     * @param replicas The number of replicas
+     * @param seed The seed of the ensemble
+     * @param steps The step limit of each replica, or -1 to run until no cell is burning
+     * @param workers Comma-separated host:port list of ensemble workers, or null to run in this JVM
+     * @param batchSize The number of replicas per batch sent to a worker, or per stopping-rule round in this JVM
+     * @param threads The number of replicas run at once in this JVM
+     * @param replicasPath File to write one JSON line per replica to, or null for none
+     * @param jsonReport true for a JSON report, false for plain text
+     * @param burnMapPath File to write the burn probability map to, or null for none
+     * @param quantiles The ignition-step quantiles of the burn map
+     * @param bins The number of ignition-step histogram bins per cell
+     * @param binWidth The number of steps per bin, or 0 to choose it from the step limit or forest size
+     * @param ciWidths Target 95% interval widths as METRIC=WIDTH pairs to stop at, or null to run every replica
+     * @param minReplicas The fewest replicas the stopping rule may stop at
+     * @return true if the run succeeded
+     */
+    private static boolean runEnsemble(String configPath, int replicas, long seed, int steps, String workers,
+                                       int batchSize, int threads, String replicasPath, boolean jsonReport,
+                                       String burnMapPath, double[] quantiles, int bins, int binWidth,
+                                       String ciWidths, int minReplicas) {
+        try {
+            EnsembleRunner runner = new EnsembleRunner(configPath);
+            runner.setThreads(threads);
+            runner.setBatchSize(batchSize);
+            if (burnMapPath != null) {
+                runner.setBurnMap(burnMapPath, quantiles, bins, binWidth);
+            }
+            if (ciWidths != null) {
+                StoppingRule stoppingRule = StoppingRule.parse(ciWidths);
+                stoppingRule.setMinReplicas(minReplicas);
+                runner.setStoppingRule(stoppingRule);
+            }
+            if (workers != null) {
+                runner.setWorkers(parseAddresses(workers), batchSize);
+            }
+            runner.run(replicas, seed, steps, replicasPath, jsonReport);
+            return true;
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Searches for the critical propagation probability over a series of grid sizes.
+     * 
+     * @param configPath Path to the configuration file
+     * @param sizes Comma-separated grid sizes, each N for a square or HxW
+     * @param range The probability range as LOW,HIGH
+     * @param tolerance The bracket width at which bisection stops
+     * @param replicas The replicas of the first batch of each probability, or 0 for 100
+     * @param maxReplicas The most replicas per probability, or 0 for 16 times the first batch
+     * @param threads The number of replicas run at once
+     * @param seed The seed of the replicas
+     * @param jsonReport true for JSON lines, false for plain text
+     * @return true if the search succeeded
+     */
+    private static boolean runThreshold(String configPath, String sizes, String range, double tolerance,
+                                        int replicas, int maxReplicas, int threads, long seed, boolean jsonReport) {
+        try {
+            String[] bounds = range.split(",");
+            if (bounds.length != 2) {
+                throw new IllegalArgumentException("Probability range must be LOW,HIGH: " + range);
+            }
+            int initial = replicas > 0 ? replicas : 100;
+            ThresholdRunner runner = new ThresholdRunner(configPath, threads);
+            runner.setReplicas(initial, maxReplicas > 0 ? maxReplicas : 16 * initial);
+            runner.setTolerance(tolerance);
+            runner.run(parseSizes(sizes), Double.parseDouble(bounds[0].trim()), Double.parseDouble(bounds[1].trim()),
+                seed, jsonReport);
+            return true;
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Compares a variant scenario with the baseline configuration over paired replicas that share their random draws.
+     * 
+     * @param configPath Path to the configuration file of the baseline
+     * @param comparePath Path to the configuration file of the variant
+     * @param pairs The number of replica pairs, or 0 for 1000
+     * @param seed The seed shared by both scenarios
+     * @param steps The step limit of each replica, or -1 to run until no cell is burning
+     * @param threads The number of replicas run at once
+     * @param jsonReport true for a JSON report, false for plain text
+     * @return true if the comparison succeeded
+     */
+    private static boolean runComparison(String configPath, String comparePath, int pairs, long seed, int steps,
+                                         int threads, boolean jsonReport) {
+        try {
+            new ComparisonRunner(configPath, comparePath, threads).run(pairs > 0 ? pairs : 1000, seed, steps, jsonReport);
+            return true;
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Parses a comma-separated list of grid sizes.
+     * 
+     * @param sizes The sizes as 64,128x256,...: N for an N x N grid, HxW otherwise
+     * @return The sizes as {height, width} pairs
+     * @throws IllegalArgumentException If a size is malformed
+     */
+    private static int[][] parseSizes(String sizes) throws IllegalArgumentException {
+        String[] parts = sizes.split(",");
+        int[][] values = new int[parts.length][];
+        for (int i = 0; i < parts.length; i++) {
+            String[] dimensions = parts[i].trim().toLowerCase().split("x");
+            if (dimensions.length > 2) {
+                throw new IllegalArgumentException("Grid size must be N or HxW: " + parts[i]);
+            }
+            int height = Integer.parseInt(dimensions[0].trim());
+            int width = dimensions.length == 2 ? Integer.parseInt(dimensions[1].trim()) : height;
+            values[i] = new int[] {height, width};
+        }
+        return values;
+    }
+    
+    /**
+     * Parses a comma-separated list of quantiles.
+     * 
+     * @param quantiles The quantiles as 0.1,0.5,0.9
+     * @return The parsed quantiles
+     * @throws NumberFormatException If a quantile is not a number
+     */
+    private static double[] parseQuantiles(String quantiles) throws NumberFormatException {
+        String[] parts = quantiles.split(",");
+        double[] values = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Double.parseDouble(parts[i].trim());
+        }
+        return values;
+    }
+    
+    /**
+     * Parses a comma-separated list of worker addresses.
+     * 
+     * @param workers The addresses as host:port,host:port,...
+     * @return The parsed addresses
+     * @throws IllegalArgumentException If an address has no port
+     */
+    private static List<InetSocketAddress> parseAddresses(String workers) throws IllegalArgumentException {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (String worker : workers.split(",")) {
+            int colon = worker.lastIndexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("Worker address must be host:port: " + worker);
+            }
+            addresses.add(new InetSocketAddress(worker.substring(0, colon).trim(),
+                Integer.parseInt(worker.substring(colon + 1).trim())));
+        }
+        return addresses;
+    }
+    
+    /**
+     * Runs a worker for distributed ensembles.
+     * 
+     * @param bindAddress The address to listen on, or null for loopback only
+     * @param port The port to listen on for coordinators
+     * @param threads The number of replicas to run at once
+     */
+    private static void runEnsembleWorker(String bindAddress, int port, int threads) {
+        try {
+            System.err.println("Ensemble worker listening on " + (bindAddress == null ? "loopback" : bindAddress)
+                + " port " + port);
+            new EnsembleWorker(bindAddress, port, threads).serve();
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * Runs a worker for distributed simulations.
+     * 
+     * @param bindAddress The address to listen on, or null for loopback only
+     * @param port The port to listen on for the coordinator and peer workers
+     */
+    private static void runWorker(String bindAddress, int port) {
+        try {
+            System.err.println("Worker listening on " + (bindAddress == null ? "loopback" : bindAddress) + " port " + port);
+            new SubdomainWorker(bindAddress, port).serve();
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+    
     /**
      * Runs the application in command-line mode.
      * 
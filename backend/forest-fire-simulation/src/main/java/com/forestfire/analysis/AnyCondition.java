@@ -0,0 +1,81 @@
+package com.forestfire.analysis;
+
+import com.forestfire.model.Forest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds as soon as any of its conditions holds. Every condition is updated after each step,
+ * even once another holds, so that all of them stay in step with the forest.
+ */
+public class AnyCondition implements StopCondition {
+    
+    private final StopCondition[] conditions;
+    private final boolean[] met;
+    
+    /**
+     * Creates a condition that holds when any of the given ones does.
+     * 
+     * @param conditions The conditions
+     * @throws IllegalArgumentException If there is no condition
+     */
+    public AnyCondition(List<StopCondition> conditions) throws IllegalArgumentException {
+        if (conditions.isEmpty()) {
+            throw new IllegalArgumentException("At least one stop condition is needed");
+        }
+        this.conditions = conditions.toArray(new StopCondition[0]);
+        this.met = new boolean[this.conditions.length];
+    }
+    
+    @Override
+    public boolean start(Forest forest) {
+        boolean any = false;
+        for (int k = 0; k < conditions.length; k++) {
+            met[k] = conditions[k].start(forest);
+            any |= met[k];
+        }
+        return any;
+    }
+    
+    @Override
+    public boolean update(Forest forest) {
+        boolean any = false;
+        for (int k = 0; k < conditions.length; k++) {
+            met[k] = conditions[k].update(forest);
+            any |= met[k];
+        }
+        return any;
+    }
+    
+    @Override
+    public boolean rewind(Forest forest) {
+        boolean any = false;
+        for (int k = 0; k < conditions.length; k++) {
+            met[k] = conditions[k].rewind(forest);
+            any |= met[k];
+        }
+        return any;
+    }
+    
+    /**
+     * Gets the names of the conditions that held at the last evaluation.
+     * 
+     * @return The names, or those of every condition if none held
+     */
+    @Override
+    public String getName() {
+        List<String> names = new ArrayList<>();
+        for (int k = 0; k < conditions.length; k++) {
+            if (met[k]) {
+                names.add(conditions[k].getName());
+            }
+        }
+        if (names.isEmpty()) {
+            for (StopCondition condition : conditions) {
+                names.add(condition.getName());
+            }
+        }
+        return String.join(",", names);
+    }
+}
@@ -0,0 +1,49 @@
+package com.forestfire.analysis;
+
+import com.forestfire.model.Forest;
+
+/**
+ * Holds once the cells on fire or burned out number at least a limit. The forest keeps both
+ * counts, so the check costs nothing per cell. In the regrowth mode cells that grow back no
+ * longer count as burned.
+ */
+public class BurnedAreaLimit implements StopCondition {
+    
+    private final long cells;
+    private final String name;
+    
+    /**
+     * Creates a burned area limit.
+     * 
+     * @param cells The number of burning or burned cells at which the condition holds
+     * @param value The limit as it was written, e.g. "5000" or "25%"
+     * @throws IllegalArgumentException If the limit is not positive
+     */
+    public BurnedAreaLimit(long cells, String value) throws IllegalArgumentException {
+        if (cells <= 0) {
+            throw new IllegalArgumentException("Burned area limit must be positive");
+        }
+        this.cells = cells;
+        this.name = "burned=" + value;
+    }
+    
+    @Override
+    public boolean start(Forest forest) {
+        return (long) forest.getFireCount() + forest.getAshCount() >= cells;
+    }
+    
+    @Override
+    public boolean update(Forest forest) {
+        return start(forest);
+    }
+    
+    @Override
+    public boolean rewind(Forest forest) {
+        return start(forest);
+    }
+    
+    @Override
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,325 @@
+package com.forestfire.analysis;
+
+import com.forestfire.model.Forest;
+import com.forestfire.model.Neighbourhood;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Labels the burned clusters of a forest with the Hoshen-Kopelman algorithm: one raster pass
+ * that joins each burned cell to its burned neighbours above and to the left in a union-find
+ * forest held in a primitive array, the label of a cell being the index of its root.
+ * 
+ * The grid is split into horizontal stripes labelled in parallel. A stripe only links cells
+ * inside itself, so the threads never touch each other's entries; a merge pass then joins the
+ * cells on either side of each stripe boundary. The label and size arrays are kept between
+ * calls, so analysing a series of same-sized forests allocates nothing per call beyond the report.
+ * 
+ * Instances are not thread-safe.
+ */
+public class ClusterAnalyzer {
+    
+    /** Stripes thinner than this cost more in merging than they save in parallel labelling. */
+    private static final int MIN_STRIPE_ROWS = 32;
+    
+    private static final byte TOP = 1;
+    private static final byte BOTTOM = 2;
+    private static final byte LEFT = 4;
+    private static final byte RIGHT = 8;
+    
+    private final boolean diagonal;
+    private final int stripes;
+    private int[] parent = new int[0];
+    private int[] sizes = new int[0];
+    private byte[] edges = new byte[0];
+    
+    /**
+     * Creates an analyzer.
+     * 
+     * @param neighbourhood The connectivity of clusters: von Neumann joins edge neighbours only,
+     *                      Moore joins diagonal neighbours as well
+     * @param stripes The maximum number of stripes labelled in parallel
+     * @throws IllegalArgumentException If the stripe count is not positive
+     */
+    public ClusterAnalyzer(Neighbourhood neighbourhood, int stripes) throws IllegalArgumentException {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("Stripe count must be positive");
+        }
+        this.diagonal = neighbourhood == Neighbourhood.MOORE;
+        this.stripes = stripes;
+    }
+    
+    /**
+     * Labels the cells of a forest that are on fire or burned out and reports their clusters.
+     * The forest must not change during the call; analyse a fork of a running forest.
+     * 
+     * @param forest The forest to analyse
+     * @return The cluster report
+     */
+    public ClusterReport analyze(Forest forest) {
+        int height = forest.getHeight();
+        int width = forest.getWidth();
+        int cells = height * width;
+        if (parent.length != cells) {
+            parent = new int[cells];
+            sizes = new int[cells];
+            edges = new byte[cells];
+        }
+        
+        int stripeCount = Math.max(1, Math.min(stripes, height / MIN_STRIPE_ROWS));
+        int[] bounds = new int[stripeCount + 1];
+        for (int s = 0; s <= stripeCount; s++) {
+            bounds[s] = (int) ((long) height * s / stripeCount);
+        }
+        if (stripeCount == 1) {
+            labelStripe(forest, 0, height);
+            flatten(0, cells);
+        } else {
+            IntStream.range(0, stripeCount).parallel().forEach(s -> labelStripe(forest, bounds[s], bounds[s + 1]));
+            for (int s = 1; s < stripeCount; s++) {
+                mergeBoundary(bounds[s], width);
+            }
+            // Point every cell straight at its root; each stripe only writes its own entries
+            IntStream.range(0, stripeCount).parallel().forEach(s -> flatten(bounds[s] * width, bounds[s + 1] * width));
+        }
+        
+        return report(height, width);
+    }
+    
+    /**
+     * Labels the rows of one stripe, linking cells only to neighbours inside the stripe.
+     * 
+     * @param forest The forest to read the states from
+     * @param firstRow The first row of the stripe
+     * @param endRow The row after the last row of the stripe
+     */
+    private void labelStripe(Forest forest, int firstRow, int endRow) {
+        int width = forest.getWidth();
+        byte[] row = new byte[width];
+        for (int r = firstRow; r < endRow; r++) {
+            forest.copyBurnRow(r, row);
+            int offset = r * width;
+            boolean hasUp = r > firstRow;
+            for (int c = 0; c < width; c++) {
+                int index = offset + c;
+                byte state = row[c];
+                if (state != Forest.FIRE && state != Forest.ASH) {
+                    parent[index] = -1;
+                    continue;
+                }
+                parent[index] = index;
+                if (c > 0 && parent[index - 1] >= 0) {
+                    union(index, index - 1);
+                }
+                if (hasUp) {
+                    linkUp(index, c, width);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Joins the first row of a stripe to the last row of the stripe above.
+     * 
+     * @param row The first row of the lower stripe
+     * @param width The width of the forest
+     */
+    private void mergeBoundary(int row, int width) {
+        int offset = row * width;
+        for (int c = 0; c < width; c++) {
+            if (parent[offset + c] >= 0) {
+                linkUp(offset + c, c, width);
+            }
+        }
+    }
+    
+    /**
+     * Joins a burned cell to its burned neighbours in the row above.
+     * 
+     * @param index The row-major index of the cell, not in the first row
+     * @param col The column of the cell
+     * @param width The width of the forest
+     */
+    private void linkUp(int index, int col, int width) {
+        int up = index - width;
+        if (parent[up] >= 0) {
+            union(index, up);
+        }
+        if (diagonal) {
+            if (col > 0 && parent[up - 1] >= 0) {
+                union(index, up - 1);
+            }
+            if (col < width - 1 && parent[up + 1] >= 0) {
+                union(index, up + 1);
+            }
+        }
+    }
+    
+    /**
+     * Finds the root of a cell's cluster, halving the path on the way.
+     * 
+     * @param index The row-major index of a burned cell
+     * @return The index of the root
+     */
+    private int find(int index) {
+        while (parent[index] != index) {
+            parent[index] = parent[parent[index]];
+            index = parent[index];
+        }
+        return index;
+    }
+    
+    /**
+     * Joins the clusters of two cells, keeping the lower root index as the label.
+     * 
+     * @param a The row-major index of a burned cell
+     * @param b The row-major index of another burned cell
+     */
+    private void union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA < rootB) {
+            parent[rootB] = rootA;
+        } else if (rootB < rootA) {
+            parent[rootA] = rootB;
+        }
+    }
+    
+    /**
+     * Points each burned cell of a range straight at its root, without writing outside the range.
+     * Reading entries of other ranges while their own threads rewrite them is safe: an entry
+     * only ever changes from one ancestor of its cell to another, and roots no longer change.
+     * 
+     * @param from The first row-major index
+     * @param to The index after the last
+     */
+    private void flatten(int from, int to) {
+        for (int index = from; index < to; index++) {
+            int root = parent[index];
+            if (root < 0) {
+                continue;
+            }
+            while (parent[root] != root) {
+                root = parent[root];
+            }
+            parent[index] = root;
+        }
+    }
+    
+    /**
+     * Builds the report from the flattened labels.
+     * 
+     * @param height The height of the forest
+     * @param width The width of the forest
+     * @return The cluster report
+     */
+    private ClusterReport report(int height, int width) {
+        int cells = height * width;
+        Arrays.fill(sizes, 0, cells, 0);
+        int burned = 0;
+        int clusterCount = 0;
+        for (int index = 0; index < cells; index++) {
+            int root = parent[index];
+            if (root >= 0) {
+                if (sizes[root]++ == 0) {
+                    clusterCount++;
+                }
+                burned++;
+            }
+        }
+        
+        // Spanning only depends on the roots of the border cells
+        for (int c = 0; c < width; c++) {
+            markEdge(c, TOP);
+            markEdge((height - 1) * width + c, BOTTOM);
+        }
+        for (int r = 0; r < height; r++) {
+            markEdge(r * width, LEFT);
+            markEdge(r * width + width - 1, RIGHT);
+        }
+        boolean vertical = false;
+        boolean horizontal = false;
+        for (int c = 0; c < width; c++) {
+            int root = parent[c];
+            if (root >= 0) {
+                vertical |= (edges[root] & (TOP | BOTTOM)) == (TOP | BOTTOM);
+            }
+        }
+        for (int r = 0; r < height; r++) {
+            int root = parent[r * width];
+            if (root >= 0) {
+                horizontal |= (edges[root] & (LEFT | RIGHT)) == (LEFT | RIGHT);
+            }
+        }
+        for (int c = 0; c < width; c++) {
+            clearEdge(c);
+            clearEdge((height - 1) * width + c);
+        }
+        for (int r = 0; r < height; r++) {
+            clearEdge(r * width);
+            clearEdge(r * width + width - 1);
+        }
+        
+        int[] clusterSizes = new int[clusterCount];
+        int largestSize = 0;
+        int largestCell = -1;
+        int k = 0;
+        for (int index = 0; index < cells && k < clusterCount; index++) {
+            if (parent[index] == index) {
+                int size = sizes[index];
+                clusterSizes[k++] = size;
+                if (size > largestSize) {
+                    largestSize = size;
+                    largestCell = index;
+                }
+            }
+        }
+        Arrays.sort(clusterSizes);
+        
+        // Run-length encode the sorted sizes into the distribution
+        int distinct = 0;
+        for (int i = 0; i < clusterSizes.length; i++) {
+            if (i == 0 || clusterSizes[i] != clusterSizes[i - 1]) {
+                distinct++;
+            }
+        }
+        int[] distributionSizes = new int[distinct];
+        int[] distributionCounts = new int[distinct];
+        int d = -1;
+        for (int i = 0; i < clusterSizes.length; i++) {
+            if (i == 0 || clusterSizes[i] != clusterSizes[i - 1]) {
+                distributionSizes[++d] = clusterSizes[i];
+            }
+            distributionCounts[d]++;
+        }
+        
+        return new ClusterReport(burned, clusterCount, largestSize, largestCell, vertical, horizontal,
+            distributionSizes, distributionCounts);
+    }
+    
+    /**
+     * Records that the cluster of a cell touches an edge of the grid.
+     * 
+     * @param index The row-major index of a border cell
+     * @param edge The edge flag
+     */
+    private void markEdge(int index, byte edge) {
+        int root = parent[index];
+        if (root >= 0) {
+            edges[root] |= edge;
+        }
+    }
+    
+    /**
+     * Clears the edge flags of the cluster of a cell, ready for the next call.
+     * 
+     * @param index The row-major index of a border cell
+     */
+    private void clearEdge(int index) {
+        int root = parent[index];
+        if (root >= 0) {
+            edges[root] = 0;
+        }
+    }
+}
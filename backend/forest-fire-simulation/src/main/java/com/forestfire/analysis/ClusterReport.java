@@ -0,0 +1,145 @@
+package com.forestfire.analysis;
+
+import java.util.Locale;
+
+/**
+ * The burned clusters of a forest: connected groups of cells that are on fire or burned out.
+ * The size distribution is held as two parallel arrays, sizes in ascending order and the
+ * number of clusters of each size.
+ */
+public class ClusterReport {
+    
+    private final int burnedCells;
+    private final int clusterCount;
+    private final int largestSize;
+    private final int largestCell;
+    private final boolean spansVertically;
+    private final boolean spansHorizontally;
+    private final int[] sizes;
+    private final int[] counts;
+    
+    /**
+     * Creates a report.
+     * 
+     * @param burnedCells The number of cells on fire or burned out
+     * @param clusterCount The number of clusters
+     * @param largestSize The number of cells in the largest cluster, 0 if there is none
+     * @param largestCell The row-major index of a cell of the largest cluster, -1 if there is none
+     * @param spansVertically Whether a cluster touches both the top and the bottom row
+     * @param spansHorizontally Whether a cluster touches both the left and the right column
+     * @param sizes The distinct cluster sizes in ascending order
+     * @param counts The number of clusters of each size
+     */
+    public ClusterReport(int burnedCells, int clusterCount, int largestSize, int largestCell,
+                         boolean spansVertically, boolean spansHorizontally, int[] sizes, int[] counts) {
+        this.burnedCells = burnedCells;
+        this.clusterCount = clusterCount;
+        this.largestSize = largestSize;
+        this.largestCell = largestCell;
+        this.spansVertically = spansVertically;
+        this.spansHorizontally = spansHorizontally;
+        this.sizes = sizes;
+        this.counts = counts;
+    }
+    
+    /**
+     * Gets the number of cells on fire or burned out.
+     * 
+     * @return The burned cell count
+     */
+    public int getBurnedCells() {
+        return burnedCells;
+    }
+    
+    /**
+     * Gets the number of clusters.
+     * 
+     * @return The cluster count
+     */
+    public int getClusterCount() {
+        return clusterCount;
+    }
+    
+    /**
+     * Gets the size of the largest cluster.
+     * 
+     * @return The number of cells in the largest cluster, 0 if nothing burned
+     */
+    public int getLargestSize() {
+        return largestSize;
+    }
+    
+    /**
+     * Gets a cell of the largest cluster, from which it can be located or flood-filled.
+     * 
+     * @return The row-major index of the cell, -1 if nothing burned
+     */
+    public int getLargestCell() {
+        return largestCell;
+    }
+    
+    /**
+     * Checks if a cluster connects the top row to the bottom row.
+     * 
+     * @return true if the burned area percolates vertically
+     */
+    public boolean isSpanningVertically() {
+        return spansVertically;
+    }
+    
+    /**
+     * Checks if a cluster connects the left column to the right column.
+     * 
+     * @return true if the burned area percolates horizontally
+     */
+    public boolean isSpanningHorizontally() {
+        return spansHorizontally;
+    }
+    
+    /**
+     * Checks if a cluster connects two opposite edges.
+     * 
+     * @return true if the burned area percolates in either direction
+     */
+    public boolean isSpanning() {
+        return spansVertically || spansHorizontally;
+    }
+    
+    /**
+     * Gets the distinct cluster sizes.
+     * 
+     * @return The sizes in ascending order
+     */
+    public int[] getSizes() {
+        return sizes;
+    }
+    
+    /**
+     * Gets the number of clusters of each size.
+     * 
+     * @return The counts, parallel to getSizes()
+     */
+    public int[] getCounts() {
+        return counts;
+    }
+    
+    /**
+     * Formats the report as a single-line JSON object.
+     * 
+     * @return The JSON text
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder(64 + 16 * sizes.length);
+        json.append(String.format(Locale.ROOT,
+            "{\"burnedCells\":%d,\"clusters\":%d,\"largestCluster\":%d,\"largestCell\":%d,"
+                + "\"spansVertically\":%b,\"spansHorizontally\":%b,\"sizeDistribution\":{",
+            burnedCells, clusterCount, largestSize, largestCell, spansVertically, spansHorizontally));
+        for (int i = 0; i < sizes.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append('"').append(sizes[i]).append("\":").append(counts[i]);
+        }
+        return json.append("}}").toString();
+    }
+}
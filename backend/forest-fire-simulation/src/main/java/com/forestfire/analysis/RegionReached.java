@@ -0,0 +1,126 @@
+package com.forestfire.analysis;
+
+import com.forestfire.model.Forest;
+
+/**
+ * Holds once a cell inside a rectangle of the grid is on fire or has burned, for example when
+ * the fire reaches an edge or a settlement.
+ */
+public class RegionReached implements StopCondition {
+    
+    private final int top;
+    private final int left;
+    private final int bottom;
+    private final int right;
+    private final String name;
+    private boolean reachedAtStart;
+    private boolean reached;
+    
+    /**
+     * Creates a condition on a rectangle, bounds inclusive.
+     * 
+     * @param top The first row
+     * @param left The first column
+     * @param bottom The last row
+     * @param right The last column
+     * @param height The height of the forest
+     * @param width The width of the forest
+     * @throws IllegalArgumentException If the rectangle is empty or outside the forest
+     */
+    public RegionReached(int top, int left, int bottom, int right, int height, int width) throws IllegalArgumentException {
+        this(top, left, bottom, right, height, width, "region=" + top + ":" + left + ":" + bottom + ":" + right);
+    }
+    
+    /**
+     * Creates a condition on a rectangle with the name it is reported under.
+     * 
+     * @param top The first row
+     * @param left The first column
+     * @param bottom The last row
+     * @param right The last column
+     * @param height The height of the forest
+     * @param width The width of the forest
+     * @param name The name of the condition
+     * @throws IllegalArgumentException If the rectangle is empty or outside the forest
+     */
+    private RegionReached(int top, int left, int bottom, int right, int height, int width, String name)
+            throws IllegalArgumentException {
+        if (top < 0 || left < 0 || bottom >= height || right >= width || top > bottom || left > right) {
+            throw new IllegalArgumentException("Region " + top + ":" + left + ":" + bottom + ":" + right
+                + " is empty or outside the " + height + "x" + width + " forest");
+        }
+        this.top = top;
+        this.left = left;
+        this.bottom = bottom;
+        this.right = right;
+        this.name = name;
+    }
+    
+    /**
+     * Creates a condition on one edge of the grid.
+     * 
+     * @param edge The edge: "top", "bottom", "left" or "right"
+     * @param height The height of the forest
+     * @param width The width of the forest
+     * @return The condition
+     * @throws IllegalArgumentException If the edge name is unknown
+     */
+    public static RegionReached edge(String edge, int height, int width) throws IllegalArgumentException {
+        switch (edge.trim().toLowerCase()) {
+            case "top":
+                return new RegionReached(0, 0, 0, width - 1, height, width, "edge=top");
+            case "bottom":
+                return new RegionReached(height - 1, 0, height - 1, width - 1, height, width, "edge=bottom");
+            case "left":
+                return new RegionReached(0, 0, height - 1, 0, height, width, "edge=left");
+            case "right":
+                return new RegionReached(0, width - 1, height - 1, width - 1, height, width, "edge=right");
+            default:
+                throw new IllegalArgumentException("Unknown edge: " + edge + " (expected top, bottom, left, right or any)");
+        }
+    }
+    
+    /**
+     * Reads the rows of the rectangle for a cell on fire or burned out.
+     */
+    @Override
+    public boolean start(Forest forest) {
+        reached = false;
+        byte[] row = new byte[forest.getWidth()];
+        for (int r = top; r <= bottom && !reached; r++) {
+            forest.copyBurnRow(r, row);
+            for (int c = left; c <= right; c++) {
+                if (row[c] == Forest.FIRE || row[c] == Forest.ASH) {
+                    reached = true;
+                    break;
+                }
+            }
+        }
+        reachedAtStart = reached;
+        return reached;
+    }
+    
+    @Override
+    public boolean update(Forest forest) {
+        int[] ignited = forest.getIgnitedCells();
+        int count = forest.getIgnitedCount();
+        int width = forest.getWidth();
+        for (int k = 0; k < count && !reached; k++) {
+            int r = ignited[k] / width;
+            int c = ignited[k] - r * width;
+            reached = r >= top && r <= bottom && c >= left && c <= right;
+        }
+        return reached;
+    }
+    
+    @Override
+    public boolean rewind(Forest forest) {
+        reached = reachedAtStart;
+        return reached;
+    }
+    
+    @Override
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,255 @@
+package com.forestfire.analysis;
+
+import com.forestfire.model.Forest;
+import com.forestfire.model.Neighbourhood;
+
+import java.util.Arrays;
+
+/**
+ * Detects the step at which the burned area of a running simulation first connects two opposite
+ * edges of the grid. Cells are added to a union-find forest as they ignite, each root carrying
+ * the edges its cluster touches, so a step costs time in proportion to the cells it ignited
+ * rather than to the grid.
+ * 
+ * Clusters are those of cells that have burned at some point: in the regrowth mode a cell that
+ * grows back stays in its cluster.
+ */
+public class SpanningMonitor implements StopCondition {
+    
+    private static final byte TOP = 1;
+    private static final byte BOTTOM = 2;
+    private static final byte LEFT = 4;
+    private static final byte RIGHT = 8;
+    
+    private final int[] rowOffsets;
+    private final int[] colOffsets;
+    private int height;
+    private int width;
+    private int[] parent = new int[0];
+    private byte[] edges = new byte[0];
+    private int[] members = new int[0];
+    private int memberCount;
+    private int[] startCells = new int[0];
+    private boolean spansVertically;
+    private boolean spansHorizontally;
+    
+    /**
+     * Creates a monitor.
+     * 
+     * @param neighbourhood The connectivity of clusters
+     */
+    public SpanningMonitor(Neighbourhood neighbourhood) {
+        this.rowOffsets = neighbourhood.getRowOffsets();
+        this.colOffsets = neighbourhood.getColOffsets();
+    }
+    
+    /**
+     * Starts monitoring a forest from its current state, adding every cell that is on fire or
+     * burned out. This reads the whole grid; afterwards call update() after each step.
+     * 
+     * @param forest The forest to monitor
+     */
+    public void rescan(Forest forest) {
+        clear(forest.getHeight(), forest.getWidth());
+        byte[] row = new byte[width];
+        for (int r = 0; r < height; r++) {
+            forest.copyBurnRow(r, row);
+            for (int c = 0; c < width; c++) {
+                if (row[c] == Forest.FIRE || row[c] == Forest.ASH) {
+                    add(r * width + c);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Starts monitoring a forest whose burned cells are known, without reading the grid.
+     * 
+     * @param height The height of the forest
+     * @param width The width of the forest
+     * @param cells The row-major indices of the cells on fire or burned out, e.g. from getCells()
+     */
+    public void restart(int height, int width, int[] cells) {
+        clear(height, width);
+        for (int index : cells) {
+            add(index);
+        }
+    }
+    
+    /**
+     * Gets the cells added since the last rescan or restart.
+     * 
+     * @return The row-major indices of the cells, in the order they were added
+     */
+    public int[] getCells() {
+        return Arrays.copyOf(members, memberCount);
+    }
+    
+    @Override
+    public boolean start(Forest forest) {
+        rescan(forest);
+        startCells = getCells();
+        return isSpanning();
+    }
+    
+    /**
+     * Restarts from the cells found by the last start(), without reading the grid.
+     */
+    @Override
+    public boolean rewind(Forest forest) {
+        restart(forest.getHeight(), forest.getWidth(), startCells);
+        return isSpanning();
+    }
+    
+    @Override
+    public String getName() {
+        return "spanning";
+    }
+    
+    /**
+     * Adds the cells that ignited in the step the forest just simulated.
+     * 
+     * @param forest The monitored forest
+     * @return true if the burned area now spans the grid
+     */
+    @Override
+    public boolean update(Forest forest) {
+        int[] ignited = forest.getIgnitedCells();
+        int count = forest.getIgnitedCount();
+        for (int k = 0; k < count; k++) {
+            add(ignited[k]);
+        }
+        return isSpanning();
+    }
+    
+    /**
+     * Removes every cell, resetting only the entries that were used so that the cost is in
+     * proportion to the burned area of the last run.
+     * 
+     * @param height The height of the next forest
+     * @param width The width of the next forest
+     */
+    private void clear(int height, int width) {
+        int cells = height * width;
+        if (parent.length != cells) {
+            parent = new int[cells];
+            edges = new byte[cells];
+            Arrays.fill(parent, -1);
+        } else {
+            for (int k = 0; k < memberCount; k++) {
+                int index = members[k];
+                parent[index] = -1;
+                edges[index] = 0;
+            }
+        }
+        this.height = height;
+        this.width = width;
+        memberCount = 0;
+        spansVertically = false;
+        spansHorizontally = false;
+    }
+    
+    /**
+     * Adds a burned cell and joins it to its burned neighbours.
+     * 
+     * @param index The row-major index of the cell
+     */
+    private void add(int index) {
+        if (parent[index] >= 0) {
+            return;
+        }
+        if (memberCount == members.length) {
+            members = Arrays.copyOf(members, Math.max(64, 2 * members.length));
+        }
+        members[memberCount++] = index;
+        
+        int row = index / width;
+        int col = index - row * width;
+        parent[index] = index;
+        byte edge = 0;
+        if (row == 0) {
+            edge |= TOP;
+        }
+        if (row == height - 1) {
+            edge |= BOTTOM;
+        }
+        if (col == 0) {
+            edge |= LEFT;
+        }
+        if (col == width - 1) {
+            edge |= RIGHT;
+        }
+        edges[index] = edge;
+        
+        int root = index;
+        for (int d = 0; d < rowOffsets.length; d++) {
+            int r = row + rowOffsets[d];
+            int c = col + colOffsets[d];
+            if (r >= 0 && r < height && c >= 0 && c < width && parent[r * width + c] >= 0) {
+                root = union(root, find(r * width + c));
+            }
+        }
+        byte rootEdges = edges[root];
+        spansVertically |= (rootEdges & (TOP | BOTTOM)) == (TOP | BOTTOM);
+        spansHorizontally |= (rootEdges & (LEFT | RIGHT)) == (LEFT | RIGHT);
+    }
+    
+    /**
+     * Finds the root of a cell's cluster, halving the path on the way.
+     * 
+     * @param index The row-major index of a burned cell
+     * @return The index of the root
+     */
+    private int find(int index) {
+        while (parent[index] != index) {
+            parent[index] = parent[parent[index]];
+            index = parent[index];
+        }
+        return index;
+    }
+    
+    /**
+     * Joins two clusters by their roots and merges their edge flags.
+     * 
+     * @param rootA The root of one cluster
+     * @param rootB The root of the other
+     * @return The root of the joined cluster
+     */
+    private int union(int rootA, int rootB) {
+        if (rootA == rootB) {
+            return rootA;
+        }
+        int low = Math.min(rootA, rootB);
+        int high = Math.max(rootA, rootB);
+        parent[high] = low;
+        edges[low] |= edges[high];
+        return low;
+    }
+    
+    /**
+     * Checks if a cluster connects two opposite edges.
+     * 
+     * @return true if the burned area spans the grid in either direction
+     */
+    public boolean isSpanning() {
+        return spansVertically || spansHorizontally;
+    }
+    
+    /**
+     * Checks if a cluster connects the top row to the bottom row.
+     * 
+     * @return true if the burned area spans the grid vertically
+     */
+    public boolean isSpanningVertically() {
+        return spansVertically;
+    }
+    
+    /**
+     * Checks if a cluster connects the left column to the right column.
+     * 
+     * @return true if the burned area spans the grid horizontally
+     */
+    public boolean isSpanningHorizontally() {
+        return spansHorizontally;
+    }
+}
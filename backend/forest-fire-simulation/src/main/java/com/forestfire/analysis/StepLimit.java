@@ -0,0 +1,45 @@
+package com.forestfire.analysis;
+
+import com.forestfire.model.Forest;
+
+/**
+ * Holds once the forest has advanced a number of steps since it was created or reset, whatever
+ * number of calls the run was split into.
+ */
+public class StepLimit implements StopCondition {
+    
+    private final int steps;
+    
+    /**
+     * Creates a step limit.
+     * 
+     * @param steps The step at which the condition holds
+     * @throws IllegalArgumentException If the limit is negative
+     */
+    public StepLimit(int steps) throws IllegalArgumentException {
+        if (steps < 0) {
+            throw new IllegalArgumentException("Step limit must not be negative");
+        }
+        this.steps = steps;
+    }
+    
+    @Override
+    public boolean start(Forest forest) {
+        return forest.getStep() >= steps;
+    }
+    
+    @Override
+    public boolean update(Forest forest) {
+        return start(forest);
+    }
+    
+    @Override
+    public boolean rewind(Forest forest) {
+        return start(forest);
+    }
+    
+    @Override
+    public String getName() {
+        return "steps=" + steps;
+    }
+}
@@ -0,0 +1,111 @@
+package com.forestfire.analysis;
+
+import com.forestfire.model.Forest;
+import com.forestfire.model.Neighbourhood;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A condition that ends a run before the fire dies out. It is evaluated on the whole grid once
+ * when a run starts and afterwards only from the cells each step ignited, so a step costs time
+ * in proportion to the fire front rather than to the grid.
+ */
+public interface StopCondition {
+    
+    /**
+     * Starts evaluating the condition on a forest from its current state. This may read the grid;
+     * the state reached is the one rewind() returns to.
+     * 
+     * @param forest The forest to evaluate
+     * @return true if the condition already holds
+     */
+    boolean start(Forest forest);
+    
+    /**
+     * Updates the condition with the cells that ignited in the step the forest just simulated.
+     * 
+     * @param forest The forest passed to start()
+     * @return true if the condition now holds
+     */
+    boolean update(Forest forest);
+    
+    /**
+     * Starts evaluating the condition on a fork of the forest last passed to start(), taken at the
+     * state start() saw, without reading the grid.
+     * 
+     * @param forest The forked forest
+     * @return true if the condition already holds
+     */
+    boolean rewind(Forest forest);
+    
+    /**
+     * Gets the condition as it is written in options and reports.
+     * 
+     * @return The name, e.g. "spanning" or "edge=top"
+     */
+    String getName();
+    
+    /**
+     * Parses a list of conditions, any of which stops the run.
+     * 
+     * @param spec Comma-separated conditions: "spanning", "edge" or "edge=top|bottom|left|right",
+     *             "region=TOP:LEFT:BOTTOM:RIGHT", "burned=CELLS" or "burned=PERCENT%", "steps=N"
+     * @param neighbourhood The connectivity of burned clusters, for spanning
+     * @param height The height of the forest
+     * @param width The width of the forest
+     * @return The condition
+     * @throws IllegalArgumentException If a condition is malformed or lies outside the forest
+     */
+    static StopCondition parse(String spec, Neighbourhood neighbourhood, int height, int width) throws IllegalArgumentException {
+        List<StopCondition> conditions = new ArrayList<>();
+        for (String term : spec.split(",")) {
+            String[] parts = term.trim().split("=", 2);
+            String key = parts[0].trim().toLowerCase();
+            String value = parts.length > 1 ? parts[1].trim() : null;
+            switch (key) {
+                case "spanning":
+                    conditions.add(new SpanningMonitor(neighbourhood));
+                    break;
+                case "edge":
+                    if (value == null || value.equalsIgnoreCase("any")) {
+                        List<StopCondition> edges = new ArrayList<>();
+                        for (String edge : new String[] {"top", "bottom", "left", "right"}) {
+                            edges.add(RegionReached.edge(edge, height, width));
+                        }
+                        conditions.add(new AnyCondition(edges));
+                    } else {
+                        conditions.add(RegionReached.edge(value, height, width));
+                    }
+                    break;
+                case "region":
+                    String[] bounds = value == null ? new String[0] : value.split(":");
+                    if (bounds.length != 4) {
+                        throw new IllegalArgumentException("Region must be region=TOP:LEFT:BOTTOM:RIGHT: " + term);
+                    }
+                    conditions.add(new RegionReached(Integer.parseInt(bounds[0].trim()), Integer.parseInt(bounds[1].trim()),
+                        Integer.parseInt(bounds[2].trim()), Integer.parseInt(bounds[3].trim()), height, width));
+                    break;
+                case "burned":
+                    if (value == null) {
+                        throw new IllegalArgumentException("Burned area must be burned=CELLS or burned=PERCENT%: " + term);
+                    }
+                    long cells = value.endsWith("%")
+                        ? (long) Math.ceil(Double.parseDouble(value.substring(0, value.length() - 1).trim()) / 100 * height * width)
+                        : Long.parseLong(value);
+                    conditions.add(new BurnedAreaLimit(cells, value));
+                    break;
+                case "steps":
+                    if (value == null) {
+                        throw new IllegalArgumentException("Step limit must be steps=N: " + term);
+                    }
+                    conditions.add(new StepLimit(Integer.parseInt(value)));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown stop condition: " + term
+                        + " (expected spanning, edge, region, burned or steps)");
+            }
+        }
+        return conditions.size() == 1 ? conditions.get(0) : new AnyCondition(conditions);
+    }
+}
@@ -0,0 +1,32 @@
+package com.forestfire.api.config;
+
+import com.forestfire.api.metrics.TimedJsonHttpMessageConverter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+public class MetricsConfig implements WebMvcConfigurer {
+    
+    private final MeterRegistry registry;
+    
+    public MetricsConfig(MeterRegistry registry) {
+        this.registry = registry;
+    }
+    
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // Swap the default JSON converter for one that times serialisation
+        for (int i = 0; i < converters.size(); i++) {
+            HttpMessageConverter<?> converter = converters.get(i);
+            if (converter.getClass() == MappingJackson2HttpMessageConverter.class) {
+                MappingJackson2HttpMessageConverter jsonConverter = (MappingJackson2HttpMessageConverter) converter;
+                converters.set(i, new TimedJsonHttpMessageConverter(jsonConverter.getObjectMapper(), registry));
+            }
+        }
+    }
+}
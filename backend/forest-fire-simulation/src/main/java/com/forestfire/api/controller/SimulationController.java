@@ -1,11 +1,37 @@
 package com.forestfire.api.controller;
 
+import com.forestfire.api.dto.BurnMapDTO;
+import com.forestfire.api.dto.ClusterReportDTO;
 import com.forestfire.api.dto.ForestStateDTO;
+import com.forestfire.api.dto.IgnitionResultDTO;
+import com.forestfire.api.dto.IgnitionStepsDTO;
+import com.forestfire.api.dto.InterventionDTO;
+import com.forestfire.api.dto.InterventionResultDTO;
 import com.forestfire.api.dto.SimulationConfigDTO;
 import com.forestfire.api.service.ApiSimulationService;
+import com.forestfire.api.service.ApiSimulationService.SerializedState;
+import com.forestfire.ensemble.BurnProbabilityMap;
+import com.forestfire.export.BurnMapWriter;
+import com.forestfire.export.GridExporter;
+import com.forestfire.export.GridFormat;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/simulation")
@@ -26,11 +52,41 @@ public class SimulationController {
     }
 
     @PostMapping("/step")
-    public ResponseEntity<ForestStateDTO> executeStep() {
-        ForestStateDTO state = simulationService.executeStep();
+    public ResponseEntity<ForestStateDTO> executeStep(@RequestParam(required = false) Integer count,
+                                                      @RequestParam(required = false) String until) {
+        ForestStateDTO state;
+        if ("extinct".equalsIgnoreCase(until)) {
+            state = simulationService.executeUntilExtinct();
+        } else if (until != null) {
+            // count, if given, caps the number of steps
+            state = simulationService.executeUntil(until, count);
+        } else if (count != null) {
+            state = simulationService.executeSteps(count);
+        } else {
+            state = simulationService.executeStep();
+        }
         return ResponseEntity.ok(state);
     }
 
+    @PostMapping(value = "/ignitions", consumes = {"text/csv", MediaType.TEXT_PLAIN_VALUE})
+    public ResponseEntity<IgnitionResultDTO> addIgnitions(HttpServletRequest request) throws IOException {
+        IgnitionResultDTO result = simulationService.addIgnitions(request.getInputStream(), false);
+        return ResponseEntity.ok(result);
+    }
+
+    @PostMapping(value = "/ignitions", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<IgnitionResultDTO> addBinaryIgnitions(HttpServletRequest request) throws IOException {
+        IgnitionResultDTO result = simulationService.addIgnitions(request.getInputStream(), true);
+        return ResponseEntity.ok(result);
+    }
+
+    @PostMapping("/interventions")
+    public ResponseEntity<InterventionResultDTO> submitInterventions(@RequestBody List<InterventionDTO> interventions,
+                                                                     @RequestParam(defaultValue = "false") boolean apply) {
+        InterventionResultDTO result = simulationService.submitInterventions(interventions, apply);
+        return ResponseEntity.ok(result);
+    }
+
     @PostMapping("/reset")
     public ResponseEntity<ForestStateDTO> resetSimulation() {
         ForestStateDTO state = simulationService.resetSimulation();
@@ -38,9 +94,97 @@ public class SimulationController {
     }
 
     @GetMapping("/state")
-    public ResponseEntity<ForestStateDTO> getCurrentState() {
-        ForestStateDTO state = simulationService.getCurrentState();
-        return ResponseEntity.ok(state);
+    public ResponseEntity<byte[]> getCurrentState(WebRequest request) throws IOException {
+        // Pollers that already hold the current step get 304 without any serialisation
+        if (request.checkNotModified(simulationService.getStateTag())) {
+            return null;
+        }
+        SerializedState state = simulationService.getSerializedState();
+        return ResponseEntity.ok()
+            .eTag(state.getTag())
+            .cacheControl(CacheControl.noCache())
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(state.getJson());
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportGrid(@RequestParam(defaultValue = "png") String format) {
+        GridFormat gridFormat = GridFormat.parse(format);
+        GridExporter exporter = simulationService.createExporter();
+        int step = exporter.getStep();
+        exporter.checkSupported(gridFormat);
+        StreamingResponseBody body = out -> exporter.export(gridFormat, Channels.newChannel(out));
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(gridFormat.getContentType()))
+            .header(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"forest-step-" + step + "." + gridFormat.getExtension() + "\"")
+            .body(body);
+    }
+
+    @GetMapping("/ignition-steps")
+    public ResponseEntity<?> getIgnitionSteps(@RequestParam(required = false) Integer row,
+                                              @RequestParam(required = false) Integer col,
+                                              @RequestParam(required = false) Integer height,
+                                              @RequestParam(required = false) Integer width,
+                                              @RequestParam(defaultValue = "json") String format) {
+        IgnitionStepsDTO window = simulationService.getIgnitionSteps(row, col, height, width);
+        if ("json".equalsIgnoreCase(format)) {
+            return ResponseEntity.ok(window);
+        }
+        if (!"binary".equalsIgnoreCase(format)) {
+            throw new IllegalArgumentException("Unsupported format: " + format + " (expected json or binary)");
+        }
+
+        // Big-endian 32-bit ints in row-major order; the window is described in the headers
+        ByteBuffer body = ByteBuffer.allocate(4 * window.getSteps().length);
+        body.asIntBuffer().put(window.getSteps());
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_OCTET_STREAM)
+            .header("X-Step", Integer.toString(window.getStep()))
+            .header("X-Window", window.getRow() + "," + window.getCol() + "," + window.getHeight() + "," + window.getWidth())
+            .body(body.array());
+    }
+
+    @GetMapping("/clusters")
+    public ResponseEntity<ClusterReportDTO> getClusters() {
+        return ResponseEntity.ok(simulationService.getClusters());
+    }
+
+    @PostMapping("/ensemble")
+    public ResponseEntity<?> runEnsemble(@RequestParam int replicas,
+                                         @RequestParam(required = false) Long seed,
+                                         @RequestParam(defaultValue = "-1") int steps,
+                                         @RequestParam(required = false) double[] quantiles,
+                                         @RequestParam(defaultValue = "32") int bins,
+                                         @RequestParam(defaultValue = "0") int binWidth,
+                                         @RequestParam(defaultValue = "json") String format)
+            throws InterruptedException, IOException {
+        boolean pgm = "pgm".equalsIgnoreCase(format);
+        if (!pgm && !"json".equalsIgnoreCase(format)) {
+            throw new IllegalArgumentException("Unsupported format: " + format + " (expected json or pgm)");
+        }
+        double[] requested = quantiles == null || pgm ? new double[0] : quantiles;
+        BurnMapWriter.checkQuantiles(requested);
+        // Histograms are only kept when quantiles are asked for
+        BurnProbabilityMap map = simulationService.runEnsemble(replicas, seed == null ? System.nanoTime() : seed,
+            steps, requested.length > 0 ? bins : 0, binWidth);
+        BurnMapWriter writer = new BurnMapWriter(map, requested);
+
+        if (pgm) {
+            // Two bytes per cell, small next to the counts the ensemble already holds
+            ByteArrayOutputStream body = new ByteArrayOutputStream(2 * map.getHeight() * map.getWidth() + 32);
+            writer.writePgm(body);
+            return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(GridFormat.PGM.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"burn-probability.pgm\"")
+                .body(body.toByteArray());
+        }
+        Map<String, int[]> ignitionQuantiles = new LinkedHashMap<>();
+        for (double quantile : requested) {
+            ignitionQuantiles.put(BurnMapWriter.quantileKey(quantile), map.getIgnitionQuantiles(quantile));
+        }
+        return ResponseEntity.ok(new BurnMapDTO(map.getReplicas(), map.getHeight(), map.getWidth(),
+            map.getBinWidth(), map.getProbabilities(), ignitionQuantiles));
     }
 
     @PutMapping("/config")
@@ -48,4 +192,9 @@ public class SimulationController {
         ForestStateDTO state = simulationService.updateConfiguration(config);
         return ResponseEntity.ok(state);
     }
+
+    @ExceptionHandler({IllegalArgumentException.class, IllegalStateException.class})
+    public ResponseEntity<String> handleInvalidRequest(RuntimeException e) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+    }
 }
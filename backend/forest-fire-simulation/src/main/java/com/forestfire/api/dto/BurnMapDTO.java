@@ -0,0 +1,73 @@
+package com.forestfire.api.dto;
+
+import java.util.Map;
+
+public class BurnMapDTO {
+    private int replicas;
+    private int height;
+    private int width;
+    private int binWidth;
+    private float[] probabilities;
+    private Map<String, int[]> ignitionQuantiles;
+
+    public BurnMapDTO() {
+    }
+
+    public BurnMapDTO(int replicas, int height, int width, int binWidth, float[] probabilities,
+                      Map<String, int[]> ignitionQuantiles) {
+        this.replicas = replicas;
+        this.height = height;
+        this.width = width;
+        this.binWidth = binWidth;
+        this.probabilities = probabilities;
+        this.ignitionQuantiles = ignitionQuantiles;
+    }
+
+    public int getReplicas() {
+        return replicas;
+    }
+
+    public void setReplicas(int replicas) {
+        this.replicas = replicas;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public void setHeight(int height) {
+        this.height = height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public void setWidth(int width) {
+        this.width = width;
+    }
+
+    public int getBinWidth() {
+        return binWidth;
+    }
+
+    public void setBinWidth(int binWidth) {
+        this.binWidth = binWidth;
+    }
+
+    public float[] getProbabilities() {
+        return probabilities;
+    }
+
+    public void setProbabilities(float[] probabilities) {
+        this.probabilities = probabilities;
+    }
+
+    public Map<String, int[]> getIgnitionQuantiles() {
+        return ignitionQuantiles;
+    }
+
+    public void setIgnitionQuantiles(Map<String, int[]> ignitionQuantiles) {
+        this.ignitionQuantiles = ignitionQuantiles;
+    }
+}
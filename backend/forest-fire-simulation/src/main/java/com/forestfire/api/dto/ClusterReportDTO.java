@@ -0,0 +1,101 @@
+package com.forestfire.api.dto;
+
+public class ClusterReportDTO {
+    private int step;
+    private int burnedCells;
+    private int clusterCount;
+    private int largestSize;
+    private int largestCell;
+    private boolean spanningVertically;
+    private boolean spanningHorizontally;
+    private int[] sizes;
+    private int[] counts;
+
+    public ClusterReportDTO() {
+    }
+
+    public ClusterReportDTO(int step, int burnedCells, int clusterCount, int largestSize, int largestCell,
+                            boolean spanningVertically, boolean spanningHorizontally, int[] sizes, int[] counts) {
+        this.step = step;
+        this.burnedCells = burnedCells;
+        this.clusterCount = clusterCount;
+        this.largestSize = largestSize;
+        this.largestCell = largestCell;
+        this.spanningVertically = spanningVertically;
+        this.spanningHorizontally = spanningHorizontally;
+        this.sizes = sizes;
+        this.counts = counts;
+    }
+
+    public int getStep() {
+        return step;
+    }
+
+    public void setStep(int step) {
+        this.step = step;
+    }
+
+    public int getBurnedCells() {
+        return burnedCells;
+    }
+
+    public void setBurnedCells(int burnedCells) {
+        this.burnedCells = burnedCells;
+    }
+
+    public int getClusterCount() {
+        return clusterCount;
+    }
+
+    public void setClusterCount(int clusterCount) {
+        this.clusterCount = clusterCount;
+    }
+
+    public int getLargestSize() {
+        return largestSize;
+    }
+
+    public void setLargestSize(int largestSize) {
+        this.largestSize = largestSize;
+    }
+
+    public int getLargestCell() {
+        return largestCell;
+    }
+
+    public void setLargestCell(int largestCell) {
+        this.largestCell = largestCell;
+    }
+
+    public boolean isSpanningVertically() {
+        return spanningVertically;
+    }
+
+    public void setSpanningVertically(boolean spanningVertically) {
+        this.spanningVertically = spanningVertically;
+    }
+
+    public boolean isSpanningHorizontally() {
+        return spanningHorizontally;
+    }
+
+    public void setSpanningHorizontally(boolean spanningHorizontally) {
+        this.spanningHorizontally = spanningHorizontally;
+    }
+
+    public int[] getSizes() {
+        return sizes;
+    }
+
+    public void setSizes(int[] sizes) {
+        this.sizes = sizes;
+    }
+
+    public int[] getCounts() {
+        return counts;
+    }
+
+    public void setCounts(int[] counts) {
+        this.counts = counts;
+    }
+}
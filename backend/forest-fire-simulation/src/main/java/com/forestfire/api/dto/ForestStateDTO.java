@@ -1,11 +1,15 @@
 package com.forestfire.api.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.util.List;
 
 public class ForestStateDTO {
     private String[][] grid;
     private int step;
     private boolean complete;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private StepSummaryDTO summary;
 
     public ForestStateDTO() {
     }
@@ -39,4 +43,12 @@ public class ForestStateDTO {
     public void setComplete(boolean complete) {
         this.complete = complete;
     }
+
+    public StepSummaryDTO getSummary() {
+        return summary;
+    }
+
+    public void setSummary(StepSummaryDTO summary) {
+        this.summary = summary;
+    }
 }
@@ -0,0 +1,30 @@
+package com.forestfire.api.dto;
+
+public class IgnitionResultDTO {
+    private int loaded;
+    private int ignited;
+
+    public IgnitionResultDTO() {
+    }
+
+    public IgnitionResultDTO(int loaded, int ignited) {
+        this.loaded = loaded;
+        this.ignited = ignited;
+    }
+
+    public int getLoaded() {
+        return loaded;
+    }
+
+    public void setLoaded(int loaded) {
+        this.loaded = loaded;
+    }
+
+    public int getIgnited() {
+        return ignited;
+    }
+
+    public void setIgnited(int ignited) {
+        this.ignited = ignited;
+    }
+}
@@ -0,0 +1,70 @@
+package com.forestfire.api.dto;
+
+public class IgnitionStepsDTO {
+    private int step;
+    private int row;
+    private int col;
+    private int height;
+    private int width;
+    private int[] steps;
+
+    public IgnitionStepsDTO() {
+    }
+
+    public IgnitionStepsDTO(int step, int row, int col, int height, int width, int[] steps) {
+        this.step = step;
+        this.row = row;
+        this.col = col;
+        this.height = height;
+        this.width = width;
+        this.steps = steps;
+    }
+
+    public int getStep() {
+        return step;
+    }
+
+    public void setStep(int step) {
+        this.step = step;
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    public void setRow(int row) {
+        this.row = row;
+    }
+
+    public int getCol() {
+        return col;
+    }
+
+    public void setCol(int col) {
+        this.col = col;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public void setHeight(int height) {
+        this.height = height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public void setWidth(int width) {
+        this.width = width;
+    }
+
+    public int[] getSteps() {
+        return steps;
+    }
+
+    public void setSteps(int[] steps) {
+        this.steps = steps;
+    }
+}
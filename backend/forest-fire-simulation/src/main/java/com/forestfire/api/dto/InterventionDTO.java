@@ -0,0 +1,52 @@
+package com.forestfire.api.dto;
+
+public class InterventionDTO {
+    private String type;
+    private int top;
+    private int left;
+    private Integer bottom;
+    private Integer right;
+
+    public InterventionDTO() {
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public int getTop() {
+        return top;
+    }
+
+    public void setTop(int top) {
+        this.top = top;
+    }
+
+    public int getLeft() {
+        return left;
+    }
+
+    public void setLeft(int left) {
+        this.left = left;
+    }
+
+    public Integer getBottom() {
+        return bottom;
+    }
+
+    public void setBottom(Integer bottom) {
+        this.bottom = bottom;
+    }
+
+    public Integer getRight() {
+        return right;
+    }
+
+    public void setRight(Integer right) {
+        this.right = right;
+    }
+}
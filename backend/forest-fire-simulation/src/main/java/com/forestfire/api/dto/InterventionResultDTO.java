@@ -0,0 +1,30 @@
+package com.forestfire.api.dto;
+
+public class InterventionResultDTO {
+    private int queued;
+    private int changed;
+
+    public InterventionResultDTO() {
+    }
+
+    public InterventionResultDTO(int queued, int changed) {
+        this.queued = queued;
+        this.changed = changed;
+    }
+
+    public int getQueued() {
+        return queued;
+    }
+
+    public void setQueued(int queued) {
+        this.queued = queued;
+    }
+
+    public int getChanged() {
+        return changed;
+    }
+
+    public void setChanged(int changed) {
+        this.changed = changed;
+    }
+}
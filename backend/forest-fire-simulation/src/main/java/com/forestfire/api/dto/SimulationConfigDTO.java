@@ -7,6 +7,7 @@ public class SimulationConfigDTO {
     private int forestWidth;
     private double firePropagationProbability;
     private List<int[]> fireInitialPositions;
+    private boolean recordIgnitionSteps;
 
     public SimulationConfigDTO() {
     }
@@ -49,4 +50,12 @@ public class SimulationConfigDTO {
     public void setFireInitialPositions(List<int[]> fireInitialPositions) {
         this.fireInitialPositions = fireInitialPositions;
     }
+
+    public boolean isRecordIgnitionSteps() {
+        return recordIgnitionSteps;
+    }
+
+    public void setRecordIgnitionSteps(boolean recordIgnitionSteps) {
+        this.recordIgnitionSteps = recordIgnitionSteps;
+    }
 }
@@ -0,0 +1,59 @@
+package com.forestfire.api.dto;
+
+public class StepSummaryDTO {
+    private int stepsExecuted;
+    private int[] treeCounts;
+    private int[] fireCounts;
+    private int[] ashCounts;
+    private String stoppedBy;
+
+    public StepSummaryDTO() {
+    }
+
+    public StepSummaryDTO(int stepsExecuted, int[] treeCounts, int[] fireCounts, int[] ashCounts) {
+        this.stepsExecuted = stepsExecuted;
+        this.treeCounts = treeCounts;
+        this.fireCounts = fireCounts;
+        this.ashCounts = ashCounts;
+    }
+
+    public int getStepsExecuted() {
+        return stepsExecuted;
+    }
+
+    public void setStepsExecuted(int stepsExecuted) {
+        this.stepsExecuted = stepsExecuted;
+    }
+
+    public int[] getTreeCounts() {
+        return treeCounts;
+    }
+
+    public void setTreeCounts(int[] treeCounts) {
+        this.treeCounts = treeCounts;
+    }
+
+    public int[] getFireCounts() {
+        return fireCounts;
+    }
+
+    public void setFireCounts(int[] fireCounts) {
+        this.fireCounts = fireCounts;
+    }
+
+    public int[] getAshCounts() {
+        return ashCounts;
+    }
+
+    public void setAshCounts(int[] ashCounts) {
+        this.ashCounts = ashCounts;
+    }
+
+    public String getStoppedBy() {
+        return stoppedBy;
+    }
+
+    public void setStoppedBy(String stoppedBy) {
+        this.stoppedBy = stoppedBy;
+    }
+}
@@ -0,0 +1,30 @@
+package com.forestfire.api.metrics;
+
+import com.forestfire.service.SimulationMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+public class MicrometerSimulationMetrics implements SimulationMetrics {
+    
+    private final Timer stepTimer;
+    private final Counter cellsProcessed;
+    
+    public MicrometerSimulationMetrics(MeterRegistry registry) {
+        this.stepTimer = Timer.builder("forestfire.step.duration")
+                .description("Wall time of one Forest.simulateStep() call")
+                .register(registry);
+        this.cellsProcessed = Counter.builder("forestfire.cells.processed")
+                .description("Cells visited by simulation steps: the burning frontier and its ignitions")
+                .baseUnit("cells")
+                .register(registry);
+    }
+    
+    @Override
+    public void recordStep(long durationNanos, long cells) {
+        stepTimer.record(durationNanos, TimeUnit.NANOSECONDS);
+        cellsProcessed.increment(cells);
+    }
+}
@@ -0,0 +1,94 @@
+package com.forestfire.api.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.forestfire.jfr.SerializationEvent;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+
+/**
+ * JSON converter that records how long each response body takes to serialise and how large it is.
+ */
+public class TimedJsonHttpMessageConverter extends MappingJackson2HttpMessageConverter {
+    
+    private final MeterRegistry registry;
+    
+    public TimedJsonHttpMessageConverter(ObjectMapper objectMapper, MeterRegistry registry) {
+        super(objectMapper);
+        this.registry = registry;
+    }
+    
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        String payloadType = object == null ? "null" : object.getClass().getSimpleName();
+        CountingOutputMessage countingMessage = new CountingOutputMessage(outputMessage);
+        
+        SerializationEvent event = new SerializationEvent();
+        event.begin();
+        Timer.Sample sample = Timer.start(registry);
+        super.writeInternal(object, type, countingMessage);
+        event.end();
+        if (event.shouldCommit()) {
+            event.payloadType = payloadType;
+            event.payloadBytes = countingMessage.getCount();
+            event.commit();
+        }
+        sample.stop(Timer.builder("forestfire.dto.serialization")
+                .description("Time to serialise a response body to JSON")
+                .tag("type", payloadType)
+                .register(registry));
+        
+        DistributionSummary.builder("forestfire.dto.payload")
+                .description("Size of serialised JSON response bodies")
+                .baseUnit("bytes")
+                .tag("type", payloadType)
+                .register(registry)
+                .record(countingMessage.getCount());
+    }
+    
+    private static class CountingOutputMessage implements HttpOutputMessage {
+        
+        private final HttpOutputMessage delegate;
+        private long count;
+        
+        CountingOutputMessage(HttpOutputMessage delegate) {
+            this.delegate = delegate;
+        }
+        
+        @Override
+        public OutputStream getBody() throws IOException {
+            return new FilterOutputStream(delegate.getBody()) {
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                    count++;
+                }
+                
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                    count += len;
+                }
+            };
+        }
+        
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+        
+        long getCount() {
+            return count;
+        }
+    }
+}
@@ -1,69 +1,454 @@
 package com.forestfire.api.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.forestfire.analysis.ClusterAnalyzer;
+import com.forestfire.analysis.ClusterReport;
+import com.forestfire.analysis.StopCondition;
+import com.forestfire.api.dto.ClusterReportDTO;
 import com.forestfire.api.dto.ForestStateDTO;
+import com.forestfire.api.dto.IgnitionResultDTO;
+import com.forestfire.api.dto.IgnitionStepsDTO;
+import com.forestfire.api.dto.InterventionDTO;
+import com.forestfire.api.dto.InterventionResultDTO;
 import com.forestfire.api.dto.SimulationConfigDTO;
+import com.forestfire.api.dto.StepSummaryDTO;
+import com.forestfire.api.metrics.MicrometerSimulationMetrics;
+import com.forestfire.config.FirePositions;
+import com.forestfire.config.SimulationConfig;
+import com.forestfire.ensemble.BatchRunner;
+import com.forestfire.ensemble.BurnProbabilityMap;
+import com.forestfire.ensemble.ReplicaBatch;
+import com.forestfire.export.GridExporter;
+import com.forestfire.jfr.SerializationEvent;
+import com.forestfire.jfr.SessionEvent;
 import com.forestfire.model.Cell;
 import com.forestfire.model.Forest;
+import com.forestfire.model.Neighbourhood;
+import com.forestfire.service.Intervention;
+import com.forestfire.service.InterventionType;
 import com.forestfire.service.SimulationService;
+import com.forestfire.service.StepSummary;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.stereotype.Service;
 
-import java.awt.Point;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class ApiSimulationService {
     
     private SimulationService simulationService;
-    private int currentStep = 0;
+    private static final String SESSION_ID = "default";
     
-    public ApiSimulationService() {
+    // Tells the states of this process from those a client cached before a restart
+    private final String bootId = Long.toHexString(new Random().nextLong());
+    private volatile int currentStep = 0;
+    private volatile long stateVersion = 0;
+    // Held while the state changes, so a reader sees a state together with its tag
+    private final Object stateLock = new Object();
+    private final Timer dtoBuildTimer;
+    private final Timer serializationTimer;
+    private final Counter stateCacheHits;
+    private final Counter stateCacheMisses;
+    private final ObjectMapper objectMapper;
+    private final Object serializationLock = new Object();
+    private volatile SerializedState serializedState;
+    private final Object clusterLock = new Object();
+    private ClusterAnalyzer clusterAnalyzer;
+    private Neighbourhood clusterNeighbourhood;
+    private String untilSpec;
+    private StopCondition untilCondition;
+    
+    public ApiSimulationService(MeterRegistry registry, ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
         this.simulationService = new SimulationService();
+        this.simulationService.setMetrics(new MicrometerSimulationMetrics(registry));
+        recordSession(SessionEvent.CREATE);
+        
+        this.dtoBuildTimer = Timer.builder("forestfire.dto.build")
+            .description("Time to build a ForestStateDTO from the forest")
+            .register(registry);
+        this.serializationTimer = Timer.builder("forestfire.dto.serialization")
+            .description("Time to serialise a response body to JSON")
+            .tag("type", ForestStateDTO.class.getSimpleName())
+            .register(registry);
+        this.stateCacheHits = Counter.builder("forestfire.state.cache")
+            .description("Serialised state requests answered from the per-step cache")
+            .tag("result", "hit")
+            .register(registry);
+        this.stateCacheMisses = Counter.builder("forestfire.state.cache")
+            .description("Serialised state requests answered from the per-step cache")
+            .tag("result", "miss")
+            .register(registry);
+        Gauge.builder("forestfire.sessions.active", () -> simulationService == null ? 0 : 1)
+            .description("Simulations held in memory by the API")
+            .register(registry);
+        Gauge.builder("forestfire.grid.memory", simulationService::getMemoryBytes)
+            .description("Approximate heap held by the active simulation grids")
+            .baseUnit("bytes")
+            .register(registry);
+        Gauge.builder("forestfire.events.backlog", () -> simulationService.getEventBacklog())
+            .description("Simulation events waiting for the listener dispatch thread")
+            .register(registry);
+    }
+    
+    private void recordSession(String action) {
+        SessionEvent event = new SessionEvent();
+        if (event.shouldCommit()) {
+            Forest forest = simulationService.getForest();
+            event.action = action;
+            event.session = SESSION_ID;
+            event.gridCells = (long) forest.getHeight() * forest.getWidth();
+            event.commit();
+        }
     }
     
     public ForestStateDTO initializeSimulation(SimulationConfigDTO configDTO) {
-        // Convert DTO to domain model
-        List<Point> initialPositions = new ArrayList<>();
-        for (int[] position : configDTO.getFireInitialPositions()) {
-            initialPositions.add(new Point(position[0], position[1]));
+        synchronized (stateLock) {
+            // Update configuration, which replaces the session's forest
+            recordSession(SessionEvent.EVICT);
+            simulationService.getConfig().setRecordIgnitionSteps(configDTO.isRecordIgnitionSteps());
+            simulationService.updateConfiguration(
+                configDTO.getForestHeight(),
+                configDTO.getForestWidth(),
+                configDTO.getFirePropagationProbability(),
+                configDTO.getFireInitialPositions().toArray(new int[0][])
+            );
+            recordSession(SessionEvent.CREATE);
+            untilSpec = null;
+            
+            // Reset simulation
+            simulationService.resetSimulation();
+            currentStep = 0;
+            stateVersion++;
+            
+            // Return current state
+            return getCurrentState();
         }
-        
-        // Update configuration
-        simulationService.updateConfiguration(
-            configDTO.getForestHeight(),
-            configDTO.getForestWidth(),
-            configDTO.getFirePropagationProbability(),
-            initialPositions.stream()
-                .map(p -> p.x + "," + p.y)
-                .collect(Collectors.joining(";"))
-        );
-        
-        // Reset simulation
-        simulationService.resetSimulation();
-        currentStep = 0;
-        
-        // Return current state
-        return getCurrentState();
     }
     
     public ForestStateDTO executeStep() {
-        boolean hasMoreSteps = simulationService.executeStep();
-        currentStep++;
-        
+        synchronized (stateLock) {
+            boolean hasMoreSteps = simulationService.executeStep();
+            currentStep++;
+            
+            ForestStateDTO stateDTO = getCurrentState();
+            stateDTO.setComplete(!hasMoreSteps);
+            
+            return stateDTO;
+        }
+    }
+    
+    public ForestStateDTO executeSteps(int count) {
+        synchronized (stateLock) {
+            if (count <= 0) {
+                throw new IllegalArgumentException("Step count must be positive");
+            }
+            
+            // Run all steps server-side and only build the final state
+            StepSummary summary = new StepSummary();
+            int executed = simulationService.runSteps(count, summary);
+            currentStep += executed;
+            
+            return getSummarizedState(summary, executed);
+        }
+    }
+    
+    public ForestStateDTO executeUntilExtinct() {
+        synchronized (stateLock) {
+            if (simulationService.getConfig().isContinuous()) {
+                throw new IllegalArgumentException("A continuous regrowth simulation never becomes extinct");
+            }
+            
+            int stepsBefore = simulationService.getStepCount();
+            StepSummary summary = new StepSummary();
+            int executed = simulationService.runToCompletion(summary) - stepsBefore;
+            currentStep += executed;
+            
+            return getSummarizedState(summary, executed);
+        }
+    }
+    
+    /**
+     * Runs until any of the given stop conditions holds, the fire dies out or a step limit is
+     * reached. The parsed conditions are kept while the spec stays the same, so successive calls
+     * continue from the fire front instead of reading the grid again.
+     * 
+     * @param spec Comma-separated conditions, e.g. "spanning" or "edge=top,burned=25%"
+     * @param limit The maximum number of steps, or null for no limit
+     * @return The final state with the per-step counts and the conditions that held
+     * @throws IllegalArgumentException If a condition is malformed, the limit is not positive,
+     *         or the limit is missing in the regrowth mode
+     */
+    public ForestStateDTO executeUntil(String spec, Integer limit) throws IllegalArgumentException {
+        synchronized (stateLock) {
+            if (limit != null && limit <= 0) {
+                throw new IllegalArgumentException("Step count must be positive");
+            }
+            if (limit == null && simulationService.getConfig().isContinuous()) {
+                throw new IllegalArgumentException("A continuous regrowth simulation needs a step count");
+            }
+            if (!spec.equals(untilSpec)) {
+                untilCondition = StopCondition.parse(spec, simulationService.getConfig().getNeighbourhood(),
+                    simulationService.getHeight(), simulationService.getWidth());
+                untilSpec = spec;
+            }
+            
+            StepSummary summary = new StepSummary();
+            int executed = simulationService.runUntil(untilCondition, limit == null ? -1 : limit, summary);
+            currentStep += executed;
+            
+            ForestStateDTO stateDTO = getSummarizedState(summary, executed);
+            if (simulationService.isConditionMet()) {
+                stateDTO.getSummary().setStoppedBy(untilCondition.getName());
+            }
+            return stateDTO;
+        }
+    }
+    
+    private ForestStateDTO getSummarizedState(StepSummary summary, int executed) {
         ForestStateDTO stateDTO = getCurrentState();
-        stateDTO.setComplete(!hasMoreSteps);
-        
+        stateDTO.setSummary(new StepSummaryDTO(
+            executed,
+            summary.getTreeCounts(),
+            summary.getFireCounts(),
+            summary.getAshCounts()
+        ));
         return stateDTO;
     }
     
+    public IgnitionResultDTO addIgnitions(InputStream body, boolean binary) throws IOException {
+        // Positions are decoded straight from the request body into packed int pairs
+        FirePositions positions = binary ? FirePositions.readBinary(body) : FirePositions.readText(body);
+        int ignited;
+        synchronized (stateLock) {
+            ignited = simulationService.addIgnitions(positions);
+            stateVersion++;
+        }
+        return new IgnitionResultDTO(positions.size(), ignited);
+    }
+    
+    /**
+     * Queues interventions for the start of the next step, which may be a step of a run
+     * another request has in progress.
+     * 
+     * @param requests The interventions; a missing bottom or right bound repeats the top or left one
+     * @param apply true to apply the queue at once, for a simulation that is not being stepped
+     * @return The number of interventions queued and, if applied, the number of cells changed
+     * @throws IllegalArgumentException If an intervention has an unknown type or an empty area
+     */
+    public InterventionResultDTO submitInterventions(List<InterventionDTO> requests, boolean apply)
+            throws IllegalArgumentException {
+        // Validate the whole batch before queueing any of it
+        List<Intervention> interventions = new ArrayList<>(requests.size());
+        for (InterventionDTO request : requests) {
+            if (request.getType() == null) {
+                throw new IllegalArgumentException("Intervention type is required");
+            }
+            interventions.add(new Intervention(InterventionType.parse(request.getType()), request.getTop(), request.getLeft(),
+                request.getBottom() == null ? request.getTop() : request.getBottom(),
+                request.getRight() == null ? request.getLeft() : request.getRight()));
+        }
+        for (Intervention intervention : interventions) {
+            simulationService.submitIntervention(intervention);
+        }
+        
+        int changed = 0;
+        if (apply) {
+            synchronized (stateLock) {
+                changed = simulationService.applyInterventions();
+                stateVersion++;
+            }
+        }
+        return new InterventionResultDTO(interventions.size(), changed);
+    }
+    
     public ForestStateDTO resetSimulation() {
-        simulationService.resetSimulation();
-        currentStep = 0;
-        return getCurrentState();
+        synchronized (stateLock) {
+            simulationService.resetSimulation();
+            currentStep = 0;
+            stateVersion++;
+            return getCurrentState();
+        }
     }
     
     public ForestStateDTO getCurrentState() {
+        return dtoBuildTimer.record(this::buildCurrentState);
+    }
+    
+    public Forest getForestSnapshot() {
+        // A fork shares the grid copy-on-write, so later steps cannot change what is being exported
+        synchronized (stateLock) {
+            return simulationService.getForest().fork();
+        }
+    }
+    
+    /**
+     * Creates an exporter of a snapshot of the current grid. The snapshot and its step are taken
+     * together, so a concurrent step cannot change the grid or make it disagree with the step.
+     * 
+     * @return The exporter
+     */
+    public GridExporter createExporter() {
+        synchronized (stateLock) {
+            return new GridExporter(getForestSnapshot(), currentStep);
+        }
+    }
+    
+    public int getCurrentStep() {
+        return currentStep;
+    }
+    
+    /**
+     * Gets the ignition steps of a window of the grid, copied row by row without forking the forest.
+     * 
+     * @param row The first row, or null for 0
+     * @param col The first column, or null for 0
+     * @param height The number of rows, or null for the rest of the grid
+     * @param width The number of columns, or null for the rest of the grid
+     * @return The ignition steps of the window in row-major order, -1 for cells that never ignited
+     * @throws IllegalStateException If ignition steps are not recorded
+     * @throws IllegalArgumentException If the window is not inside the grid
+     */
+    public IgnitionStepsDTO getIgnitionSteps(Integer row, Integer col, Integer height, Integer width)
+            throws IllegalStateException, IllegalArgumentException {
+        Forest forest = simulationService.getForest();
+        int firstRow = row == null ? 0 : row;
+        int firstCol = col == null ? 0 : col;
+        int windowHeight = height == null ? forest.getHeight() - firstRow : height;
+        int windowWidth = width == null ? forest.getWidth() - firstCol : width;
+        if (windowHeight < 0 || windowWidth < 0) {
+            throw new IllegalArgumentException("Window must start inside the forest");
+        }
+        
+        int[] steps = new int[windowHeight * windowWidth];
+        forest.copyIgnitionSteps(firstRow, firstCol, windowHeight, windowWidth, steps);
+        return new IgnitionStepsDTO(currentStep, firstRow, firstCol, windowHeight, windowWidth, steps);
+    }
+    
+    /**
+     * Labels the burned clusters of the current grid. The analysis runs on a fork, so it sees
+     * one consistent step even if the simulation advances meanwhile.
+     * 
+     * @return The cluster sizes, largest cluster and spanning flags
+     */
+    public ClusterReportDTO getClusters() {
+        int step;
+        Forest snapshot;
+        synchronized (stateLock) {
+            step = currentStep;
+            snapshot = getForestSnapshot();
+        }
+        ClusterReport report;
+        synchronized (clusterLock) {
+            Neighbourhood neighbourhood = simulationService.getConfig().getNeighbourhood();
+            if (clusterAnalyzer == null || clusterNeighbourhood != neighbourhood) {
+                // The analyzer keeps its label arrays between requests
+                clusterAnalyzer = new ClusterAnalyzer(neighbourhood, Runtime.getRuntime().availableProcessors());
+                clusterNeighbourhood = neighbourhood;
+            }
+            report = clusterAnalyzer.analyze(snapshot);
+        }
+        return new ClusterReportDTO(step, report.getBurnedCells(), report.getClusterCount(), report.getLargestSize(),
+            report.getLargestCell(), report.isSpanningVertically(), report.isSpanningHorizontally(),
+            report.getSizes(), report.getCounts());
+    }
+    
+    /**
+     * Runs a Monte Carlo ensemble of the current configuration on threads of this process and
+     * returns its burn probability map. The session's own simulation is left untouched.
+     * 
+     * @param replicas The number of replicas
+     * @param seed The seed of the ensemble
+     * @param maxSteps The step limit of each replica, or -1 to run until no cell is burning
+     * @param bins The number of ignition-step histogram bins per cell, or 0 for probabilities only
+     * @param binWidth The number of steps per bin, or 0 to choose it from the step limit or forest size
+     * @return The burn probability map
+     * @throws IllegalArgumentException If the arguments are invalid
+     * @throws InterruptedException If the request thread is interrupted
+     */
+    public BurnProbabilityMap runEnsemble(int replicas, long seed, int maxSteps, int bins, int binWidth)
+            throws IllegalArgumentException, InterruptedException {
+        if (replicas <= 0) {
+            throw new IllegalArgumentException("Replica count must be positive");
+        }
+        SimulationConfig config = new SimulationConfig(simulationService.getConfig());
+        if (binWidth <= 0) {
+            binWidth = BurnProbabilityMap.defaultBinWidth(config.getForestHeight(), config.getForestWidth(), bins, maxSteps);
+        }
+        try (BatchRunner runner = new BatchRunner(config, Runtime.getRuntime().availableProcessors())) {
+            runner.enableBurnMap(bins, binWidth);
+            runner.run(new ReplicaBatch(0, replicas, seed, maxSteps), summary -> { });
+            return runner.takeBurnMap();
+        }
+    }
+    
+    /**
+     * Gets the entity tag of the current state. It changes with every step and whenever the
+     * state changes outside a step (initialisation, reconfiguration, reset or added ignitions),
+     * and includes an id drawn when the service starts, so tags are not reused after a restart.
+     * 
+     * @return The quoted entity tag
+     */
+    public String getStateTag() {
+        return "\"" + SESSION_ID + "-" + bootId + "-" + stateVersion + "-" + currentStep + "\"";
+    }
+    
+    /**
+     * Gets the current state serialised to JSON. The payload is built once per state and
+     * shared by every reader until the state changes; concurrent readers of a new state
+     * wait for a single serialisation instead of each building their own.
+     * 
+     * @return The serialised state and its entity tag
+     * @throws IOException If the state cannot be serialised
+     */
+    public SerializedState getSerializedState() throws IOException {
+        SerializedState cached = serializedState;
+        if (cached != null && cached.getTag().equals(getStateTag())) {
+            stateCacheHits.increment();
+            return cached;
+        }
+        
+        synchronized (serializationLock) {
+            String tag;
+            ForestStateDTO state;
+            synchronized (stateLock) {
+                // No step can run between reading the tag and building the state it names
+                tag = getStateTag();
+                cached = serializedState;
+                if (cached != null && cached.getTag().equals(tag)) {
+                    stateCacheHits.increment();
+                    return cached;
+                }
+                stateCacheMisses.increment();
+                state = getCurrentState();
+            }
+            SerializationEvent event = new SerializationEvent();
+            event.begin();
+            long start = System.nanoTime();
+            byte[] json = objectMapper.writeValueAsBytes(state);
+            serializationTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            event.end();
+            if (event.shouldCommit()) {
+                event.payloadType = ForestStateDTO.class.getSimpleName();
+                event.payloadBytes = json.length;
+                event.commit();
+            }
+            
+            cached = new SerializedState(tag, json);
+            serializedState = cached;
+            return cached;
+        }
+    }
+    
+    private ForestStateDTO buildCurrentState() {
         Forest forest = simulationService.getForest();
         Cell[][] grid = forest.getGrid();
         
@@ -79,38 +464,47 @@ public class ApiSimulationService {
     }
     
     public ForestStateDTO updateConfiguration(SimulationConfigDTO configDTO) {
-        // Convert DTO to domain model
-        List<Point> initialPositions = new ArrayList<>();
-        for (int[] position : configDTO.getFireInitialPositions()) {
-            initialPositions.add(new Point(position[0], position[1]));
+        synchronized (stateLock) {
+            // Update configuration, which replaces the session's forest
+            recordSession(SessionEvent.EVICT);
+            simulationService.getConfig().setRecordIgnitionSteps(configDTO.isRecordIgnitionSteps());
+            simulationService.updateConfiguration(
+                configDTO.getForestHeight(),
+                configDTO.getForestWidth(),
+                configDTO.getFirePropagationProbability(),
+                configDTO.getFireInitialPositions().toArray(new int[0][])
+            );
+            recordSession(SessionEvent.CREATE);
+            untilSpec = null;
+            
+            // Reset simulation with new configuration
+            return resetSimulation();
         }
-        
-        // Update configuration
-        simulationService.updateConfiguration(
-            configDTO.getForestHeight(),
-            configDTO.getForestWidth(),
-            configDTO.getFirePropagationProbability(),
-            initialPositions.stream()
-                .map(p -> p.x + "," + p.y)
-                .collect(Collectors.joining(";"))
-        );
-        
-        // Reset simulation with new configuration
-        return resetSimulation();
     }
     
     private boolean isSimulationComplete() {
-        Forest forest = simulationService.getForest();
-        Cell[][] grid = forest.getGrid();
+        return !simulationService.getForest().hasFireCells();
+    }
+    
+    /**
+     * A state serialised to JSON together with its entity tag.
+     */
+    public static final class SerializedState {
         
-        for (int i = 0; i < grid.length; i++) {
-            for (int j = 0; j < grid[i].length; j++) {
-                if (grid[i][j].getState() == Cell.State.FIRE) {
-                    return false;
-                }
-            }
+        private final String tag;
+        private final byte[] json;
+        
+        SerializedState(String tag, byte[] json) {
+            this.tag = tag;
+            this.json = json;
         }
         
-        return true;
+        public String getTag() {
+            return tag;
+        }
+        
+        public byte[] getJson() {
+            return json;
+        }
     }
 }
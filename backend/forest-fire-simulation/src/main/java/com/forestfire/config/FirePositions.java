@@ -0,0 +1,295 @@
+package com.forestfire.config;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * A list of fire positions stored as packed (row, col) int pairs.
+ * Positions are parsed byte by byte from text or decoded from binary int pairs,
+ * without intermediate strings or per-position objects, so millions of points load quickly.
+ * 
+ * Text format: "row,col" pairs separated by ';' or line breaks, with optional whitespace.
+ * Lines starting with a letter or '#' (headers, comments) are skipped.
+ * Binary format: consecutive big-endian 32-bit (row, col) pairs.
+ */
+public class FirePositions {
+    
+    private static final int BUFFER_SIZE = 1 << 16;
+    
+    private int[] coordinates = new int[32];
+    private int count;
+    
+    /**
+     * Parses fire positions from a string such as "row1,col1;row2,col2".
+     * 
+     * @param text The text to parse
+     * @return The parsed positions
+     * @throws IllegalArgumentException If the text contains a malformed position
+     */
+    public static FirePositions parse(CharSequence text) throws IllegalArgumentException {
+        TextParser parser = new TextParser();
+        for (int i = 0; i < text.length(); i++) {
+            parser.accept(text.charAt(i));
+        }
+        return parser.finish();
+    }
+    
+    /**
+     * Reads fire positions in the text format from a stream.
+     * 
+     * @param input The stream to read; it is not closed
+     * @return The parsed positions
+     * @throws IOException If the stream cannot be read
+     * @throws IllegalArgumentException If the text contains a malformed position
+     */
+    public static FirePositions readText(InputStream input) throws IOException, IllegalArgumentException {
+        TextParser parser = new TextParser();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                parser.accept(buffer[i]);
+            }
+        }
+        return parser.finish();
+    }
+    
+    /**
+     * Reads fire positions in the binary format from a stream.
+     * 
+     * @param input The stream to read; it is not closed
+     * @return The decoded positions
+     * @throws IOException If the stream cannot be read or ends inside a pair
+     */
+    public static FirePositions readBinary(InputStream input) throws IOException {
+        FirePositions positions = new FirePositions();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int filled = 0;
+        int read;
+        while ((read = input.read(buffer, filled, buffer.length - filled)) != -1) {
+            filled += read;
+            
+            // Decode every complete pair and keep the partial tail for the next read
+            int usable = filled - filled % 8;
+            for (int i = 0; i < usable; i += 8) {
+                positions.add(readInt(buffer, i), readInt(buffer, i + 4));
+            }
+            System.arraycopy(buffer, usable, buffer, 0, filled - usable);
+            filled -= usable;
+        }
+        if (filled != 0) {
+            throw new EOFException("Binary fire positions end inside a (row, col) pair");
+        }
+        return positions;
+    }
+    
+    /**
+     * Loads fire positions from a file. Files ending in ".bin" are read as binary int pairs,
+     * anything else as text.
+     * 
+     * @param path Path to the file
+     * @return The loaded positions
+     * @throws IOException If the file cannot be read
+     * @throws IllegalArgumentException If the text contains a malformed position
+     */
+    public static FirePositions load(String path) throws IOException, IllegalArgumentException {
+        try (InputStream input = new BufferedInputStream(Files.newInputStream(Paths.get(path)), BUFFER_SIZE)) {
+            return path.endsWith(".bin") ? readBinary(input) : readText(input);
+        }
+    }
+    
+    /**
+     * Decodes a big-endian int.
+     * 
+     * @param buffer The buffer to read from
+     * @param offset The offset of the first byte
+     * @return The decoded int
+     */
+    private static int readInt(byte[] buffer, int offset) {
+        return (buffer[offset] << 24) | ((buffer[offset + 1] & 0xFF) << 16)
+            | ((buffer[offset + 2] & 0xFF) << 8) | (buffer[offset + 3] & 0xFF);
+    }
+    
+    /**
+     * Appends a position.
+     * 
+     * @param row The row of the position
+     * @param col The column of the position
+     */
+    public void add(int row, int col) {
+        if (2 * count + 2 > coordinates.length) {
+            coordinates = Arrays.copyOf(coordinates, coordinates.length * 2);
+        }
+        coordinates[2 * count] = row;
+        coordinates[2 * count + 1] = col;
+        count++;
+    }
+    
+    /**
+     * Checks that every position lies inside a forest of the given size.
+     * 
+     * @param height The height of the forest
+     * @param width The width of the forest
+     * @throws IllegalArgumentException If a position is outside the forest
+     */
+    public void validate(int height, int width) throws IllegalArgumentException {
+        for (int i = 0; i < count; i++) {
+            int row = coordinates[2 * i];
+            int col = coordinates[2 * i + 1];
+            if (row < 0 || row >= height || col < 0 || col >= width) {
+                throw new IllegalArgumentException(
+                    "Initial fire position (" + row + "," + col + ") is outside the forest");
+            }
+        }
+    }
+    
+    /**
+     * Gets the number of positions.
+     * 
+     * @return The number of positions
+     */
+    public int size() {
+        return count;
+    }
+    
+    /**
+     * Gets the packed coordinates: row of position i at index 2i, column at 2i+1.
+     * Only the first 2 * size() entries are valid.
+     * 
+     * @return The packed coordinate array
+     */
+    public int[] getCoordinates() {
+        return coordinates;
+    }
+    
+    /**
+     * Converts the positions to an array of [row, col] pairs.
+     * 
+     * @return 2D array of positions where each position is [row, col]
+     */
+    public int[][] toArray() {
+        int[][] positions = new int[count][];
+        for (int i = 0; i < count; i++) {
+            positions[i] = new int[]{coordinates[2 * i], coordinates[2 * i + 1]};
+        }
+        return positions;
+    }
+    
+    /**
+     * Incremental parser for the text format, fed one character at a time.
+     */
+    private static class TextParser {
+        
+        private final FirePositions positions = new FirePositions();
+        private int line = 1;
+        private int field;
+        private long value;
+        private int digits;
+        private boolean negative;
+        private int row;
+        private boolean skipLine;
+        private boolean lineStart = true;
+        
+        /**
+         * Consumes one character.
+         * 
+         * @param c The character
+         * @throws IllegalArgumentException If the character is not valid at this point
+         */
+        void accept(int c) throws IllegalArgumentException {
+            if (c == '\n') {
+                endPosition();
+                line++;
+                skipLine = false;
+                lineStart = true;
+                return;
+            }
+            if (skipLine) {
+                return;
+            }
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                digits++;
+                if (digits > 10) {
+                    throw error();
+                }
+                lineStart = false;
+            } else if (c == '-' && digits == 0 && !negative) {
+                negative = true;
+                lineStart = false;
+            } else if (c == ',') {
+                if (field != 0 || digits == 0) {
+                    throw error();
+                }
+                row = takeValue();
+                field = 1;
+            } else if (c == ';') {
+                endPosition();
+            } else if (c == ' ' || c == '\t' || c == '\r') {
+                // Whitespace is ignored
+            } else if (lineStart) {
+                // A header or comment line
+                skipLine = true;
+            } else {
+                throw error();
+            }
+        }
+        
+        /**
+         * Completes the current position, if any.
+         * 
+         * @throws IllegalArgumentException If only part of a position was read
+         */
+        private void endPosition() throws IllegalArgumentException {
+            if (field == 1 && digits > 0) {
+                positions.add(row, takeValue());
+            } else if (field != 0 || digits != 0 || negative) {
+                throw error();
+            }
+            field = 0;
+        }
+        
+        /**
+         * Returns the number read so far and resets the accumulator.
+         * 
+         * @return The parsed number
+         */
+        private int takeValue() {
+            long result = negative ? -value : value;
+            if (result != (int) result) {
+                throw error();
+            }
+            value = 0;
+            digits = 0;
+            negative = false;
+            return (int) result;
+        }
+        
+        /**
+         * Finishes parsing.
+         * 
+         * @return The parsed positions
+         * @throws IllegalArgumentException If the input ends inside a position
+         */
+        FirePositions finish() throws IllegalArgumentException {
+            if (!skipLine) {
+                endPosition();
+            }
+            return positions;
+        }
+        
+        /**
+         * Builds the error for a malformed position.
+         * 
+         * @return The exception to throw
+         */
+        private IllegalArgumentException error() {
+            return new IllegalArgumentException("Invalid fire position format at line " + line);
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package com.forestfire.config;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generates random initial fire positions following an ignition pattern.
+ * Every generator runs in time proportional to the number of ignitions rather than the number of cells,
+ * and the same seed always produces the same positions for a given forest size.
+ */
+public class IgnitionGenerator {
+    
+    private static final int DISK_CANDIDATES = 30;
+    private static final int CLUSTER_ATTEMPTS = 100;
+    
+    private final IgnitionPattern pattern;
+    private final double density;
+    private final long seed;
+    private int clusterCount = 1;
+    private double clusterRadius = 5;
+    private double spacing = 1;
+    
+    /**
+     * Creates a generator for a pattern.
+     * 
+     * @param pattern The spatial distribution of the ignitions
+     * @param density The expected fraction of cells that ignite; for the Poisson-disk pattern an upper bound, 0 for none
+     * @param seed The seed of the random number generator
+     */
+    public IgnitionGenerator(IgnitionPattern pattern, double density, long seed) {
+        this.pattern = pattern;
+        this.density = density;
+        this.seed = seed;
+    }
+    
+    /**
+     * Sets the cluster parameters of the clustered pattern.
+     * 
+     * @param clusterCount The number of cluster centres
+     * @param clusterRadius The standard deviation of the distance from an ignition to its centre, in cells
+     */
+    public void setClusters(int clusterCount, double clusterRadius) {
+        this.clusterCount = clusterCount;
+        this.clusterRadius = clusterRadius;
+    }
+    
+    /**
+     * Sets the minimum distance between ignitions of the Poisson-disk pattern. Below sqrt(2) cells
+     * two ignitions could fall in the same cell, so at most one is kept per cell.
+     * 
+     * @param spacing The minimum distance in cells
+     * @throws IllegalArgumentException If the spacing is less than one cell
+     */
+    public void setSpacing(double spacing) throws IllegalArgumentException {
+        if (!(spacing >= 1)) {
+            throw new IllegalArgumentException("Poisson-disk ignition spacing must be at least one cell");
+        }
+        this.spacing = spacing;
+    }
+    
+    /**
+     * Generates the ignitions for a forest.
+     * 
+     * @param height The height of the forest
+     * @param width The width of the forest
+     * @return The generated positions, all inside the forest
+     */
+    public FirePositions generate(int height, int width) {
+        Random random = new Random(seed);
+        switch (pattern) {
+            case CLUSTERED:
+                return generateClustered(random, height, width);
+            case POISSON_DISK:
+                return generatePoissonDisk(random, height, width);
+            default:
+                return generateUniform(random, height, width);
+        }
+    }
+    
+    /**
+     * Selects each cell independently with probability density, jumping straight from one
+     * selected cell to the next with a geometric skip instead of drawing once per cell.
+     * 
+     * @param random The random number generator
+     * @param height The height of the forest
+     * @param width The width of the forest
+     * @return The selected positions
+     */
+    private FirePositions generateUniform(Random random, int height, int width) {
+        FirePositions positions = new FirePositions();
+        if (density <= 0) {
+            return positions;
+        }
+        
+        long cells = (long) height * width;
+        double logMiss = Math.log1p(-density);
+        long index = -1;
+        while (true) {
+            if (logMiss == Double.NEGATIVE_INFINITY) {
+                index++;
+            } else {
+                double gap = Math.floor(Math.log(1.0 - random.nextDouble()) / logMiss);
+                index = gap >= cells ? cells : index + 1 + (long) gap;
+            }
+            if (index >= cells) {
+                return positions;
+            }
+            positions.add((int) (index / width), (int) (index % width));
+        }
+    }
+    
+    /**
+     * Scatters density * cells ignitions evenly over random cluster centres, each displaced from
+     * its centre by a Gaussian offset. Offsets that leave the forest are redrawn a bounded number of
+     * times before being clamped to the edge.
+     * 
+     * @param random The random number generator
+     * @param height The height of the forest
+     * @param width The width of the forest
+     * @return The generated positions
+     */
+    private FirePositions generateClustered(Random random, int height, int width) {
+        FirePositions positions = new FirePositions();
+        long target = Math.round(density * height * width);
+        if (target <= 0) {
+            return positions;
+        }
+        
+        for (int c = 0; c < clusterCount; c++) {
+            double centreRow = random.nextDouble() * height;
+            double centreCol = random.nextDouble() * width;
+            long children = target / clusterCount + (c < target % clusterCount ? 1 : 0);
+            for (long k = 0; k < children; k++) {
+                double row = 0;
+                double col = 0;
+                for (int attempt = 0; attempt < CLUSTER_ATTEMPTS; attempt++) {
+                    row = centreRow + random.nextGaussian() * clusterRadius;
+                    col = centreCol + random.nextGaussian() * clusterRadius;
+                    if (row >= 0 && row < height && col >= 0 && col < width) {
+                        break;
+                    }
+                }
+                positions.add(clamp(row, height), clamp(col, width));
+            }
+        }
+        return positions;
+    }
+    
+    /**
+     * Generates ignitions at least spacing apart, up to the count the density caps. Points are
+     * first thrown uniformly over the forest until they start to miss, which spreads a capped count
+     * over the whole forest; Bridson's algorithm then grows new points around the existing ones to
+     * fill the gaps between them. Both stop as soon as the cap is reached, and the background grid
+     * is hashed, so time and memory follow the number of ignitions rather than the forest size.
+     * 
+     * @param random The random number generator
+     * @param height The height of the forest
+     * @param width The width of the forest
+     * @return The generated positions
+     */
+    private FirePositions generatePoissonDisk(Random random, int height, int width) {
+        long limit = density > 0 ? Math.round(density * height * width) : Long.MAX_VALUE;
+        DiskSampler sampler = new DiskSampler(height, width, spacing);
+        
+        // Throw points uniformly until DISK_CANDIDATES in a row are too close to the others
+        int misses = 0;
+        while (sampler.count < limit && misses < DISK_CANDIDATES) {
+            if (sampler.place(random.nextDouble() * height, random.nextDouble() * width)) {
+                misses = 0;
+            } else {
+                misses++;
+            }
+        }
+        
+        // Grow the pattern around every point placed so far
+        int[] active = new int[Math.max(sampler.count, 16)];
+        int activeCount = sampler.count;
+        for (int i = 0; i < activeCount; i++) {
+            active[i] = i;
+        }
+        while (activeCount > 0 && sampler.count < limit) {
+            int slot = random.nextInt(activeCount);
+            int source = active[slot];
+            boolean placed = false;
+            
+            for (int k = 0; k < DISK_CANDIDATES && !placed; k++) {
+                // Candidate in the annulus between spacing and twice the spacing
+                double angle = random.nextDouble() * 2 * Math.PI;
+                double distance = spacing * (1 + random.nextDouble());
+                placed = sampler.place(sampler.rows[source] + distance * Math.sin(angle),
+                    sampler.cols[source] + distance * Math.cos(angle));
+            }
+            
+            if (placed) {
+                if (activeCount == active.length) {
+                    active = Arrays.copyOf(active, activeCount * 2);
+                }
+                active[activeCount++] = sampler.count - 1;
+            } else {
+                // No room left around this point
+                active[slot] = active[--activeCount];
+            }
+        }
+        
+        FirePositions positions = new FirePositions();
+        for (int i = 0; i < sampler.count; i++) {
+            positions.add((int) sampler.rows[i], (int) sampler.cols[i]);
+        }
+        return positions;
+    }
+    
+    /**
+     * The points of a Poisson-disk pattern, indexed by a background grid of cells spacing / sqrt(2)
+     * wide so each candidate checks a constant number of neighbours. Only the occupied background
+     * cells are stored, in an open-addressing hash table.
+     */
+    private static final class DiskSampler {
+        
+        private final int height;
+        private final int width;
+        private final double cellSize;
+        private final double minDistanceSquared;
+        private final long gridCols;
+        private double[] rows = new double[64];
+        private double[] cols = new double[64];
+        private int count;
+        private long[] keys = newKeys(64);
+        private int[] points = new int[64];
+        
+        /**
+         * Creates an empty set of points.
+         * 
+         * @param height The height of the forest
+         * @param width The width of the forest
+         * @param spacing The minimum distance between points
+         */
+        DiskSampler(int height, int width, double spacing) {
+            this.height = height;
+            this.width = width;
+            this.cellSize = spacing / Math.sqrt(2);
+            this.minDistanceSquared = spacing * spacing;
+            this.gridCols = (long) Math.ceil(width / cellSize);
+        }
+        
+        /**
+         * Adds a point if it is inside the forest, keeps the minimum distance to every existing point
+         * and is not in the same forest cell as one of them, which a spacing below sqrt(2) allows.
+         * 
+         * @param row The row coordinate
+         * @param col The column coordinate
+         * @return true if the point was added
+         */
+        boolean place(double row, double col) {
+            if (row < 0 || row >= height || col < 0 || col >= width) {
+                return false;
+            }
+            long gridRow = (long) (row / cellSize);
+            long gridCol = (long) (col / cellSize);
+            for (long r = Math.max(0, gridRow - 2); r <= gridRow + 2; r++) {
+                for (long c = Math.max(0, gridCol - 2); c <= Math.min(gridCols - 1, gridCol + 2); c++) {
+                    int point = find(r * gridCols + c);
+                    if (point >= 0) {
+                        double dr = rows[point] - row;
+                        double dc = cols[point] - col;
+                        if (dr * dr + dc * dc < minDistanceSquared
+                                || ((int) rows[point] == (int) row && (int) cols[point] == (int) col)) {
+                            return false;
+                        }
+                    }
+                }
+            }
+            
+            if (count == rows.length) {
+                rows = Arrays.copyOf(rows, count * 2);
+                cols = Arrays.copyOf(cols, count * 2);
+            }
+            rows[count] = row;
+            cols[count] = col;
+            insert(gridRow * gridCols + gridCol, count++);
+            return true;
+        }
+        
+        /**
+         * Finds the point in a background cell.
+         * 
+         * @param key The row-major index of the background cell
+         * @return The index of the point, or -1 if the cell is empty
+         */
+        private int find(long key) {
+            int mask = keys.length - 1;
+            for (int slot = hash(key, mask); keys[slot] != -1; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return points[slot];
+                }
+            }
+            return -1;
+        }
+        
+        /**
+         * Stores the point of a background cell, keeping the table at most half full.
+         * 
+         * @param key The row-major index of the background cell
+         * @param point The index of the point
+         */
+        private void insert(long key, int point) {
+            if (2 * count > keys.length) {
+                long[] oldKeys = keys;
+                int[] oldPoints = points;
+                keys = newKeys(oldKeys.length * 2);
+                points = new int[keys.length];
+                for (int k = 0; k < oldKeys.length; k++) {
+                    if (oldKeys[k] != -1) {
+                        put(oldKeys[k], oldPoints[k]);
+                    }
+                }
+            }
+            put(key, point);
+        }
+        
+        /**
+         * Stores a key in the first free slot of its probe sequence.
+         * 
+         * @param key The row-major index of the background cell
+         * @param point The index of the point
+         */
+        private void put(long key, int point) {
+            int mask = keys.length - 1;
+            int slot = hash(key, mask);
+            while (keys[slot] != -1) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            points[slot] = point;
+        }
+        
+        private static int hash(long key, int mask) {
+            return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        }
+        
+        private static long[] newKeys(int capacity) {
+            long[] keys = new long[capacity];
+            Arrays.fill(keys, -1);
+            return keys;
+        }
+    }
+    
+    /**
+     * Converts a continuous coordinate to a cell index inside [0, size).
+     * 
+     * @param value The coordinate
+     * @param size The number of cells along the axis
+     * @return The cell index
+     */
+    private static int clamp(double value, int size) {
+        return (int) Math.max(0, Math.min(size - 1, Math.floor(value)));
+    }
+    
+    /**
+     * Gets the ignition pattern.
+     * 
+     * @return The pattern
+     */
+    public IgnitionPattern getPattern() {
+        return pattern;
+    }
+    
+    /**
+     * Gets the ignition density.
+     * 
+     * @return The expected fraction of cells that ignite
+     */
+    public double getDensity() {
+        return density;
+    }
+    
+    /**
+     * Gets the seed.
+     * 
+     * @return The seed of the random number generator
+     */
+    public long getSeed() {
+        return seed;
+    }
+}
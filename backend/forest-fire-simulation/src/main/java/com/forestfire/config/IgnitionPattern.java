@@ -0,0 +1,26 @@
+package com.forestfire.config;
+
+/**
+ * Spatial distributions for randomly placed initial fires.
+ */
+public enum IgnitionPattern {
+    UNIFORM, // Every cell ignites independently with the configured density
+    CLUSTERED, // Ignitions scatter around random centres with a Gaussian spread (Thomas process)
+    POISSON_DISK; // Ignitions keep a minimum distance from each other
+    
+    /**
+     * Parses a pattern name, ignoring case and accepting "-" in place of "_".
+     * 
+     * @param name The pattern name, e.g. "uniform" or "poisson-disk"
+     * @return The matching pattern
+     * @throws IllegalArgumentException If the name is not a known pattern
+     */
+    public static IgnitionPattern parse(String name) throws IllegalArgumentException {
+        try {
+            return valueOf(name.trim().toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(
+                "Unknown ignition pattern: " + name + " (expected uniform, clustered or poisson_disk)");
+        }
+    }
+}
@@ -1,10 +1,12 @@
 package com.forestfire.config;
 
+import com.forestfire.model.Neighbourhood;
+import com.forestfire.model.ProbabilityMap;
+import com.forestfire.model.PropagationEngine;
+
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Properties;
 
 /**
@@ -17,6 +19,19 @@ public class SimulationConfig {
     private int forestWidth;
     private double firePropagationProbability;
     private int[][] initialFirePositions;
+    private String initialFirePositionsFile;
+    private FirePositions bulkFirePositions;
+    private IgnitionGenerator randomIgnitions;
+    private String propagationMapPath;
+    private ProbabilityMap propagationMap;
+    private double windSpeed;
+    private double windDirection;
+    private Neighbourhood neighbourhood = Neighbourhood.VON_NEUMANN;
+    private double regrowthProbability;
+    private double lightningProbability;
+    private PropagationEngine engine = PropagationEngine.SYNCHRONOUS;
+    private boolean recordIgnitionSteps;
+    private boolean keyedRandom;
     private String configFilePath;
     
     /**
@@ -31,6 +46,19 @@ public class SimulationConfig {
         loadConfig();
     }
     
+    /**
+     * Creates a new simulation configuration from properties, for example ones received over the network.
+     * Files the properties refer to are read from the local file system.
+     * 
+     * @param properties The configuration properties
+     * @throws IOException If a file the properties refer to cannot be read
+     * @throws IllegalArgumentException If the configuration contains invalid values
+     */
+    public SimulationConfig(Properties properties) throws IOException, IllegalArgumentException {
+        this.configFilePath = null;
+        loadProperties(properties);
+    }
+    
     /**
      * Creates a new simulation configuration with default values.
      * This constructor is provided for API compatibility.
@@ -48,6 +76,33 @@ public class SimulationConfig {
         this.configFilePath = null;
     }
     
+    /**
+     * Creates a copy of another configuration, so that one run's settings can be changed
+     * without affecting the other. Loaded position files and probability maps are shared.
+     * 
+     * @param other The configuration to copy
+     */
+    public SimulationConfig(SimulationConfig other) {
+        this.forestHeight = other.forestHeight;
+        this.forestWidth = other.forestWidth;
+        this.firePropagationProbability = other.firePropagationProbability;
+        this.initialFirePositions = other.initialFirePositions;
+        this.initialFirePositionsFile = other.initialFirePositionsFile;
+        this.bulkFirePositions = other.bulkFirePositions;
+        this.randomIgnitions = other.randomIgnitions;
+        this.propagationMapPath = other.propagationMapPath;
+        this.propagationMap = other.propagationMap;
+        this.windSpeed = other.windSpeed;
+        this.windDirection = other.windDirection;
+        this.neighbourhood = other.neighbourhood;
+        this.regrowthProbability = other.regrowthProbability;
+        this.lightningProbability = other.lightningProbability;
+        this.engine = other.engine;
+        this.recordIgnitionSteps = other.recordIgnitionSteps;
+        this.keyedRandom = other.keyedRandom;
+        this.configFilePath = other.configFilePath;
+    }
+    
     /**
      * Loads configuration from the properties file.
      * 
@@ -56,24 +111,73 @@ public class SimulationConfig {
      */
     private void loadConfig() throws IOException, IllegalArgumentException {
         Properties properties = new Properties();
-        
         try (InputStream input = new FileInputStream(configFilePath)) {
             properties.load(input);
-            
-            // Parse forest dimensions
-            forestHeight = Integer.parseInt(properties.getProperty("forest.height", "10"));
-            forestWidth = Integer.parseInt(properties.getProperty("forest.width", "10"));
-            
-            // Parse fire propagation probability
-            firePropagationProbability = Double.parseDouble(
-                properties.getProperty("fire.propagation.probability", "0.5"));
-            
-            // Parse initial fire positions
-            String positionsStr = properties.getProperty("fire.initial.positions", "0,0");
-            initialFirePositions = parseFirePositions(positionsStr);
-            
-            // Validate configuration
-            validateConfig();
+        }
+        loadProperties(properties);
+    }
+    
+    /**
+     * Loads configuration from properties already read.
+     * 
+     * @param properties The configuration properties
+     * @throws IOException If a file the properties refer to cannot be read
+     * @throws IllegalArgumentException If the configuration contains invalid values
+     */
+    private void loadProperties(Properties properties) throws IOException, IllegalArgumentException {
+        // Parse forest dimensions
+        forestHeight = Integer.parseInt(properties.getProperty("forest.height", "10"));
+        forestWidth = Integer.parseInt(properties.getProperty("forest.width", "10"));
+        
+        // Parse fire propagation probability
+        firePropagationProbability = Double.parseDouble(
+            properties.getProperty("fire.propagation.probability", "0.5"));
+        
+        // Parse initial fire positions
+        String positionsStr = properties.getProperty("fire.initial.positions", "0,0");
+        initialFirePositions = parseFirePositions(positionsStr);
+        
+        // Parse wind and neighbourhood
+        windSpeed = Double.parseDouble(properties.getProperty("wind.speed", "0"));
+        windDirection = Double.parseDouble(properties.getProperty("wind.direction", "0"));
+        neighbourhood = Neighbourhood.parse(properties.getProperty("fire.neighbourhood", "von_neumann"));
+        
+        // Parse the Drossel-Schwabl regrowth and lightning probabilities
+        regrowthProbability = Double.parseDouble(properties.getProperty("fire.regrowth.probability", "0"));
+        lightningProbability = Double.parseDouble(properties.getProperty("fire.lightning.probability", "0"));
+        
+        // Parse the propagation engine
+        engine = PropagationEngine.parse(properties.getProperty("simulation.engine", "synchronous"));
+        
+        // Parse whether the step each cell ignites at is recorded
+        recordIgnitionSteps = Boolean.parseBoolean(properties.getProperty("simulation.record.ignitions", "false").trim());
+        
+        // Parse whether fire spread draws keyed random numbers, for paired comparisons
+        keyedRandom = Boolean.parseBoolean(properties.getProperty("simulation.random.keyed", "false").trim());
+        
+        // Validate configuration
+        validateConfig();
+        
+        // Parse the optional randomly placed ignitions
+        randomIgnitions = parseRandomIgnitions(properties);
+        
+        // Load the optional bulk fire positions (text "row,col" lines or binary int pairs)
+        initialFirePositionsFile = properties.getProperty("fire.initial.positions.file");
+        if (initialFirePositionsFile != null && !initialFirePositionsFile.trim().isEmpty()) {
+            initialFirePositionsFile = initialFirePositionsFile.trim();
+            bulkFirePositions = FirePositions.load(initialFirePositionsFile);
+            bulkFirePositions.validate(forestHeight, forestWidth);
+        } else {
+            initialFirePositionsFile = null;
+        }
+        
+        // Load the optional per-cell propagation probability map
+        propagationMapPath = properties.getProperty("fire.propagation.map");
+        if (propagationMapPath != null && !propagationMapPath.trim().isEmpty()) {
+            propagationMapPath = propagationMapPath.trim();
+            propagationMap = ProbabilityMap.load(propagationMapPath, forestHeight, forestWidth);
+        } else {
+            propagationMapPath = null;
         }
     }
     
@@ -85,23 +189,42 @@ public class SimulationConfig {
      * @return 2D array of positions where each position is [row, col]
      */
     private int[][] parseFirePositions(String positionsStr) {
-        String[] positions = positionsStr.split(";");
-        List<int[]> positionsList = new ArrayList<>();
-        
-        for (String position : positions) {
-            String[] coordinates = position.split(",");
-            if (coordinates.length == 2) {
-                try {
-                    int row = Integer.parseInt(coordinates[0].trim());
-                    int col = Integer.parseInt(coordinates[1].trim());
-                    positionsList.add(new int[]{row, col});
-                } catch (NumberFormatException e) {
-                    throw new IllegalArgumentException("Invalid fire position format: " + position);
-                }
-            }
+        return FirePositions.parse(positionsStr).toArray();
+    }
+    
+    /**
+     * Parses and validates the random ignition settings.
+     * 
+     * @param properties The loaded properties
+     * @return The ignition generator, or null if no random ignitions are configured
+     * @throws IllegalArgumentException If a setting is invalid
+     */
+    private IgnitionGenerator parseRandomIgnitions(Properties properties) throws IllegalArgumentException {
+        double density = Double.parseDouble(properties.getProperty("fire.initial.random.density", "0"));
+        IgnitionPattern pattern = IgnitionPattern.parse(properties.getProperty("fire.initial.random.pattern", "uniform"));
+        long seed = Long.parseLong(properties.getProperty("fire.initial.random.seed", "0"));
+        int clusterCount = Integer.parseInt(properties.getProperty("fire.initial.random.clusters", "1"));
+        double clusterRadius = Double.parseDouble(properties.getProperty("fire.initial.random.cluster.radius", "5"));
+        double spacing = Double.parseDouble(properties.getProperty("fire.initial.random.spacing", "1"));
+        
+        if (density < 0 || density > 1) {
+            throw new IllegalArgumentException("Random ignition density must be between 0 and 1");
+        }
+        if (clusterCount <= 0 || clusterRadius <= 0) {
+            throw new IllegalArgumentException("Ignition cluster count and radius must be positive");
+        }
+        if (spacing < 1) {
+            throw new IllegalArgumentException("Poisson-disk ignition spacing must be at least one cell");
         }
         
-        return positionsList.toArray(new int[0][]);
+        // Without a density cap the Poisson-disk pattern fills the forest at the given spacing
+        if (density == 0 && pattern != IgnitionPattern.POISSON_DISK) {
+            return null;
+        }
+        IgnitionGenerator generator = new IgnitionGenerator(pattern, density, seed);
+        generator.setClusters(clusterCount, clusterRadius);
+        generator.setSpacing(spacing);
+        return generator;
     }
     
     /**
@@ -122,6 +245,13 @@ public class SimulationConfig {
             throw new IllegalArgumentException("Fire propagation probability must be between 0 and 1");
         }
         
+        if (windSpeed < 0) {
+            throw new IllegalArgumentException("Wind speed must not be negative");
+        }
+        
+        validateRegrowth(regrowthProbability, lightningProbability);
+        validateEngine(engine, regrowthProbability, lightningProbability);
+        
         for (int[] position : initialFirePositions) {
             if (position[0] < 0 || position[0] >= forestHeight || 
                 position[1] < 0 || position[1] >= forestWidth) {
@@ -131,6 +261,38 @@ public class SimulationConfig {
         }
     }
     
+    /**
+     * Validates the regrowth and lightning probabilities.
+     * 
+     * @param regrowthProbability The regrowth probability g
+     * @param lightningProbability The lightning probability f
+     * @throws IllegalArgumentException If either probability is not between 0 and 1
+     */
+    private void validateRegrowth(double regrowthProbability, double lightningProbability)
+            throws IllegalArgumentException {
+        if (regrowthProbability < 0 || regrowthProbability > 1) {
+            throw new IllegalArgumentException("Regrowth probability must be between 0 and 1");
+        }
+        if (lightningProbability < 0 || lightningProbability > 1) {
+            throw new IllegalArgumentException("Lightning probability must be between 0 and 1");
+        }
+    }
+    
+    /**
+     * Validates that the engine supports the configured regrowth mode.
+     * 
+     * @param engine The propagation engine
+     * @param regrowthProbability The regrowth probability g
+     * @param lightningProbability The lightning probability f
+     * @throws IllegalArgumentException If the event-driven engine is combined with regrowth or lightning
+     */
+    private void validateEngine(PropagationEngine engine, double regrowthProbability, double lightningProbability)
+            throws IllegalArgumentException {
+        if (engine == PropagationEngine.EVENT_DRIVEN && (regrowthProbability > 0 || lightningProbability > 0)) {
+            throw new IllegalArgumentException("The event-driven engine does not support regrowth or lightning");
+        }
+    }
+    
     /**
      * Gets the forest height.
      * 
@@ -167,6 +329,133 @@ public class SimulationConfig {
         return initialFirePositions;
     }
     
+    /**
+     * Gets the path of the per-cell propagation probability map.
+     * 
+     * @return The path to the raster file, or null if no map is configured
+     */
+    public String getPropagationMapPath() {
+        return propagationMapPath;
+    }
+    
+    /**
+     * Gets the per-cell propagation probability map.
+     * 
+     * @return The loaded probability map, or null if no map is configured
+     */
+    public ProbabilityMap getPropagationMap() {
+        return propagationMap;
+    }
+    
+    /**
+     * Gets the wind speed.
+     * 
+     * @return The wind speed in m/s
+     */
+    public double getWindSpeed() {
+        return windSpeed;
+    }
+    
+    /**
+     * Gets the wind direction.
+     * 
+     * @return The direction the wind blows towards, in degrees clockwise from north
+     */
+    public double getWindDirection() {
+        return windDirection;
+    }
+    
+    /**
+     * Gets the neighbourhood fire spreads into.
+     * 
+     * @return The neighbourhood
+     */
+    public Neighbourhood getNeighbourhood() {
+        return neighbourhood;
+    }
+    
+    /**
+     * Gets the probability of an ash cell regrowing into a tree in each step.
+     * 
+     * @return The regrowth probability g (0 disables regrowth)
+     */
+    public double getRegrowthProbability() {
+        return regrowthProbability;
+    }
+    
+    /**
+     * Gets the probability of a tree being struck by lightning in each step.
+     * 
+     * @return The lightning probability f (0 disables lightning)
+     */
+    public double getLightningProbability() {
+        return lightningProbability;
+    }
+    
+    /**
+     * Checks if the configuration enables the continuous Drossel-Schwabl mode.
+     * 
+     * @return true if regrowth or lightning is enabled
+     */
+    public boolean isContinuous() {
+        return regrowthProbability > 0 || lightningProbability > 0;
+    }
+    
+    /**
+     * Gets the engine that advances the fire.
+     * 
+     * @return The propagation engine
+     */
+    public PropagationEngine getEngine() {
+        return engine;
+    }
+    
+    /**
+     * Checks if the step at which each cell ignites is recorded.
+     * 
+     * @return true if ignition steps are recorded
+     */
+    public boolean isRecordIgnitionSteps() {
+        return recordIgnitionSteps;
+    }
+    
+    /**
+     * Checks if the spread of fire draws keyed random numbers, one per cell, direction and step.
+     * 
+     * @return true for keyed draws, false for sequential ones
+     */
+    public boolean isKeyedRandom() {
+        return keyedRandom;
+    }
+    
+    /**
+     * Gets the path of the bulk fire positions file.
+     * 
+     * @return The path to the file, or null if none is configured
+     */
+    public String getInitialFirePositionsFile() {
+        return initialFirePositionsFile;
+    }
+    
+    /**
+     * Gets the fire positions loaded from the bulk positions file.
+     * 
+     * @return The packed positions, or null if no file is configured
+     */
+    public FirePositions getBulkFirePositions() {
+        return bulkFirePositions;
+    }
+    
+    /**
+     * Gets the generator of the randomly placed initial fires.
+     * It is seeded, so every call to generate returns the same positions for a given forest size.
+     * 
+     * @return The ignition generator, or null if no random ignitions are configured
+     */
+    public IgnitionGenerator getRandomIgnitions() {
+        return randomIgnitions;
+    }
+    
     /**
      * Gets the configuration file path.
      * 
@@ -222,8 +511,16 @@ public class SimulationConfig {
      * @throws IllegalArgumentException If any position is invalid
      */
     public void setInitialFirePositions(String positionsStr) throws IllegalArgumentException {
-        int[][] positions = parseFirePositions(positionsStr);
-        
+        setInitialFirePositions(parseFirePositions(positionsStr));
+    }
+    
+    /**
+     * Sets the initial fire positions.
+     * 
+     * @param positions 2D array of positions where each position is [row, col]
+     * @throws IllegalArgumentException If any position is invalid
+     */
+    public void setInitialFirePositions(int[][] positions) throws IllegalArgumentException {
         // Validate positions
         for (int[] position : positions) {
             if (position[0] < 0 || position[0] >= forestHeight || 
@@ -235,4 +532,90 @@ public class SimulationConfig {
         
         this.initialFirePositions = positions;
     }
+    
+    /**
+     * Sets the fire positions that would otherwise be loaded from the bulk positions file.
+     * 
+     * @param positions The packed positions, or null for none
+     */
+    public void setBulkFirePositions(FirePositions positions) {
+        this.bulkFirePositions = positions;
+    }
+    
+    /**
+     * Sets the generator of the randomly placed initial fires.
+     * 
+     * @param randomIgnitions The ignition generator, or null for no random ignitions
+     */
+    public void setRandomIgnitions(IgnitionGenerator randomIgnitions) {
+        this.randomIgnitions = randomIgnitions;
+    }
+    
+    /**
+     * Sets the wind.
+     * 
+     * @param windSpeed The wind speed in m/s
+     * @param windDirection The direction the wind blows towards, in degrees clockwise from north
+     * @throws IllegalArgumentException If the wind speed is negative
+     */
+    public void setWind(double windSpeed, double windDirection) throws IllegalArgumentException {
+        if (windSpeed < 0) {
+            throw new IllegalArgumentException("Wind speed must not be negative");
+        }
+        this.windSpeed = windSpeed;
+        this.windDirection = windDirection;
+    }
+    
+    /**
+     * Sets the neighbourhood fire spreads into.
+     * 
+     * @param neighbourhood The von Neumann or Moore neighbourhood
+     */
+    public void setNeighbourhood(Neighbourhood neighbourhood) {
+        this.neighbourhood = neighbourhood;
+    }
+    
+    /**
+     * Sets the Drossel-Schwabl regrowth and lightning probabilities.
+     * 
+     * @param regrowthProbability The regrowth probability g
+     * @param lightningProbability The lightning probability f
+     * @throws IllegalArgumentException If either probability is not between 0 and 1
+     */
+    public void setRegrowth(double regrowthProbability, double lightningProbability) throws IllegalArgumentException {
+        validateRegrowth(regrowthProbability, lightningProbability);
+        validateEngine(engine, regrowthProbability, lightningProbability);
+        this.regrowthProbability = regrowthProbability;
+        this.lightningProbability = lightningProbability;
+    }
+    
+    /**
+     * Sets the engine that advances the fire.
+     * 
+     * @param engine The synchronous or event-driven engine
+     * @throws IllegalArgumentException If the engine does not support the configured regrowth mode
+     */
+    public void setEngine(PropagationEngine engine) throws IllegalArgumentException {
+        validateEngine(engine, regrowthProbability, lightningProbability);
+        this.engine = engine;
+    }
+    
+    /**
+     * Sets whether the step at which each cell ignites is recorded.
+     * 
+     * @param recordIgnitionSteps true to record ignition steps
+     */
+    public void setRecordIgnitionSteps(boolean recordIgnitionSteps) {
+        this.recordIgnitionSteps = recordIgnitionSteps;
+    }
+    
+    /**
+     * Sets whether the spread of fire draws keyed random numbers, so that runs of two
+     * configurations with the same seed share their draw on every cell, direction and step.
+     * 
+     * @param keyedRandom true for keyed draws
+     */
+    public void setKeyedRandom(boolean keyedRandom) {
+        this.keyedRandom = keyedRandom;
+    }
 }
@@ -0,0 +1,91 @@
+package com.forestfire.controller;
+
+import com.forestfire.config.SimulationConfig;
+import com.forestfire.ensemble.EnsembleMetric;
+import com.forestfire.ensemble.PairedStatistics;
+import com.forestfire.ensemble.ScenarioComparison;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Runs paired replicas of a baseline and a variant configuration with common random numbers
+ * and reports, for each metric, both means and their paired difference.
+ */
+public class ComparisonRunner {
+    
+    private final ScenarioComparison comparison;
+    private PrintStream out;
+    
+    /**
+     * Creates a comparison runner.
+     * 
+     * @param baselinePath Path to the configuration file of the baseline scenario
+     * @param variantPath Path to the configuration file of the variant scenario
+     * @param threads The number of replicas to run at once
+     * @throws IOException If a configuration file cannot be read
+     * @throws IllegalArgumentException If a configuration is invalid or the forests differ in size
+     */
+    public ComparisonRunner(String baselinePath, String variantPath, int threads) throws IOException, IllegalArgumentException {
+        this.comparison = new ScenarioComparison(new SimulationConfig(baselinePath), new SimulationConfig(variantPath), threads);
+        this.out = System.out;
+    }
+    
+    /**
+     * Runs the comparison and prints the report.
+     * 
+     * @param pairs The number of replica pairs
+     * @param seed The seed shared by both scenarios
+     * @param maxSteps The step limit of each replica, or -1 to run until no cell is burning
+     * @param jsonReport true for a JSON report, false for plain text
+     * @throws IOException If the comparison is interrupted
+     * @throws IllegalArgumentException If the arguments are invalid
+     */
+    public void run(int pairs, long seed, int maxSteps, boolean jsonReport) throws IOException, IllegalArgumentException {
+        long start = System.nanoTime();
+        Map<EnsembleMetric, PairedStatistics> statistics;
+        try {
+            statistics = comparison.run(pairs, seed, maxSteps);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while running the comparison");
+        }
+        long wallNanos = System.nanoTime() - start;
+        
+        if (jsonReport) {
+            StringBuilder json = new StringBuilder("{\"pairs\":" + pairs + ",\"metrics\":{");
+            boolean firstMetric = true;
+            for (Map.Entry<EnsembleMetric, PairedStatistics> entry : statistics.entrySet()) {
+                PairedStatistics paired = entry.getValue();
+                if (!firstMetric) {
+                    json.append(',');
+                }
+                firstMetric = false;
+                double reduction = paired.getVarianceReduction();
+                json.append(String.format(Locale.ROOT,
+                    "\"%s\":{\"baseline\":%.6g,\"variant\":%.6g,\"difference\":%.6g,\"differenceVariance\":%.6g,"
+                        + "\"standardError\":%.6g,\"lower\":%.6g,\"upper\":%.6g,\"varianceReduction\":%s}",
+                    entry.getKey().getName(), paired.getMeanBaseline(), paired.getMeanVariant(),
+                    paired.getMeanDifference(), paired.getDifferenceVariance(), paired.getStandardError(),
+                    paired.getMeanDifference() - paired.getHalfWidth(), paired.getMeanDifference() + paired.getHalfWidth(),
+                    Double.isFinite(reduction) ? String.format(Locale.ROOT, "%.4g", reduction) : "null"));
+            }
+            json.append(String.format(Locale.ROOT, "},\"wallTimeMs\":%.3f}", wallNanos / 1e6));
+            out.println(json);
+        } else {
+            out.println(String.format(Locale.ROOT, "Pairs:         %d", pairs));
+            for (Map.Entry<EnsembleMetric, PairedStatistics> entry : statistics.entrySet()) {
+                PairedStatistics paired = entry.getValue();
+                double reduction = paired.getVarianceReduction();
+                out.println(String.format(Locale.ROOT,
+                    "%-16s baseline=%.6g variant=%.6g difference=%.6g +/- %.4g (95%% CI), variance reduction %s",
+                    entry.getKey().getName() + ":", paired.getMeanBaseline(), paired.getMeanVariant(),
+                    paired.getMeanDifference(), paired.getHalfWidth(),
+                    Double.isFinite(reduction) ? String.format(Locale.ROOT, "x%.1f", reduction) : "n/a"));
+            }
+            out.println(String.format(Locale.ROOT, "Wall time:     %.3f ms", wallNanos / 1e6));
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package com.forestfire.controller;
+
+import com.forestfire.config.SimulationConfig;
+import com.forestfire.distributed.EnsembleCoordinator;
+import com.forestfire.ensemble.BatchRunner;
+import com.forestfire.ensemble.BurnProbabilityMap;
+import com.forestfire.ensemble.EnsembleMetric;
+import com.forestfire.ensemble.EnsembleStatistics;
+import com.forestfire.ensemble.ReplicaBatch;
+import com.forestfire.ensemble.ReplicaSummary;
+import com.forestfire.ensemble.StoppingRule;
+import com.forestfire.export.BurnMapWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Runs a Monte Carlo ensemble of replicas of one configuration, either on threads in this JVM
+ * or on EnsembleWorker processes, and reports the merged statistics and throughput.
+ * Optionally it also accumulates the per-cell burn probability and ignition-step quantiles
+ * of the ensemble and writes them to a file.
+ * 
+ * With a stopping rule, the replica count is a maximum: the replicas run in rounds, and the
+ * ensemble stops after the first round at which every targeted confidence interval is narrow
+ * enough. Rounds always complete, so the outcome depends on the seed and not on the thread
+ * count or the order in which replicas finish.
+ */
+public class EnsembleRunner {
+    
+    private final String configFilePath;
+    private final SimulationConfig config;
+    private List<InetSocketAddress> workers;
+    private int batchSize = 64;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private String burnMapPath;
+    private double[] quantiles = new double[0];
+    private int bins = 32;
+    private int binWidth;
+    private StoppingRule stoppingRule;
+    private PrintStream out;
+    private PrintStream log;
+    
+    /**
+     * Creates an ensemble runner with the specified configuration file path.
+     * 
+     * @param configFilePath Path to the configuration properties file
+     * @throws IOException If the configuration file cannot be read
+     * @throws IllegalArgumentException If the configuration contains invalid values
+     */
+    public EnsembleRunner(String configFilePath) throws IOException, IllegalArgumentException {
+        this.configFilePath = configFilePath;
+        this.config = new SimulationConfig(configFilePath);
+        this.out = System.out;
+        this.log = System.err;
+    }
+    
+    /**
+     * Distributes the ensemble over worker processes instead of running it in this JVM.
+     * 
+     * @param workers The worker addresses
+     * @param batchSize The number of replicas per batch
+     */
+    public void setWorkers(List<InetSocketAddress> workers, int batchSize) {
+        this.workers = workers;
+        this.batchSize = batchSize;
+    }
+    
+    /**
+     * Sets the number of replicas between two checks of the stopping rule when the ensemble runs
+     * in this JVM; with workers, a round is one batch per worker.
+     * 
+     * @param batchSize The number of replicas per round
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+    
+    /**
+     * Sets the number of replicas run at once when the ensemble runs in this JVM.
+     * 
+     * @param threads The thread count
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+    
+    /**
+     * Writes the burn probability map of the ensemble to a file: a 16-bit PGM image of the
+     * probabilities for a .pgm path, or one NDJSON line per row with the probabilities and
+     * the requested ignition-step quantiles for a .ndjson path.
+     * 
+     * @param path The file to write
+     * @param quantiles The ignition-step quantiles, each between 0 and 1; may be empty
+     * @param bins The number of ignition-step histogram bins per cell; unused without quantiles
+     * @param binWidth The number of steps per bin, or 0 to spread the bins over the step limit,
+     *                 or over twice the forest perimeter without one
+     */
+    public void setBurnMap(String path, double[] quantiles, int bins, int binWidth) {
+        this.burnMapPath = path;
+        this.quantiles = quantiles;
+        this.bins = bins;
+        this.binWidth = binWidth;
+    }
+    
+    /**
+     * Stops the ensemble as soon as the 95% confidence intervals of the targeted metrics are
+     * narrow enough, checking after every round of replicas and logging the interim estimates.
+     * The replica count given to run() becomes the maximum.
+     * 
+     * @param stoppingRule The stopping rule, or null to always run every replica
+     */
+    public void setStoppingRule(StoppingRule stoppingRule) {
+        this.stoppingRule = stoppingRule;
+    }
+    
+    /**
+     * Runs the ensemble and prints the report.
+     * 
+     * @param replicas The number of replicas, or the maximum with a stopping rule
+     * @param seed The seed of the ensemble
+     * @param maxSteps The step limit of each replica, or -1 to run until no cell is burning
+     * @param replicasPath File to write one JSON line per replica to, or null for none
+     * @param jsonReport true for a JSON report, false for plain text
+     * @throws IOException If a worker fails or the replica file cannot be written
+     * @throws IllegalArgumentException If the arguments are invalid
+     */
+    public void run(int replicas, long seed, int maxSteps, String replicasPath, boolean jsonReport)
+            throws IOException, IllegalArgumentException {
+        if (replicas <= 0) {
+            throw new IllegalArgumentException("Replica count must be positive");
+        }
+        if (maxSteps < 0 && config.isContinuous()) {
+            throw new IllegalArgumentException("A continuous regrowth ensemble needs --steps");
+        }
+        if (stoppingRule != null && replicas < stoppingRule.getMinReplicas()) {
+            throw new IllegalArgumentException("A stopping rule needs at least " + stoppingRule.getMinReplicas() + " replicas");
+        }
+        if (stoppingRule != null && batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        
+        if (burnMapPath != null) {
+            BurnMapWriter.isPgm(Paths.get(burnMapPath));
+        }
+        BurnMapWriter.checkQuantiles(quantiles);
+        
+        // Histograms cost bins * 4 bytes per cell and thread, so only keep them when quantiles are asked for
+        int mapBins = quantiles.length > 0 ? bins : 0;
+        int mapBinWidth = binWidth > 0 ? binWidth
+            : BurnProbabilityMap.defaultBinWidth(config.getForestHeight(), config.getForestWidth(), mapBins, maxSteps);
+        BurnProbabilityMap burnMap = null;
+        
+        EnsembleStatistics statistics = new EnsembleStatistics();
+        BufferedWriter replicaWriter = replicasPath == null ? null
+            : Files.newBufferedWriter(Paths.get(replicasPath), StandardCharsets.UTF_8);
+        Consumer<ReplicaSummary> sink = summary -> {
+            statistics.add(summary);
+            if (replicaWriter != null) {
+                try {
+                    replicaWriter.write(summary.toJson());
+                    replicaWriter.newLine();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+        
+        // A round is one batch per runner thread pool or worker, the finest grain at which all of them stay busy
+        int round = stoppingRule == null ? replicas : workers == null ? batchSize : batchSize * workers.size();
+        int retries = 0;
+        long start = System.nanoTime();
+        try {
+            if (workers == null) {
+                try (BatchRunner runner = new BatchRunner(config, threads)) {
+                    if (burnMapPath != null) {
+                        runner.enableBurnMap(mapBins, mapBinWidth);
+                    }
+                    for (int first = 0; first < replicas && !isStopped(statistics); first += round) {
+                        runner.run(new ReplicaBatch(first, Math.min(round, replicas - first), seed, maxSteps), sink);
+                        printInterim(statistics);
+                    }
+                    if (burnMapPath != null) {
+                        burnMap = runner.takeBurnMap();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while running the ensemble");
+                }
+            } else {
+                String configText = new String(Files.readAllBytes(Paths.get(configFilePath)), StandardCharsets.UTF_8);
+                EnsembleCoordinator coordinator = new EnsembleCoordinator(configText, workers, batchSize);
+                if (burnMapPath != null) {
+                    coordinator.enableBurnMap(mapBins, mapBinWidth);
+                }
+                for (int first = 0; first < replicas && !isStopped(statistics); first += round) {
+                    coordinator.run(first, Math.min(round, replicas - first), seed, maxSteps, sink);
+                    if (burnMap == null) {
+                        burnMap = coordinator.getBurnMap();
+                    } else {
+                        burnMap.merge(coordinator.getBurnMap());
+                    }
+                    printInterim(statistics);
+                }
+                retries = coordinator.getRetries();
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            if (replicaWriter != null) {
+                replicaWriter.close();
+            }
+        }
+        long wallNanos = System.nanoTime() - start;
+        
+        if (burnMap != null) {
+            new BurnMapWriter(burnMap, quantiles).write(Paths.get(burnMapPath));
+        }
+        printReport(statistics, replicas, retries, wallNanos, jsonReport);
+    }
+    
+    /**
+     * Checks if the stopping rule is met.
+     * 
+     * @param statistics The statistics of the replicas run so far
+     * @return true if there is a stopping rule and it is met
+     */
+    private boolean isStopped(EnsembleStatistics statistics) {
+        return stoppingRule != null && stoppingRule.isMet(statistics, getCells());
+    }
+    
+    /**
+     * Gets the number of cells of the forest.
+     * 
+     * @return The cell count
+     */
+    private long getCells() {
+        return (long) config.getForestHeight() * config.getForestWidth();
+    }
+    
+    /**
+     * Logs the interim estimate of every targeted metric after a round, when there is a stopping rule.
+     * 
+     * @param statistics The statistics of the replicas run so far
+     */
+    private void printInterim(EnsembleStatistics statistics) {
+        if (stoppingRule == null) {
+            return;
+        }
+        StringBuilder line = new StringBuilder("replicas " + statistics.getReplicas() + ":");
+        for (EnsembleMetric metric : stoppingRule.getMetrics()) {
+            line.append(String.format(Locale.ROOT, " %s=%.6g (95%% CI width %.4g, target %.4g)", metric.getName(),
+                metric.getMean(statistics, getCells()), StoppingRule.getWidth(metric, statistics, getCells()),
+                stoppingRule.getTarget(metric)));
+        }
+        log.println(line);
+    }
+    
+    /**
+     * Prints the ensemble report to the output stream.
+     * 
+     * @param statistics The merged replica statistics
+     * @param maxReplicas The replica count asked for, the maximum with a stopping rule
+     * @param retries The number of batches retried after a worker failure
+     * @param wallNanos The wall time of the run in nanoseconds
+     * @param json true for JSON, false for plain text
+     */
+    private void printReport(EnsembleStatistics statistics, int maxReplicas, int retries, long wallNanos, boolean json) {
+        double cells = (double) config.getForestHeight() * config.getForestWidth();
+        double wallSeconds = wallNanos / 1e9;
+        double replicasPerSecond = wallSeconds > 0 ? statistics.getReplicas() / wallSeconds : 0;
+        int workerCount = workers == null ? 0 : workers.size();
+        
+        if (json) {
+            out.println(String.format(Locale.ROOT,
+                "{\"replicas\":%d,\"workers\":%d,\"retries\":%d,\"meanBurned\":%.3f,\"stdDevBurned\":%.3f,"
+                    + "\"minBurned\":%d,\"maxBurned\":%d,\"meanBurnedFraction\":%.6f,\"meanSteps\":%.3f,"
+                    + "\"wallTimeMs\":%.3f,\"replicasPerSecond\":%.3f%s}",
+                statistics.getReplicas(), workerCount, retries, statistics.getMeanBurned(), statistics.getStdDevBurned(),
+                statistics.getMinBurned(), statistics.getMaxBurned(), statistics.getMeanBurned() / cells,
+                statistics.getMeanSteps(), wallNanos / 1e6, replicasPerSecond,
+                stoppingRule == null ? "" : stoppingJson(statistics, maxReplicas)));
+        } else {
+            out.println(String.format(Locale.ROOT, "Replicas:      %d%s", statistics.getReplicas(),
+                workerCount > 0 ? " on " + workerCount + " workers (" + retries + " batches retried)" : ""));
+            out.println(String.format(Locale.ROOT, "Burned cells:  mean=%.1f sd=%.1f min=%d max=%d (%.2f%% of the forest)",
+                statistics.getMeanBurned(), statistics.getStdDevBurned(), statistics.getMinBurned(),
+                statistics.getMaxBurned(), 100 * statistics.getMeanBurned() / cells));
+            out.println(String.format(Locale.ROOT, "Mean steps:    %.1f", statistics.getMeanSteps()));
+            out.println(String.format(Locale.ROOT, "Wall time:     %.3f ms", wallNanos / 1e6));
+            out.println(String.format(Locale.ROOT, "Replicas/sec:  %.1f", replicasPerSecond));
+            if (stoppingRule != null) {
+                out.println(String.format(Locale.ROOT, "Stopping:      %s",
+                    stoppingRule.isMet(statistics, (long) cells)
+                        ? "targets met after " + statistics.getReplicas() + " of at most " + maxReplicas + " replicas"
+                        : "targets not met within " + maxReplicas + " replicas"));
+                for (EnsembleMetric metric : stoppingRule.getMetrics()) {
+                    double width = StoppingRule.getWidth(metric, statistics, (long) cells);
+                    out.println(String.format(Locale.ROOT, "  %-16s %.6g +/- %.4g (target width %.4g)", metric.getName() + ":",
+                        metric.getMean(statistics, (long) cells), width / 2, stoppingRule.getTarget(metric)));
+                }
+            }
+            if (burnMapPath != null) {
+                out.println("Burn map:      " + burnMapPath);
+            }
+        }
+    }
+    
+    /**
+     * Formats the outcome of the stopping rule as extra JSON report fields.
+     * 
+     * @param statistics The merged replica statistics
+     * @param maxReplicas The most replicas the ensemble could have run
+     * @return The fields, starting with a comma
+     */
+    private String stoppingJson(EnsembleStatistics statistics, int maxReplicas) {
+        StringBuilder json = new StringBuilder(String.format(Locale.ROOT, ",\"maxReplicas\":%d,\"targetsMet\":%b,\"intervals\":{",
+            maxReplicas, stoppingRule.isMet(statistics, getCells())));
+        boolean firstMetric = true;
+        for (EnsembleMetric metric : stoppingRule.getMetrics()) {
+            if (!firstMetric) {
+                json.append(',');
+            }
+            firstMetric = false;
+            json.append(String.format(Locale.ROOT, "\"%s\":{\"mean\":%.6g,\"width\":%.6g,\"target\":%.6g}",
+                metric.getName(), metric.getMean(statistics, getCells()), StoppingRule.getWidth(metric, statistics, getCells()),
+                stoppingRule.getTarget(metric)));
+        }
+        return json.append('}').toString();
+    }
+}
@@ -0,0 +1,254 @@
+package com.forestfire.controller;
+
+import com.forestfire.analysis.ClusterAnalyzer;
+import com.forestfire.analysis.ClusterReport;
+import com.forestfire.analysis.StopCondition;
+import com.forestfire.export.GridExporter;
+import com.forestfire.export.GridFormat;
+import com.forestfire.service.Simulation;
+import com.forestfire.service.SimulationService;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * Runs a simulation without prompting and reports its throughput, for scripts and
+ * nightly performance jobs. The grid is never printed; progress summaries go to
+ * standard error so the report on standard output stays machine-readable.
+ */
+public class HeadlessRunner {
+    
+    private Simulation simulation;
+    private StopCondition until;
+    private boolean clusterReport;
+    private PrintStream out;
+    private PrintStream log;
+    
+    /**
+     * Creates a headless runner with the specified configuration file path.
+     * 
+     * @param configFilePath Path to the configuration properties file
+     * @throws IOException If the configuration file cannot be read
+     * @throws IllegalArgumentException If the configuration contains invalid values
+     */
+    public HeadlessRunner(String configFilePath) throws IOException, IllegalArgumentException {
+        this(new SimulationService(configFilePath));
+    }
+    
+    /**
+     * Creates a headless runner for an existing simulation, for example a distributed one.
+     * 
+     * @param simulation The simulation to run
+     */
+    public HeadlessRunner(Simulation simulation) {
+        this.simulation = simulation;
+        this.out = System.out;
+        this.log = System.err;
+    }
+    
+    /**
+     * Stops the run as soon as any of the given conditions holds.
+     * 
+     * @param spec Comma-separated conditions, as accepted by StopCondition.parse(), or null for none
+     * @throws IllegalArgumentException If a condition is malformed
+     * @throws IllegalStateException If the grid is not held in this JVM
+     */
+    public void setUntil(String spec) throws IllegalArgumentException, IllegalStateException {
+        if (spec == null) {
+            until = null;
+            return;
+        }
+        if (!(simulation instanceof SimulationService)) {
+            throw new IllegalStateException("Stop conditions need a local simulation");
+        }
+        SimulationService local = (SimulationService) simulation;
+        until = StopCondition.parse(spec, local.getConfig().getNeighbourhood(), local.getHeight(), local.getWidth());
+    }
+    
+    /**
+     * Adds the burned cluster statistics of the final grid to the report.
+     * 
+     * @param clusterReport true to analyse the clusters
+     */
+    public void setClusterReport(boolean clusterReport) {
+        this.clusterReport = clusterReport;
+    }
+    
+    /**
+     * Runs the simulation and prints the report.
+     * 
+     * @param steps The maximum number of steps, or -1 to run until no cell is burning
+     * @param summaryInterval Print a one-line summary every this many steps, or 0 for none
+     * @param jsonReport true for a JSON report, false for plain text
+     * @throws IllegalArgumentException If no step limit is given for a continuous simulation
+     * @throws IllegalStateException If clusters are asked for and the grid is not held in this JVM
+     */
+    public void run(int steps, int summaryInterval, boolean jsonReport) throws IllegalArgumentException, IllegalStateException {
+        if (steps < 0 && simulation.isContinuous()) {
+            throw new IllegalArgumentException("A continuous regrowth simulation needs --steps");
+        }
+        if (clusterReport && !(simulation instanceof SimulationService)) {
+            throw new IllegalStateException("Cluster analysis needs a local simulation");
+        }
+        
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+        
+        long start = System.nanoTime();
+        if (until != null) {
+            runUntil(steps, summaryInterval);
+        } else if (summaryInterval <= 0) {
+            if (steps < 0) {
+                simulation.runToCompletion();
+            } else {
+                simulation.runSteps(steps);
+            }
+        } else {
+            // Run in chunks so a summary can be printed between them
+            while (simulation.isRunning() && (steps < 0 || simulation.getStepCount() < steps)) {
+                int chunk = steps < 0 ? summaryInterval
+                    : Math.min(summaryInterval, steps - simulation.getStepCount());
+                simulation.runSteps(chunk);
+                printSummary();
+            }
+        }
+        long wallNanos = System.nanoTime() - start;
+        
+        ClusterReport clusters = null;
+        if (clusterReport) {
+            SimulationService local = (SimulationService) simulation;
+            clusters = new ClusterAnalyzer(local.getConfig().getNeighbourhood(), Runtime.getRuntime().availableProcessors())
+                .analyze(local.getForest());
+        }
+        printReport(wallNanos, getPeakHeapBytes(), clusters, jsonReport);
+    }
+    
+    /**
+     * Runs until the stop condition holds, the fire dies out or the step limit is reached.
+     * 
+     * @param steps The maximum number of steps, or -1 for no limit
+     * @param summaryInterval Print a one-line summary every this many steps, or 0 for none
+     */
+    private void runUntil(int steps, int summaryInterval) {
+        SimulationService local = (SimulationService) simulation;
+        if (summaryInterval <= 0) {
+            local.runUntil(until, steps, null);
+            return;
+        }
+        do {
+            int chunk = steps < 0 ? summaryInterval : Math.min(summaryInterval, steps - local.getStepCount());
+            local.runUntil(until, chunk, null);
+            printSummary();
+        } while (local.isRunning() && !local.isConditionMet() && (steps < 0 || local.getStepCount() < steps));
+    }
+    
+    /**
+     * Prints a one-line progress summary to the log stream.
+     */
+    private void printSummary() {
+        log.println("step " + simulation.getStepCount()
+            + ": trees=" + simulation.getTreeCount()
+            + " fire=" + simulation.getFireCount()
+            + " ash=" + simulation.getAshCount());
+    }
+    
+    /**
+     * Sums the peak usage of the heap memory pools since the run started.
+     * 
+     * @return The peak heap usage in bytes
+     */
+    private static long getPeakHeapBytes() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+    
+    /**
+     * Prints the timing report to the output stream.
+     * 
+     * @param wallNanos The wall time of the run in nanoseconds
+     * @param peakHeapBytes The peak heap usage in bytes
+     * @param clusters The clusters of the final grid, or null if they were not analysed
+     * @param json true for JSON, false for plain text
+     */
+    private void printReport(long wallNanos, long peakHeapBytes, ClusterReport clusters, boolean json) {
+        int steps = simulation.getStepCount();
+        long cells = (long) simulation.getHeight() * simulation.getWidth();
+        double wallSeconds = wallNanos / 1e9;
+        double stepsPerSecond = wallSeconds > 0 ? steps / wallSeconds : 0;
+        double cellsPerSecond = stepsPerSecond * cells;
+        String stoppedBy = until != null && ((SimulationService) simulation).isConditionMet() ? until.getName() : null;
+        
+        // A burn-out pass does not step, so its wall time gives no step rate
+        boolean analytic = simulation instanceof SimulationService && ((SimulationService) simulation).isBurnedOut();
+        
+        if (json) {
+            out.println(String.format(Locale.ROOT,
+                "{\"height\":%d,\"width\":%d,\"steps\":%d,\"completed\":%b,"
+                    + "\"trees\":%d,\"fire\":%d,\"ash\":%d,"
+                    + "\"wallTimeMs\":%.3f,%s\"peakHeapBytes\":%d%s%s}",
+                simulation.getHeight(), simulation.getWidth(), steps, !simulation.isRunning(),
+                simulation.getTreeCount(), simulation.getFireCount(), simulation.getAshCount(),
+                wallNanos / 1e6,
+                analytic ? "\"analytic\":true,"
+                    : String.format(Locale.ROOT, "\"stepsPerSecond\":%.3f,\"cellsPerSecond\":%.1f,", stepsPerSecond, cellsPerSecond),
+                peakHeapBytes,
+                stoppedBy == null ? "" : ",\"stoppedBy\":\"" + stoppedBy + "\"",
+                clusters == null ? "" : ",\"clusters\":" + clusters.toJson()));
+        } else {
+            out.println(String.format(Locale.ROOT, "Grid:          %d x %d", simulation.getHeight(), simulation.getWidth()));
+            out.println(String.format(Locale.ROOT, "Steps:         %d%s", steps,
+                stoppedBy != null ? " (stopped at " + stoppedBy + ")" : simulation.isRunning() ? "" : " (no more cells are on fire)"));
+            out.println(String.format(Locale.ROOT, "Final counts:  trees=%d fire=%d ash=%d",
+                simulation.getTreeCount(), simulation.getFireCount(), simulation.getAshCount()));
+            out.println(String.format(Locale.ROOT, "Wall time:     %.3f ms", wallNanos / 1e6));
+            if (analytic) {
+                out.println("Throughput:    n/a, completed analytically in one burn-out pass");
+            } else {
+                out.println(String.format(Locale.ROOT, "Steps/sec:     %.1f", stepsPerSecond));
+                out.println(String.format(Locale.ROOT, "Cells/sec:     %.4g", cellsPerSecond));
+            }
+            out.println(String.format(Locale.ROOT, "Peak heap:     %.1f MB", peakHeapBytes / (1024.0 * 1024.0)));
+            if (clusters != null) {
+                out.println(String.format(Locale.ROOT, "Clusters:      %d, largest %d cells, %d burned",
+                    clusters.getClusterCount(), clusters.getLargestSize(), clusters.getBurnedCells()));
+                out.println(String.format(Locale.ROOT, "Spanning:      vertical=%b horizontal=%b",
+                    clusters.isSpanningVertically(), clusters.isSpanningHorizontally()));
+            }
+        }
+    }
+    
+    /**
+     * Streams the final grid to a file, in the format given by its extension.
+     * 
+     * @param path The file to write (.pgm, .png, .ffg or .ndjson)
+     * @throws IOException If the file cannot be written
+     * @throws IllegalArgumentException If the extension is not a known format
+     * @throws IllegalStateException If the grid is not held in this JVM
+     */
+    public void export(String path) throws IOException, IllegalArgumentException, IllegalStateException {
+        if (!(simulation instanceof SimulationService)) {
+            throw new IllegalStateException("Only a local simulation can be exported");
+        }
+        GridFormat format = GridFormat.fromFileName(path);
+        SimulationService simulationService = (SimulationService) simulation;
+        new GridExporter(simulationService.getForest(), simulationService.getStepCount()).export(format, Paths.get(path));
+    }
+    
+    /**
+     * Releases the simulation resources.
+     */
+    public void close() {
+        simulation.close();
+    }
+}
@@ -99,6 +99,10 @@ public class SimulationController {
      * Runs the simulation until completion.
      */
     private void runToCompletion() {
+        if (simulationService.getConfig().isContinuous()) {
+            System.out.println("Continuous regrowth simulations never complete. Use single steps instead.");
+            return;
+        }
         int steps = simulationService.runToCompletion();
         System.out.println("Simulation complete after " + steps + " steps.");
         System.out.println("No more cells are on fire.");
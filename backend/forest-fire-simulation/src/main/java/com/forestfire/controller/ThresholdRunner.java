@@ -0,0 +1,108 @@
+package com.forestfire.controller;
+
+import com.forestfire.config.SimulationConfig;
+import com.forestfire.ensemble.ThresholdEstimate;
+import com.forestfire.ensemble.ThresholdFinder;
+import com.forestfire.ensemble.ThresholdPoint;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Searches for the critical propagation probability of a configuration over a series of grid
+ * sizes and reports each estimate. The points are logged to standard error as they are measured,
+ * so the report on standard output stays machine-readable.
+ */
+public class ThresholdRunner {
+    
+    private final ThresholdFinder finder;
+    private PrintStream out;
+    private PrintStream log;
+    
+    /**
+     * Creates a threshold runner with the specified configuration file path.
+     * 
+     * @param configFilePath Path to the configuration properties file
+     * @param threads The number of replicas to run at once
+     * @throws IOException If the configuration file cannot be read
+     * @throws IllegalArgumentException If the configuration contains invalid values or cannot be swept
+     */
+    public ThresholdRunner(String configFilePath, int threads) throws IOException, IllegalArgumentException {
+        this.finder = new ThresholdFinder(new SimulationConfig(configFilePath), threads);
+        this.out = System.out;
+        this.log = System.err;
+        finder.setProgress(this::printPoint);
+    }
+    
+    /**
+     * Sets how many replicas each probability runs.
+     * 
+     * @param initialReplicas The replicas of the first batch of a point
+     * @param maxReplicas The most replicas a point may double up to when its outcome is close
+     * @throws IllegalArgumentException If the counts are invalid
+     */
+    public void setReplicas(int initialReplicas, int maxReplicas) throws IllegalArgumentException {
+        finder.setReplicas(initialReplicas, maxReplicas);
+    }
+    
+    /**
+     * Sets the bracket width at which bisection stops.
+     * 
+     * @param tolerance The width
+     * @throws IllegalArgumentException If the tolerance is not positive
+     */
+    public void setTolerance(double tolerance) throws IllegalArgumentException {
+        finder.setTolerance(tolerance);
+    }
+    
+    /**
+     * Runs the search for every grid size and prints the report.
+     * 
+     * @param sizes The grid sizes as {height, width} pairs
+     * @param low The lower end of the probability range
+     * @param high The upper end of the probability range
+     * @param seed The seed of the replicas
+     * @param jsonReport true for one JSON line per size, false for plain text
+     * @throws IOException If the search is interrupted
+     * @throws IllegalArgumentException If the range is invalid or the transition is not inside it
+     */
+    public void run(int[][] sizes, double low, double high, long seed, boolean jsonReport)
+            throws IOException, IllegalArgumentException {
+        long start = System.nanoTime();
+        List<ThresholdEstimate> estimates;
+        try {
+            estimates = finder.sweep(sizes, low, high, seed);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while searching for the threshold");
+        }
+        long wallNanos = System.nanoTime() - start;
+        
+        for (ThresholdEstimate estimate : estimates) {
+            if (jsonReport) {
+                out.println(estimate.toJson());
+            } else {
+                out.println(String.format(Locale.ROOT, "%4d x %-4d  p_c=%.5f  95%% CI [%.5f, %.5f]  %s, %d replicas",
+                    estimate.getHeight(), estimate.getWidth(), estimate.getThreshold(), estimate.getLower(),
+                    estimate.getUpper(), estimate.isFitted() ? "logistic fit" : "bisection bracket",
+                    estimate.getTotalReplicas()));
+            }
+        }
+        if (!jsonReport) {
+            out.println(String.format(Locale.ROOT, "Wall time:     %.3f ms", wallNanos / 1e6));
+        }
+    }
+    
+    /**
+     * Logs one measured point.
+     * 
+     * @param point The point
+     */
+    private void printPoint(ThresholdPoint point) {
+        log.println(String.format(Locale.ROOT, "p=%.5f: %d/%d spanned (%.3f, 95%% CI %.3f-%.3f)",
+            point.getProbability(), point.getSpanned(), point.getReplicas(), point.getFraction(),
+            point.getLower(), point.getUpper()));
+    }
+}
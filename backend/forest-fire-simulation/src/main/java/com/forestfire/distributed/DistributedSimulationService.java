@@ -0,0 +1,327 @@
+package com.forestfire.distributed;
+
+import com.forestfire.config.FirePositions;
+import com.forestfire.config.IgnitionGenerator;
+import com.forestfire.config.SimulationConfig;
+import com.forestfire.model.PropagationEngine;
+import com.forestfire.service.Simulation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Coordinator of a simulation split into rectangular blocks, each run by a SubdomainWorker process.
+ * The workers exchange halo cells with each other directly; the coordinator only starts each step
+ * on every worker, waits for all of them as a barrier and sums the cell counts they report.
+ * 
+ * Only the synchronous engine with a uniform propagation probability is supported,
+ * in the single-burn mode.
+ */
+public class DistributedSimulationService implements Simulation {
+    
+    private final SimulationConfig config;
+    private final SocketChannel[] workers;
+    private final ByteBuffer request = ByteBuffer.allocate(4);
+    private long treeCount;
+    private long fireCount;
+    private long ashCount;
+    private int stepCount;
+    
+    /**
+     * Connects to the workers and sets up the simulation on them.
+     * 
+     * @param config The simulation configuration
+     * @param workers The worker addresses, one per block in row-major order; workers use these
+     *                addresses to reach each other as well
+     * @param blockRows The number of block rows
+     * @param blockCols The number of block columns
+     * @param seed The seed for the random draws of the workers
+     * @throws IOException If a worker cannot be reached
+     * @throws IllegalArgumentException If the configuration cannot be distributed
+     */
+    public DistributedSimulationService(SimulationConfig config, List<InetSocketAddress> workers,
+                                        int blockRows, int blockCols, long seed) throws IOException, IllegalArgumentException {
+        int height = config.getForestHeight();
+        int width = config.getForestWidth();
+        if (blockRows <= 0 || blockCols <= 0 || blockRows > height || blockCols > width) {
+            throw new IllegalArgumentException("Cannot split a " + height + "x" + width + " forest into "
+                + blockRows + "x" + blockCols + " blocks");
+        }
+        if (workers.size() != blockRows * blockCols) {
+            throw new IllegalArgumentException("Expected " + blockRows * blockCols + " workers but got " + workers.size());
+        }
+        if (config.getPropagationMap() != null) {
+            throw new IllegalArgumentException("A distributed simulation does not support a propagation map");
+        }
+        if (config.getEngine() != PropagationEngine.SYNCHRONOUS) {
+            throw new IllegalArgumentException("A distributed simulation needs the synchronous engine");
+        }
+        if (config.isContinuous()) {
+            throw new IllegalArgumentException("A distributed simulation does not support regrowth");
+        }
+        this.config = config;
+        this.workers = new SocketChannel[workers.size()];
+        
+        // Split the initial fires by the block that owns them
+        List<FirePositions> blockFires = new ArrayList<>();
+        for (int b = 0; b < workers.size(); b++) {
+            blockFires.add(new FirePositions());
+        }
+        FirePositions allFires = new FirePositions();
+        for (int[] position : config.getInitialFirePositions()) {
+            allFires.add(position[0], position[1]);
+        }
+        addAll(allFires, config.getBulkFirePositions());
+        IgnitionGenerator randomIgnitions = config.getRandomIgnitions();
+        if (randomIgnitions != null) {
+            addAll(allFires, randomIgnitions.generate(height, width));
+        }
+        int[] coordinates = allFires.getCoordinates();
+        for (int i = 0; i < allFires.size(); i++) {
+            int row = coordinates[2 * i];
+            int col = coordinates[2 * i + 1];
+            blockFires.get(blockOf(row, height, blockRows) * blockCols + blockOf(col, width, blockCols)).add(row, col);
+        }
+        
+        // Every worker must accept the coordinator before any of them starts connecting to its peers
+        try {
+            for (int b = 0; b < this.workers.length; b++) {
+                this.workers[b] = Frames.noDelay(SocketChannel.open(workers.get(b)));
+                ByteBuffer hello = ByteBuffer.allocate(1).put(Frames.ROLE_COORDINATOR);
+                hello.flip();
+                Frames.writeFully(this.workers[b], hello);
+            }
+            for (int b = 0; b < this.workers.length; b++) {
+                Frames.write(this.workers[b], assignment(workers, blockRows, blockCols, b, seed, blockFires.get(b)));
+            }
+            readCounts();
+        } catch (IOException e) {
+            closeChannels();
+            throw e;
+        }
+    }
+    
+    /**
+     * Finds the block row or column that contains a row or column of the grid,
+     * matching the split made by Region.block.
+     * 
+     * @param index The row or column
+     * @param size The grid height or width
+     * @param blocks The number of block rows or columns
+     * @return The block row or column
+     */
+    private static int blockOf(int index, int size, int blocks) {
+        int block = (int) ((long) index * blocks / size);
+        while ((long) size * (block + 1) / blocks <= index) {
+            block++;
+        }
+        return block;
+    }
+    
+    /**
+     * Appends one set of positions to another.
+     * 
+     * @param target The positions to append to
+     * @param source The positions to append, or null for none
+     */
+    private static void addAll(FirePositions target, FirePositions source) {
+        if (source == null) {
+            return;
+        }
+        int[] coordinates = source.getCoordinates();
+        for (int i = 0; i < source.size(); i++) {
+            target.add(coordinates[2 * i], coordinates[2 * i + 1]);
+        }
+    }
+    
+    /**
+     * Builds the ASSIGN request for one block.
+     * 
+     * @return The request payload, ready to be written
+     */
+    private ByteBuffer assignment(List<InetSocketAddress> addresses, int blockRows, int blockCols, int block,
+                                  long seed, FirePositions fires) {
+        List<byte[]> hosts = new ArrayList<>();
+        int size = 4 + 4 + 4 + 8 + 4 + 8 + 8 + 8 + 4 + 4 + 4 + 4 + 8 * fires.size();
+        for (InetSocketAddress address : addresses) {
+            byte[] host = address.getHostString().getBytes(StandardCharsets.UTF_8);
+            hosts.add(host);
+            size += 2 + host.length + 4;
+        }
+        
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(Frames.ASSIGN);
+        buffer.putInt(config.getForestHeight());
+        buffer.putInt(config.getForestWidth());
+        buffer.putDouble(config.getFirePropagationProbability());
+        buffer.putInt(config.getNeighbourhood().ordinal());
+        buffer.putDouble(config.getWindSpeed());
+        buffer.putDouble(config.getWindDirection());
+        buffer.putLong(seed);
+        buffer.putInt(blockRows);
+        buffer.putInt(blockCols);
+        buffer.putInt(block);
+        for (int b = 0; b < addresses.size(); b++) {
+            buffer.putShort((short) hosts.get(b).length);
+            buffer.put(hosts.get(b));
+            buffer.putInt(addresses.get(b).getPort());
+        }
+        buffer.putInt(fires.size());
+        buffer.asIntBuffer().put(fires.getCoordinates(), 0, 2 * fires.size());
+        buffer.position(buffer.position() + 8 * fires.size());
+        buffer.flip();
+        return buffer;
+    }
+    
+    /**
+     * Sends a request to every worker and sums the counts they reply with.
+     * 
+     * @param type The request type
+     */
+    private void broadcast(int type) {
+        try {
+            for (SocketChannel worker : workers) {
+                request.clear();
+                request.putInt(type);
+                request.flip();
+                Frames.write(worker, request);
+            }
+            readCounts();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Lost connection to a worker", e);
+        }
+    }
+    
+    /**
+     * Reads the counts reply of every worker, which also acts as the step barrier.
+     * 
+     * @throws IOException If a worker connection fails
+     */
+    private void readCounts() throws IOException {
+        long trees = 0;
+        long fires = 0;
+        long ashes = 0;
+        for (SocketChannel worker : workers) {
+            ByteBuffer counts = Frames.read(worker);
+            trees += counts.getLong();
+            fires += counts.getLong();
+            ashes += counts.getLong();
+        }
+        treeCount = trees;
+        fireCount = fires;
+        ashCount = ashes;
+    }
+    
+    @Override
+    public boolean executeStep() {
+        if (!isRunning()) {
+            return false;
+        }
+        broadcast(Frames.STEP);
+        stepCount++;
+        return isRunning();
+    }
+    
+    @Override
+    public int runSteps(int steps) {
+        int executed = 0;
+        while (executed < steps && isRunning()) {
+            executeStep();
+            executed++;
+        }
+        return executed;
+    }
+    
+    @Override
+    public int runToCompletion() {
+        while (isRunning()) {
+            executeStep();
+        }
+        return stepCount;
+    }
+    
+    @Override
+    public void reset() {
+        broadcast(Frames.RESET);
+        stepCount = 0;
+    }
+    
+    @Override
+    public int getStepCount() {
+        return stepCount;
+    }
+    
+    @Override
+    public boolean isRunning() {
+        return fireCount > 0;
+    }
+    
+    @Override
+    public int getHeight() {
+        return config.getForestHeight();
+    }
+    
+    @Override
+    public int getWidth() {
+        return config.getForestWidth();
+    }
+    
+    @Override
+    public long getTreeCount() {
+        return treeCount;
+    }
+    
+    @Override
+    public long getFireCount() {
+        return fireCount;
+    }
+    
+    @Override
+    public long getAshCount() {
+        return ashCount;
+    }
+    
+    @Override
+    public boolean isContinuous() {
+        return false;
+    }
+    
+    /**
+     * Ends the session on every worker, which then waits for the next coordinator.
+     */
+    @Override
+    public void close() {
+        for (SocketChannel worker : workers) {
+            try {
+                request.clear();
+                request.putInt(Frames.SHUTDOWN);
+                request.flip();
+                Frames.write(worker, request);
+            } catch (IOException e) {
+                // The worker is gone already; nothing to shut down
+            }
+        }
+        closeChannels();
+    }
+    
+    /**
+     * Closes the worker connections opened so far.
+     */
+    private void closeChannels() {
+        for (SocketChannel worker : workers) {
+            if (worker != null) {
+                try {
+                    worker.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing worker connection: " + e.getMessage());
+                }
+            }
+        }
+    }
+}
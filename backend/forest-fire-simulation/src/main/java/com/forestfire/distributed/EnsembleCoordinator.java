@@ -0,0 +1,331 @@
+package com.forestfire.distributed;
+
+import com.forestfire.ensemble.BurnProbabilityMap;
+import com.forestfire.ensemble.ReplicaBatch;
+import com.forestfire.ensemble.ReplicaSummary;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Splits an ensemble into batches of replicas and hands them to EnsembleWorker processes.
+ * Each worker gets a new batch as soon as it finishes the previous one, so faster workers take
+ * more of the load. A batch whose worker fails is put back in the queue for another attempt;
+ * the replicas of a batch are only passed on once the whole batch has arrived, so a retried
+ * batch never reports a replica twice. The same holds for the burn map each worker sends per batch.
+ */
+public class EnsembleCoordinator {
+    
+    private static final int MAX_ATTEMPTS = 3;
+    
+    private final String configText;
+    private final List<InetSocketAddress> workers;
+    private final int batchSize;
+    private final AtomicInteger retries = new AtomicInteger();
+    private int maxReplyLength = Frames.MAX_FRAME;
+    private int burnMapBins = -1;
+    private int burnMapBinWidth = 1;
+    private BurnProbabilityMap burnMap;
+    
+    /**
+     * Creates a coordinator.
+     * 
+     * @param configText The configuration properties, sent to every worker
+     * @param workers The worker addresses
+     * @param batchSize The number of replicas per batch
+     * @throws IllegalArgumentException If there is no worker or the batch size is not positive
+     */
+    public EnsembleCoordinator(String configText, List<InetSocketAddress> workers, int batchSize)
+            throws IllegalArgumentException {
+        if (workers.isEmpty()) {
+            throw new IllegalArgumentException("An ensemble needs at least one worker");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.configText = configText;
+        this.workers = workers;
+        this.batchSize = batchSize;
+    }
+    
+    /**
+     * Makes the workers accumulate a burn probability map of the ensemble, read with getBurnMap().
+     * 
+     * @param bins The number of ignition-step histogram bins per cell, or 0 for burn counts only
+     * @param binWidth The number of steps per histogram bin
+     * @throws IllegalArgumentException If the bin settings are invalid
+     */
+    public void enableBurnMap(int bins, int binWidth) throws IllegalArgumentException {
+        if (bins < 0 || binWidth <= 0) {
+            throw new IllegalArgumentException("Histogram bins must not be negative and bin width must be positive");
+        }
+        this.burnMapBins = bins;
+        this.burnMapBinWidth = binWidth;
+        
+        // A burn map reply holds a count and the histogram bins of every cell
+        Properties properties = new Properties();
+        try {
+            properties.load(new StringReader(configText));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unreadable configuration", e);
+        }
+        long cells = Long.parseLong(properties.getProperty("forest.height", "10").trim())
+            * Long.parseLong(properties.getProperty("forest.width", "10").trim());
+        long mapLength = 4 + 5 * 4 + 4 * cells * (1 + bins);
+        maxReplyLength = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(Frames.MAX_FRAME, mapLength));
+    }
+    
+    /**
+     * Gets the burn probability map of the last run.
+     * 
+     * @return The merged map of every batch, or null if the burn map is not enabled
+     */
+    public BurnProbabilityMap getBurnMap() {
+        return burnMap;
+    }
+    
+    /**
+     * Runs an ensemble on the workers.
+     * 
+     * @param replicas The number of replicas
+     * @param seed The seed of the ensemble
+     * @param maxSteps The step limit of each replica, or -1 to run until no cell is burning
+     * @param sink Receives the replica summaries batch by batch, one call at a time
+     * @throws IOException If a batch fails on every attempt or no worker is left
+     */
+    public void run(int replicas, long seed, int maxSteps, Consumer<ReplicaSummary> sink) throws IOException {
+        run(0, replicas, seed, maxSteps, sink);
+    }
+    
+    /**
+     * Runs a range of the replicas of an ensemble on the workers, so that an ensemble can be
+     * extended round by round with the same seeds it would have had in one run.
+     * 
+     * @param firstReplica The index of the first replica
+     * @param replicas The number of replicas
+     * @param seed The seed of the ensemble
+     * @param maxSteps The step limit of each replica, or -1 to run until no cell is burning
+     * @param sink Receives the replica summaries batch by batch, one call at a time
+     * @throws IOException If a batch fails on every attempt or no worker is left
+     */
+    public void run(int firstReplica, int replicas, long seed, int maxSteps, Consumer<ReplicaSummary> sink)
+            throws IOException {
+        LinkedBlockingQueue<PendingBatch> queue = new LinkedBlockingQueue<>();
+        int end = firstReplica + replicas;
+        for (int first = firstReplica; first < end; first += batchSize) {
+            queue.add(new PendingBatch(new ReplicaBatch(first, Math.min(batchSize, end - first), seed, maxSteps)));
+        }
+        AtomicInteger remaining = new AtomicInteger(queue.size());
+        burnMap = null;
+        
+        ExecutorService executor = Executors.newFixedThreadPool(workers.size());
+        try {
+            // Wait in completion order, so the first worker to fail ends the run at once
+            CompletionService<Void> completion = new ExecutorCompletionService<>(executor);
+            for (InetSocketAddress worker : workers) {
+                completion.submit(() -> {
+                    serveWorker(worker, queue, remaining, sink);
+                    return null;
+                });
+            }
+            for (int k = 0; k < workers.size(); k++) {
+                completion.take().get();
+            }
+        } catch (ExecutionException e) {
+            // Stop the other workers, which would otherwise wait for a batch that is never finished
+            remaining.set(0);
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the workers");
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        if (remaining.get() > 0) {
+            throw new IOException("Every worker failed; " + remaining.get() + " batches were not run");
+        }
+    }
+    
+    /**
+     * Feeds batches to one worker until the queue is finished. A worker that fails twice in a row
+     * is given up on, leaving its share to the others. A batch that fails on every attempt sets
+     * the remaining count to 0, which stops every worker.
+     * 
+     * @throws IOException If a batch has failed on every attempt
+     */
+    private void serveWorker(InetSocketAddress worker, LinkedBlockingQueue<PendingBatch> queue,
+                             AtomicInteger remaining, Consumer<ReplicaSummary> sink) throws IOException, InterruptedException {
+        SocketChannel channel = null;
+        int consecutiveFailures = 0;
+        try {
+            while (remaining.get() > 0 && consecutiveFailures < 2) {
+                // A failed batch may be put back by another worker, so wait rather than stop on an empty queue
+                PendingBatch pending = queue.poll(50, TimeUnit.MILLISECONDS);
+                if (pending == null) {
+                    continue;
+                }
+                
+                List<ReplicaSummary> results = new ArrayList<>(pending.batch.getReplicaCount());
+                BurnProbabilityMap batchMap;
+                try {
+                    if (channel == null) {
+                        channel = connect(worker);
+                    }
+                    batchMap = runBatch(channel, pending.batch, results);
+                    consecutiveFailures = 0;
+                } catch (IOException e) {
+                    System.err.println("Batch " + pending.batch.getFirstReplica() + " failed on " + worker + ": " + e.getMessage());
+                    closeQuietly(channel);
+                    channel = null;
+                    consecutiveFailures++;
+                    if (++pending.attempts >= MAX_ATTEMPTS) {
+                        remaining.set(0);
+                        throw new IOException("Batch starting at replica " + pending.batch.getFirstReplica()
+                            + " failed " + MAX_ATTEMPTS + " times", e);
+                    }
+                    retries.incrementAndGet();
+                    queue.add(pending);
+                    continue;
+                }
+                
+                synchronized (sink) {
+                    for (ReplicaSummary summary : results) {
+                        sink.accept(summary);
+                    }
+                    if (batchMap != null) {
+                        if (burnMap == null) {
+                            burnMap = batchMap;
+                        } else {
+                            burnMap.merge(batchMap);
+                        }
+                    }
+                }
+                remaining.decrementAndGet();
+            }
+            
+            if (channel != null) {
+                ByteBuffer shutdown = ByteBuffer.allocate(4).putInt(Frames.SHUTDOWN);
+                shutdown.flip();
+                Frames.write(channel, shutdown);
+            }
+        } finally {
+            closeQuietly(channel);
+        }
+    }
+    
+    /**
+     * Opens a session with a worker and sends it the configuration.
+     * 
+     * @param worker The worker address
+     * @return The open connection
+     * @throws IOException If the worker cannot be reached
+     */
+    private SocketChannel connect(InetSocketAddress worker) throws IOException {
+        SocketChannel channel = Frames.noDelay(SocketChannel.open(worker));
+        ByteBuffer hello = ByteBuffer.allocate(1).put(Frames.ROLE_COORDINATOR);
+        hello.flip();
+        Frames.writeFully(channel, hello);
+        
+        byte[] config = configText.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer request = ByteBuffer.allocate(12 + config.length);
+        request.putInt(Frames.CONFIG).putInt(burnMapBins).putInt(burnMapBinWidth).put(config);
+        request.flip();
+        Frames.write(channel, request);
+        return channel;
+    }
+    
+    /**
+     * Runs one batch on a worker and collects its replica summaries and burn map.
+     * 
+     * @param channel The worker connection
+     * @param batch The batch to run
+     * @param results Receives the summaries of every replica of the batch
+     * @return The burn map of the batch, or null if the burn map is not enabled
+     * @throws IOException If the connection fails or the worker reports the wrong number of replicas
+     */
+    private BurnProbabilityMap runBatch(SocketChannel channel, ReplicaBatch batch, List<ReplicaSummary> results)
+            throws IOException {
+        ByteBuffer request = ByteBuffer.allocate(24);
+        request.putInt(Frames.BATCH).putInt(batch.getFirstReplica()).putInt(batch.getReplicaCount())
+            .putLong(batch.getEnsembleSeed()).putInt(batch.getMaxSteps());
+        request.flip();
+        Frames.write(channel, request);
+        
+        BurnProbabilityMap map = null;
+        while (true) {
+            ByteBuffer reply = Frames.read(channel, maxReplyLength);
+            int type = reply.getInt();
+            if (type == Frames.BATCH_DONE) {
+                break;
+            }
+            if (type == Frames.BURN_MAP) {
+                map = BurnProbabilityMap.read(reply);
+            } else if (type == Frames.REPLICA) {
+                results.add(ReplicaSummary.read(reply));
+            } else {
+                throw new IOException("Unexpected reply from worker");
+            }
+        }
+        if (results.size() != batch.getReplicaCount()) {
+            throw new IOException("Worker reported " + results.size() + " of " + batch.getReplicaCount() + " replicas");
+        }
+        if (burnMapBins >= 0 && (map == null || map.getReplicas() != batch.getReplicaCount())) {
+            throw new IOException("Worker sent no burn map for the batch");
+        }
+        return map;
+    }
+    
+    /**
+     * Closes a connection, ignoring errors.
+     * 
+     * @param channel The connection, or null
+     */
+    private static void closeQuietly(SocketChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Already broken; nothing more to release
+            }
+        }
+    }
+    
+    /**
+     * Gets the number of batches that were retried after a failure.
+     * 
+     * @return The retry count
+     */
+    public int getRetries() {
+        return retries.get();
+    }
+    
+    /**
+     * A batch waiting to be run and the number of times it has failed.
+     */
+    private static class PendingBatch {
+        
+        final ReplicaBatch batch;
+        int attempts;
+        
+        PendingBatch(ReplicaBatch batch) {
+            this.batch = batch;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.forestfire.distributed;
+
+import com.forestfire.config.SimulationConfig;
+import com.forestfire.ensemble.BatchRunner;
+import com.forestfire.ensemble.BurnProbabilityMap;
+import com.forestfire.ensemble.ReplicaBatch;
+import com.forestfire.ensemble.ReplicaSummary;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+/**
+ * Worker process of a distributed ensemble. A coordinator connects, sends the configuration
+ * once and then asks for batches of replicas; the worker runs each batch on its own threads and
+ * streams back one summary per replica as it finishes, followed by an end-of-batch marker.
+ * If the coordinator asked for a burn map, the merged map of the batch is sent just before the marker.
+ */
+public class EnsembleWorker {
+    
+    private final ServerSocketChannel server;
+    private final int threads;
+    
+    /**
+     * Creates a worker listening on a port of the loopback interface.
+     * 
+     * @param port The TCP port for coordinators to connect to
+     * @param threads The number of replicas to run at once
+     * @throws IOException If the port cannot be bound
+     */
+    public EnsembleWorker(int port, int threads) throws IOException {
+        this(null, port, threads);
+    }
+    
+    /**
+     * Creates a worker listening on a port of one interface. The protocol has no authentication and
+     * the configuration may name files to read, so any address beyond loopback lets every host that
+     * can reach it run ensembles here.
+     * 
+     * @param bindAddress The address to listen on, "0.0.0.0" for every interface, or null for loopback
+     * @param port The TCP port for coordinators to connect to
+     * @param threads The number of replicas to run at once
+     * @throws IOException If the port cannot be bound
+     */
+    public EnsembleWorker(String bindAddress, int port, int threads) throws IOException {
+        this.server = ServerSocketChannel.open();
+        this.server.bind(bindAddress == null
+            ? new InetSocketAddress(InetAddress.getLoopbackAddress(), port)
+            : new InetSocketAddress(bindAddress, port));
+        this.threads = threads;
+    }
+    
+    /**
+     * Serves coordinator sessions one after another until the process is stopped.
+     * 
+     * @throws IOException If the server socket fails
+     */
+    public void serve() throws IOException {
+        while (true) {
+            try (SocketChannel coordinator = Frames.noDelay(server.accept())) {
+                ByteBuffer role = ByteBuffer.allocate(1);
+                Frames.readFully(coordinator, role);
+                if (role.get(0) != Frames.ROLE_COORDINATOR) {
+                    throw new IOException("Expected a coordinator connection");
+                }
+                runSession(coordinator);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Worker session ended: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Runs the batches a coordinator asks for until it ends the session.
+     * 
+     * @param coordinator The coordinator connection
+     * @throws IOException If the connection fails or the configuration cannot be loaded
+     */
+    private void runSession(SocketChannel coordinator) throws IOException {
+        ByteBuffer request = Frames.read(coordinator);
+        if (request.getInt() != Frames.CONFIG) {
+            throw new IOException("Expected the ensemble configuration");
+        }
+        int bins = request.getInt();
+        int binWidth = request.getInt();
+        Properties properties = new Properties();
+        properties.load(new StringReader(StandardCharsets.UTF_8.decode(request).toString()));
+        
+        try (BatchRunner runner = new BatchRunner(new SimulationConfig(properties), threads)) {
+            if (bins >= 0) {
+                runner.enableBurnMap(bins, binWidth);
+            }
+            ByteBuffer reply = ByteBuffer.allocate(4 + ReplicaSummary.BYTES);
+            while (true) {
+                request = Frames.read(coordinator);
+                int type = request.getInt();
+                if (type == Frames.SHUTDOWN) {
+                    return;
+                }
+                if (type != Frames.BATCH) {
+                    throw new IOException("Unknown request from coordinator");
+                }
+                ReplicaBatch batch = new ReplicaBatch(request.getInt(), request.getInt(), request.getLong(), request.getInt());
+                
+                try {
+                    runner.run(batch, summary -> {
+                        reply.clear();
+                        reply.putInt(Frames.REPLICA);
+                        summary.write(reply);
+                        reply.flip();
+                        try {
+                            Frames.write(coordinator, reply);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while running a batch");
+                }
+                
+                if (bins >= 0) {
+                    BurnProbabilityMap map = runner.takeBurnMap();
+                    ByteBuffer mapReply = ByteBuffer.allocate(4 + map.getSerializedSize());
+                    mapReply.putInt(Frames.BURN_MAP);
+                    map.write(mapReply);
+                    mapReply.flip();
+                    Frames.write(coordinator, mapReply);
+                }
+                
+                reply.clear();
+                reply.putInt(Frames.BATCH_DONE);
+                reply.flip();
+                Frames.write(coordinator, reply);
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.forestfire.distributed;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Length-prefixed message framing over blocking socket channels.
+ * Every frame is a big-endian int length followed by that many payload bytes.
+ */
+final class Frames {
+    
+    /** Sent as the first byte of a connection made by a coordinator. */
+    static final byte ROLE_COORDINATOR = 1;
+    /** Sent as the first byte of a connection made by a peer worker, followed by its block index. */
+    static final byte ROLE_PEER = 2;
+    
+    /** Coordinator request: set up a subdomain, connect to its peers and report the initial counts. */
+    static final int ASSIGN = 1;
+    /** Coordinator request: advance one step and report the counts. */
+    static final int STEP = 2;
+    /** Coordinator request: return to the initial state and report the counts. */
+    static final int RESET = 3;
+    /** Coordinator request: end the session. */
+    static final int SHUTDOWN = 4;
+    /**
+     * Ensemble coordinator request: the burn map bins and bin width (bins -1 for no map),
+     * then the configuration properties of the replicas that follow.
+     */
+    static final int CONFIG = 5;
+    /** Ensemble coordinator request: run a batch of replicas. */
+    static final int BATCH = 6;
+    /** Ensemble worker reply: the summary of one finished replica. */
+    static final int REPLICA = 7;
+    /** Ensemble worker reply: every replica of the batch has been reported. */
+    static final int BATCH_DONE = 8;
+    /** Ensemble worker reply: the burn probability map of the batch, sent before BATCH_DONE. */
+    static final int BURN_MAP = 9;
+    
+    /**
+     * The largest frame read() accepts without an explicit limit. It bounds what a garbled or
+     * hostile length prefix can make a reader allocate, and leaves room for the ignitions of
+     * an ASSIGN request, 8 bytes each.
+     */
+    static final int MAX_FRAME = 64 << 20;
+    
+    private Frames() {
+    }
+    
+    /**
+     * Turns off Nagle's algorithm on a connection. Every exchange is a small request answered
+     * before the next one is sent, which would otherwise stall on delayed acknowledgements.
+     * 
+     * @param channel The connection to configure
+     * @return The channel
+     * @throws IOException If the option cannot be set
+     */
+    static SocketChannel noDelay(SocketChannel channel) throws IOException {
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        return channel;
+    }
+    
+    /**
+     * Writes a frame holding the remaining bytes of a buffer.
+     * 
+     * @param channel The channel to write to
+     * @param payload The payload, from its position to its limit
+     * @throws IOException If the channel cannot be written
+     */
+    static void write(SocketChannel channel, ByteBuffer payload) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4).putInt(payload.remaining());
+        header.flip();
+        ByteBuffer[] frame = {header, payload};
+        while (payload.hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+    
+    /**
+     * Reads one frame of at most MAX_FRAME bytes.
+     * 
+     * @param channel The channel to read from
+     * @return The payload, ready to be read
+     * @throws IOException If the channel cannot be read, is closed mid-frame or announces a frame that is too long
+     */
+    static ByteBuffer read(SocketChannel channel) throws IOException {
+        return read(channel, MAX_FRAME);
+    }
+    
+    /**
+     * Reads one frame.
+     * 
+     * @param channel The channel to read from
+     * @param maxLength The largest payload accepted
+     * @return The payload, ready to be read
+     * @throws IOException If the channel cannot be read, is closed mid-frame or announces a frame that is too long
+     */
+    static ByteBuffer read(SocketChannel channel, int maxLength) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        readFully(channel, header);
+        header.flip();
+        ByteBuffer payload = ByteBuffer.allocate(checkLength(header.getInt(), maxLength));
+        readFully(channel, payload);
+        payload.flip();
+        return payload;
+    }
+    
+    /**
+     * Checks a length prefix before a buffer is allocated for it.
+     * 
+     * @param length The length read from the connection
+     * @param maxLength The largest payload accepted
+     * @return The length
+     * @throws IOException If the length is negative or above the limit
+     */
+    static int checkLength(int length, int maxLength) throws IOException {
+        if (length < 0 || length > maxLength) {
+            throw new IOException("Frame length " + length + " is outside 0.." + maxLength);
+        }
+        return length;
+    }
+    
+    /**
+     * Writes every remaining byte of a buffer.
+     * 
+     * @param channel The channel to write to
+     * @param buffer The bytes to write
+     * @throws IOException If the channel cannot be written
+     */
+    static void writeFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+    
+    /**
+     * Fills the remaining space of a buffer.
+     * 
+     * @param channel The channel to read from
+     * @param buffer The buffer to fill
+     * @throws IOException If the channel cannot be read or reaches end of stream first
+     */
+    static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Connection closed by " + channel.getRemoteAddress());
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.forestfire.distributed;
+
+/**
+ * An axis-aligned rectangle of grid cells in global coordinates.
+ */
+final class Region {
+    
+    final int row;
+    final int col;
+    final int height;
+    final int width;
+    
+    /**
+     * Creates a region.
+     * 
+     * @param row The first row
+     * @param col The first column
+     * @param height The number of rows, 0 or more
+     * @param width The number of columns, 0 or more
+     */
+    Region(int row, int col, int height, int width) {
+        this.row = row;
+        this.col = col;
+        this.height = Math.max(height, 0);
+        this.width = Math.max(width, 0);
+    }
+    
+    /**
+     * Gets the block of a grid split into blockRows x blockCols nearly equal rectangles.
+     * 
+     * @param gridHeight The height of the grid
+     * @param gridWidth The width of the grid
+     * @param blockRows The number of block rows
+     * @param blockCols The number of block columns
+     * @param block The row-major index of the block
+     * @return The region covered by the block
+     */
+    static Region block(int gridHeight, int gridWidth, int blockRows, int blockCols, int block) {
+        int blockRow = block / blockCols;
+        int blockCol = block % blockCols;
+        int row0 = (int) ((long) gridHeight * blockRow / blockRows);
+        int row1 = (int) ((long) gridHeight * (blockRow + 1) / blockRows);
+        int col0 = (int) ((long) gridWidth * blockCol / blockCols);
+        int col1 = (int) ((long) gridWidth * (blockCol + 1) / blockCols);
+        return new Region(row0, col0, row1 - row0, col1 - col0);
+    }
+    
+    /**
+     * Grows the region by a margin on every side.
+     * 
+     * @param margin The number of cells to add on each side
+     * @return The grown region
+     */
+    Region expand(int margin) {
+        return new Region(row - margin, col - margin, height + 2 * margin, width + 2 * margin);
+    }
+    
+    /**
+     * Intersects the region with another one.
+     * 
+     * @param other The other region
+     * @return The cells in both regions, possibly empty
+     */
+    Region intersect(Region other) {
+        int row0 = Math.max(row, other.row);
+        int col0 = Math.max(col, other.col);
+        int row1 = Math.min(row + height, other.row + other.height);
+        int col1 = Math.min(col + width, other.col + other.width);
+        return new Region(row0, col0, row1 - row0, col1 - col0);
+    }
+    
+    /**
+     * Checks if a cell lies inside the region.
+     * 
+     * @param r The row of the cell
+     * @param c The column of the cell
+     * @return true if the cell is inside
+     */
+    boolean contains(int r, int c) {
+        return r >= row && r < row + height && c >= col && c < col + width;
+    }
+    
+    /**
+     * Gets the number of cells in the region.
+     * 
+     * @return The area
+     */
+    int size() {
+        return height * width;
+    }
+}
@@ -0,0 +1,538 @@
+package com.forestfire.distributed;
+
+import com.forestfire.model.Forest;
+import com.forestfire.model.Neighbourhood;
+import com.forestfire.model.PropagationTable;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Worker process of a distributed simulation. It owns one rectangular block of the grid,
+ * surrounded by a one-cell halo that mirrors the edge cells of the neighbouring blocks.
+ * 
+ * Each step has two exchanges with every neighbouring worker: first the edge cells are sent
+ * to refresh the halos, then the spread from burning cells is computed locally and every
+ * successful draw into a halo tree is sent to the block that owns it as an ignition request.
+ * A cell reached from several blocks ignites once, so the burned area has the same
+ * distribution as a single-JVM synchronous run. The exchanges use non-blocking socket channels
+ * driven by one selector, so large halos cannot deadlock two workers writing to each other.
+ */
+public class SubdomainWorker {
+    
+    private final ServerSocketChannel server;
+    
+    private Region block;
+    private int stride;
+    private byte[] cells;
+    private int[] fireCells;
+    private int[] nextFireCells;
+    private int fireCount;
+    private long treeCount;
+    private long ashCount;
+    private int[] offsets;
+    private int[] thresholds;
+    private int[] initialFires;
+    private long seed;
+    private Random random;
+    private PeerLink[] links;
+    private PeerLink[] linkAt;
+    private Selector selector;
+    
+    /**
+     * Creates a worker listening on a port of the loopback interface.
+     * 
+     * @param port The TCP port for the coordinator and peer workers to connect to
+     * @throws IOException If the port cannot be bound
+     */
+    public SubdomainWorker(int port) throws IOException {
+        this(null, port);
+    }
+    
+    /**
+     * Creates a worker listening on a port of one interface. The protocol has no authentication,
+     * so any address beyond loopback lets every host that can reach it run simulations here.
+     * 
+     * @param bindAddress The address to listen on, "0.0.0.0" for every interface, or null for loopback
+     * @param port The TCP port for the coordinator and peer workers to connect to
+     * @throws IOException If the port cannot be bound
+     */
+    public SubdomainWorker(String bindAddress, int port) throws IOException {
+        server = ServerSocketChannel.open();
+        server.bind(bindAddress == null
+            ? new InetSocketAddress(InetAddress.getLoopbackAddress(), port)
+            : new InetSocketAddress(bindAddress, port));
+    }
+    
+    /**
+     * Serves coordinator sessions one after another until the process is stopped.
+     * 
+     * @throws IOException If the server socket fails
+     */
+    public void serve() throws IOException {
+        while (true) {
+            SocketChannel coordinator = Frames.noDelay(server.accept());
+            try {
+                ByteBuffer role = ByteBuffer.allocate(1);
+                Frames.readFully(coordinator, role);
+                if (role.get(0) != Frames.ROLE_COORDINATOR) {
+                    throw new IOException("Expected a coordinator connection");
+                }
+                runSession(coordinator);
+            } catch (IOException e) {
+                System.err.println("Worker session ended: " + e.getMessage());
+            } finally {
+                closeSession(coordinator);
+            }
+        }
+    }
+    
+    /**
+     * Processes coordinator requests until it ends the session.
+     * 
+     * @param coordinator The coordinator connection
+     * @throws IOException If a connection fails
+     */
+    private void runSession(SocketChannel coordinator) throws IOException {
+        while (true) {
+            ByteBuffer request = Frames.read(coordinator);
+            switch (request.getInt()) {
+                case Frames.ASSIGN:
+                    assign(request);
+                    break;
+                case Frames.STEP:
+                    step();
+                    break;
+                case Frames.RESET:
+                    initializeCells();
+                    break;
+                case Frames.SHUTDOWN:
+                    return;
+                default:
+                    throw new IOException("Unknown request from coordinator");
+            }
+            
+            ByteBuffer counts = ByteBuffer.allocate(24);
+            counts.putLong(treeCount).putLong(fireCount).putLong(ashCount);
+            counts.flip();
+            Frames.write(coordinator, counts);
+        }
+    }
+    
+    /**
+     * Sets up the block described by an ASSIGN request and connects to the neighbouring workers.
+     * 
+     * @param request The request payload, positioned after the type
+     * @throws IOException If a peer cannot be reached
+     */
+    private void assign(ByteBuffer request) throws IOException {
+        int height = request.getInt();
+        int width = request.getInt();
+        double probability = request.getDouble();
+        Neighbourhood neighbourhood = Neighbourhood.values()[request.getInt()];
+        double windSpeed = request.getDouble();
+        double windDirection = request.getDouble();
+        long runSeed = request.getLong();
+        int blockRows = request.getInt();
+        int blockCols = request.getInt();
+        int index = request.getInt();
+        
+        // Every block draws from its own stream so neighbouring blocks are not correlated
+        seed = runSeed ^ (index * 0x9E3779B97F4A7C15L);
+        
+        InetSocketAddress[] addresses = new InetSocketAddress[blockRows * blockCols];
+        for (int b = 0; b < addresses.length; b++) {
+            byte[] host = new byte[request.getShort()];
+            request.get(host);
+            addresses[b] = new InetSocketAddress(new String(host, StandardCharsets.UTF_8), request.getInt());
+        }
+        
+        block = Region.block(height, width, blockRows, blockCols, index);
+        stride = block.width + 2;
+        
+        // Ignition points arrive in global coordinates and are kept as padded local indices
+        initialFires = new int[request.getInt()];
+        for (int k = 0; k < initialFires.length; k++) {
+            int row = request.getInt();
+            int col = request.getInt();
+            initialFires[k] = toLocal(row, col);
+        }
+        
+        PropagationTable table = new PropagationTable(neighbourhood, probability, windSpeed, windDirection);
+        int[] rowOffsets = table.getRowOffsets();
+        int[] colOffsets = table.getColOffsets();
+        thresholds = table.getThresholds();
+        offsets = new int[rowOffsets.length];
+        for (int d = 0; d < offsets.length; d++) {
+            offsets[d] = rowOffsets[d] * stride + colOffsets[d];
+        }
+        
+        cells = new byte[(block.height + 2) * stride];
+        fireCells = new int[Math.min(block.size(), 1024)];
+        nextFireCells = new int[fireCells.length];
+        initializeCells();
+        connectPeers(index, blockRows, blockCols, addresses, rowOffsets, colOffsets, height, width);
+    }
+    
+    /**
+     * Opens a link to every neighbouring block that fire can spread into.
+     * The worker with the lower block index connects, the other one accepts.
+     * 
+     * @throws IOException If a peer cannot be reached
+     */
+    private void connectPeers(int index, int blockRows, int blockCols, InetSocketAddress[] addresses,
+                              int[] rowOffsets, int[] colOffsets, int height, int width) throws IOException {
+        int blockRow = index / blockCols;
+        int blockCol = index % blockCols;
+        linkAt = new PeerLink[9];
+        PeerLink[] found = new PeerLink[8];
+        int count = 0;
+        
+        for (int di = -1; di <= 1; di++) {
+            for (int dj = -1; dj <= 1; dj++) {
+                int peerRow = blockRow + di;
+                int peerCol = blockCol + dj;
+                if ((di == 0 && dj == 0) || peerRow < 0 || peerRow >= blockRows || peerCol < 0 || peerCol >= blockCols) {
+                    continue;
+                }
+                
+                // A diagonal block is only a neighbour if some direction moves diagonally
+                boolean reachable = false;
+                for (int d = 0; d < rowOffsets.length; d++) {
+                    if ((di == 0 || rowOffsets[d] == di) && (dj == 0 || colOffsets[d] == dj)) {
+                        reachable = true;
+                    }
+                }
+                if (!reachable) {
+                    continue;
+                }
+                
+                int peer = peerRow * blockCols + peerCol;
+                Region peerBlock = Region.block(height, width, blockRows, blockCols, peer);
+                PeerLink link = new PeerLink(peer, block.intersect(peerBlock.expand(1)), peerBlock.intersect(block.expand(1)));
+                linkAt[(di + 1) * 3 + dj + 1] = link;
+                found[count++] = link;
+            }
+        }
+        links = Arrays.copyOf(found, count);
+        
+        for (PeerLink link : links) {
+            if (link.block > index) {
+                link.channel = Frames.noDelay(SocketChannel.open(addresses[link.block]));
+                ByteBuffer hello = ByteBuffer.allocate(5).put(Frames.ROLE_PEER).putInt(index);
+                hello.flip();
+                Frames.writeFully(link.channel, hello);
+            }
+        }
+        for (PeerLink link : links) {
+            if (link.block < index) {
+                acceptPeer();
+            }
+        }
+        
+        selector = Selector.open();
+        for (PeerLink link : links) {
+            link.channel.configureBlocking(false);
+            link.key = link.channel.register(selector, 0, link);
+        }
+    }
+    
+    /**
+     * Accepts one connection from a lower-indexed neighbour and attaches it to its link.
+     * 
+     * @throws IOException If the connection is not from an expected peer
+     */
+    private void acceptPeer() throws IOException {
+        SocketChannel channel = Frames.noDelay(server.accept());
+        ByteBuffer hello = ByteBuffer.allocate(5);
+        Frames.readFully(channel, hello);
+        hello.flip();
+        byte role = hello.get();
+        int peer = hello.getInt();
+        for (PeerLink link : links) {
+            if (role == Frames.ROLE_PEER && link.block == peer && link.channel == null) {
+                link.channel = channel;
+                return;
+            }
+        }
+        channel.close();
+        throw new IOException("Unexpected connection from block " + peer);
+    }
+    
+    /**
+     * Fills the block with trees, marks the halo as non-flammable and sets the initial fires.
+     */
+    private void initializeCells() {
+        Arrays.fill(cells, Forest.ASH);
+        for (int r = 1; r <= block.height; r++) {
+            Arrays.fill(cells, r * stride + 1, r * stride + 1 + block.width, Forest.TREE);
+        }
+        treeCount = block.size();
+        ashCount = 0;
+        fireCount = 0;
+        random = new Random(seed);
+        for (int index : initialFires) {
+            if (cells[index] == Forest.TREE) {
+                cells[index] = Forest.FIRE;
+                treeCount--;
+                fireCells = ensureCapacity(fireCells, fireCount + 1);
+                fireCells[fireCount++] = index;
+            }
+        }
+    }
+    
+    /**
+     * Advances the block by one synchronous step.
+     * 
+     * @throws IOException If a peer connection fails
+     */
+    private void step() throws IOException {
+        // Refresh the halo from the neighbours' edge cells
+        for (PeerLink link : links) {
+            ByteBuffer out = link.prepare(link.sendRegion.size());
+            Region region = link.sendRegion;
+            for (int r = region.row; r < region.row + region.height; r++) {
+                out.put(cells, toLocal(r, region.col), region.width);
+            }
+        }
+        exchange();
+        for (PeerLink link : links) {
+            Region region = link.recvRegion;
+            for (int r = region.row; r < region.row + region.height; r++) {
+                link.in.get(cells, toLocal(r, region.col), region.width);
+            }
+            link.requestCount = 0;
+        }
+        
+        // Burning cells become ash and spread; draws into the halo become requests to its owner
+        int nextFireCount = 0;
+        for (int k = 0; k < fireCount; k++) {
+            int index = fireCells[k];
+            cells[index] = Forest.ASH;
+            for (int d = 0; d < offsets.length; d++) {
+                int neighbour = index + offsets[d];
+                if (cells[neighbour] == Forest.TREE && random.nextInt(PropagationTable.SCALE) < thresholds[d]) {
+                    cells[neighbour] = Forest.FIRE;
+                    PeerLink owner = ownerOf(neighbour);
+                    if (owner == null) {
+                        treeCount--;
+                        nextFireCells = ensureCapacity(nextFireCells, nextFireCount + 1);
+                        nextFireCells[nextFireCount++] = neighbour;
+                    } else {
+                        owner.addRequest(neighbour / stride - 1 + block.row, neighbour % stride - 1 + block.col);
+                    }
+                }
+            }
+        }
+        ashCount += fireCount;
+        
+        // Apply the ignitions other blocks sent for this block's edge cells
+        for (PeerLink link : links) {
+            ByteBuffer out = link.prepare(8 * link.requestCount);
+            out.asIntBuffer().put(link.requests, 0, 2 * link.requestCount);
+            out.position(out.position() + 8 * link.requestCount);
+        }
+        exchange();
+        for (PeerLink link : links) {
+            while (link.in.hasRemaining()) {
+                int index = toLocal(link.in.getInt(), link.in.getInt());
+                if (cells[index] == Forest.TREE) {
+                    cells[index] = Forest.FIRE;
+                    treeCount--;
+                    nextFireCells = ensureCapacity(nextFireCells, nextFireCount + 1);
+                    nextFireCells[nextFireCount++] = index;
+                }
+            }
+        }
+        
+        int[] swap = fireCells;
+        fireCells = nextFireCells;
+        nextFireCells = swap;
+        fireCount = nextFireCount;
+    }
+    
+    /**
+     * Sends every link's prepared frame and receives one frame from every link, interleaving
+     * reads and writes so neither side blocks on a full socket buffer.
+     * 
+     * @throws IOException If a peer connection fails
+     */
+    private void exchange() throws IOException {
+        int pending = 0;
+        for (PeerLink link : links) {
+            link.out.flip();
+            link.header.clear();
+            link.in = null;
+            link.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            pending += 2;
+        }
+        
+        while (pending > 0) {
+            selector.select();
+            for (SelectionKey key : selector.selectedKeys()) {
+                PeerLink link = (PeerLink) key.attachment();
+                if (key.isWritable()) {
+                    link.channel.write(link.out);
+                    if (!link.out.hasRemaining()) {
+                        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                        pending--;
+                    }
+                }
+                if (key.isReadable() && link.readFrame()) {
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                    pending--;
+                }
+            }
+            selector.selectedKeys().clear();
+        }
+    }
+    
+    /**
+     * Finds the link to the block that owns a halo cell.
+     * 
+     * @param index The padded local index
+     * @return The owning link, or null if the cell belongs to this block
+     */
+    private PeerLink ownerOf(int index) {
+        int r = index / stride;
+        int c = index - r * stride;
+        int di = r == 0 ? -1 : r > block.height ? 1 : 0;
+        int dj = c == 0 ? -1 : c > block.width ? 1 : 0;
+        return di == 0 && dj == 0 ? null : linkAt[(di + 1) * 3 + dj + 1];
+    }
+    
+    /**
+     * Converts global coordinates to a padded local index.
+     * 
+     * @param row The global row
+     * @param col The global column
+     * @return The index in the padded cell array
+     */
+    private int toLocal(int row, int col) {
+        return (row - block.row + 1) * stride + col - block.col + 1;
+    }
+    
+    /**
+     * Grows an index buffer if it cannot hold the required number of entries.
+     * 
+     * @param buffer The buffer to check
+     * @param required The number of entries required
+     * @return The buffer, or a larger copy of it
+     */
+    private static int[] ensureCapacity(int[] buffer, int required) {
+        return required <= buffer.length ? buffer : Arrays.copyOf(buffer, Math.max(required, buffer.length * 2));
+    }
+    
+    /**
+     * Closes the coordinator and peer connections of a finished session.
+     * 
+     * @param coordinator The coordinator connection
+     */
+    private void closeSession(SocketChannel coordinator) {
+        try {
+            coordinator.close();
+            if (links != null) {
+                for (PeerLink link : links) {
+                    if (link.channel != null) {
+                        link.channel.close();
+                    }
+                }
+            }
+            if (selector != null) {
+                selector.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing session: " + e.getMessage());
+        }
+        links = null;
+        selector = null;
+    }
+    
+    /**
+     * Connection to a neighbouring block and the buffers of its exchanges.
+     */
+    private static class PeerLink {
+        
+        final int block;
+        final Region sendRegion;
+        final Region recvRegion;
+        SocketChannel channel;
+        SelectionKey key;
+        ByteBuffer out = ByteBuffer.allocate(0);
+        final ByteBuffer header = ByteBuffer.allocate(4);
+        ByteBuffer in;
+        int[] requests = new int[64];
+        int requestCount;
+        
+        PeerLink(int block, Region sendRegion, Region recvRegion) {
+            this.block = block;
+            this.sendRegion = sendRegion;
+            this.recvRegion = recvRegion;
+        }
+        
+        /**
+         * Clears the outgoing buffer for a frame with the given payload size and writes its length.
+         * 
+         * @param payloadSize The payload size in bytes
+         * @return The buffer, positioned after the length
+         */
+        ByteBuffer prepare(int payloadSize) {
+            if (out.capacity() < 4 + payloadSize) {
+                out = ByteBuffer.allocate(4 + payloadSize);
+            }
+            out.clear();
+            out.putInt(payloadSize);
+            return out;
+        }
+        
+        /**
+         * Queues an ignition request for a cell owned by the peer.
+         * 
+         * @param row The global row
+         * @param col The global column
+         */
+        void addRequest(int row, int col) {
+            requests = ensureCapacity(requests, 2 * requestCount + 2);
+            requests[2 * requestCount] = row;
+            requests[2 * requestCount + 1] = col;
+            requestCount++;
+        }
+        
+        /**
+         * Reads what is available of the incoming frame.
+         * 
+         * @return true once the whole frame has been read
+         * @throws IOException If the connection fails or closes
+         */
+        boolean readFrame() throws IOException {
+            if (in == null) {
+                if (channel.read(header) < 0) {
+                    throw new IOException("Peer block " + block + " disconnected");
+                }
+                if (header.hasRemaining()) {
+                    return false;
+                }
+                // A halo holds one byte per cell and a request 8 bytes per cell of the peer's halo
+                int maxLength = 8 * Math.max(sendRegion.size(), recvRegion.size());
+                in = ByteBuffer.allocate(Frames.checkLength(header.getInt(0), maxLength));
+            }
+            if (in.hasRemaining() && channel.read(in) < 0) {
+                throw new IOException("Peer block " + block + " disconnected");
+            }
+            if (in.hasRemaining()) {
+                return false;
+            }
+            in.flip();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.forestfire.ensemble;
+
+import com.forestfire.config.SimulationConfig;
+import com.forestfire.jfr.ReplicaEvent;
+import com.forestfire.service.SimulationService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs the replicas of a batch on a fixed pool of threads in this JVM.
+ * Each thread keeps its own simulation and resets it from the shared initial template for every
+ * replica, so a replica costs time and memory in proportion to the area its fire reaches.
+ * When a burn map is enabled, each thread also adds its replicas to a burn map of its own;
+ * the maps are only merged when the caller takes the result, so the threads never share a counter.
+ */
+public class BatchRunner implements AutoCloseable {
+    
+    private final SimulationConfig config;
+    private final ExecutorService executor;
+    private final SimulationService[] simulations;
+    private BurnProbabilityMap[] burnMaps;
+    private boolean stopOnSpanning;
+    
+    /**
+     * Creates a batch runner.
+     * 
+     * @param config The configuration every replica runs with
+     * @param threads The number of replicas to run at once
+     * @throws IllegalArgumentException If the thread count is not positive
+     */
+    public BatchRunner(SimulationConfig config, int threads) throws IllegalArgumentException {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Thread count must be positive");
+        }
+        this.config = new SimulationConfig(config);
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "replica-runner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.simulations = new SimulationService[threads];
+    }
+    
+    /**
+     * Makes every replica from now on add its ignition steps to a burn probability map,
+     * read with takeBurnMap(). Must be called before the first batch runs.
+     * 
+     * @param bins The number of ignition-step histogram bins per cell, or 0 for burn counts only
+     * @param binWidth The number of steps per histogram bin
+     * @throws IllegalArgumentException If the bin settings are invalid
+     * @throws IllegalStateException If a batch has already run
+     */
+    public void enableBurnMap(int bins, int binWidth) throws IllegalArgumentException, IllegalStateException {
+        for (SimulationService simulation : simulations) {
+            if (simulation != null) {
+                throw new IllegalStateException("The burn map must be enabled before the first batch");
+            }
+        }
+        burnMaps = new BurnProbabilityMap[simulations.length];
+        for (int slot = 0; slot < burnMaps.length; slot++) {
+            burnMaps[slot] = new BurnProbabilityMap(config.getForestHeight(), config.getForestWidth(), bins, binWidth);
+        }
+        config.setRecordIgnitionSteps(true);
+    }
+    
+    /**
+     * Makes every replica from now on stop as soon as its burned area connects two opposite edges
+     * of the grid, and record whether it did in its summary.
+     * 
+     * @param stopOnSpanning true to stop on spanning
+     */
+    public void setStopOnSpanning(boolean stopOnSpanning) {
+        this.stopOnSpanning = stopOnSpanning;
+    }
+    
+    /**
+     * Changes the propagation probability of the replicas from the next batch on. The simulations
+     * of the runner threads are updated in place, so their grids are reused.
+     * Must not be called while a batch is running.
+     * 
+     * @param probability The probability of fire spreading to adjacent cells
+     * @throws IllegalArgumentException If the probability is not between 0 and 1
+     */
+    public void setPropagationProbability(double probability) throws IllegalArgumentException {
+        config.setFirePropagationProbability(probability);
+        for (SimulationService simulation : simulations) {
+            if (simulation != null) {
+                simulation.updatePropagationProbability(probability);
+            }
+        }
+    }
+    
+    /**
+     * Merges the burn maps of the runner threads into one and clears them for the next batch.
+     * Must not be called while a batch is running.
+     * 
+     * @return The burn map of every replica run since the last call
+     * @throws IllegalStateException If the burn map was not enabled
+     */
+    public BurnProbabilityMap takeBurnMap() throws IllegalStateException {
+        if (burnMaps == null) {
+            throw new IllegalStateException("The burn map is not enabled");
+        }
+        BurnProbabilityMap merged = new BurnProbabilityMap(config.getForestHeight(), config.getForestWidth(),
+            burnMaps[0].getBins(), burnMaps[0].getBinWidth());
+        for (BurnProbabilityMap map : burnMaps) {
+            merged.merge(map);
+            map.clear();
+        }
+        return merged;
+    }
+    
+    /**
+     * Runs every replica of a batch and passes each summary to a sink as soon as the replica ends.
+     * The sink is called from the runner threads, one call at a time.
+     * 
+     * @param batch The batch to run
+     * @param sink Receives the replica summaries, in completion order
+     * @throws IllegalArgumentException If the configuration never completes and the batch has no step limit
+     * @throws InterruptedException If the calling thread is interrupted while waiting
+     */
+    public void run(ReplicaBatch batch, Consumer<ReplicaSummary> sink) throws IllegalArgumentException, InterruptedException {
+        if (batch.getMaxSteps() < 0 && config.isContinuous()) {
+            throw new IllegalArgumentException("A continuous regrowth ensemble needs a step limit");
+        }
+        
+        AtomicInteger next = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int slot = 0; slot < simulations.length; slot++) {
+            int runnerSlot = slot;
+            futures.add(executor.submit(() -> {
+                int offset;
+                while ((offset = next.getAndIncrement()) < batch.getReplicaCount()) {
+                    ReplicaSummary summary = runReplica(runnerSlot, batch, batch.getFirstReplica() + offset);
+                    synchronized (sink) {
+                        sink.accept(summary);
+                    }
+                }
+            }));
+        }
+        
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+        }
+    }
+    
+    /**
+     * Runs one replica on the simulation of a runner slot.
+     * 
+     * @param slot The runner slot, owned by the calling thread for the duration of the batch
+     * @param batch The batch the replica belongs to
+     * @param replica The replica index
+     * @return The replica summary
+     */
+    private ReplicaSummary runReplica(int slot, ReplicaBatch batch, int replica) {
+        if (simulations[slot] == null) {
+            simulations[slot] = new SimulationService(config);
+        }
+        SimulationService simulation = simulations[slot];
+        
+        ReplicaEvent event = new ReplicaEvent();
+        event.begin();
+        long seed = batch.seedOf(replica);
+        simulation.reset(seed);
+        if (stopOnSpanning) {
+            simulation.runUntilSpanning(batch.getMaxSteps(), null);
+        } else if (batch.getMaxSteps() < 0) {
+            simulation.runToCompletion();
+        } else {
+            simulation.runSteps(batch.getMaxSteps());
+        }
+        long burned = simulation.getFireCount() + simulation.getAshCount();
+        if (burnMaps != null) {
+            burnMaps[slot].add(simulation.getForest().getIgnitionSteps());
+        }
+        
+        event.end();
+        if (event.shouldCommit()) {
+            event.replica = replica;
+            event.seed = seed;
+            event.steps = simulation.getStepCount();
+            event.burnedCells = (int) burned;
+            event.commit();
+        }
+        return new ReplicaSummary(replica, seed, simulation.getStepCount(), simulation.getTreeCount(), burned,
+            stopOnSpanning && simulation.isSpanning());
+    }
+    
+    /**
+     * Stops the runner threads.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
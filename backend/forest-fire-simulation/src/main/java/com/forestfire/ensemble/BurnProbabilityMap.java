@@ -0,0 +1,269 @@
+package com.forestfire.ensemble;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Per-cell burn counts over the replicas of an ensemble, giving the probability that each cell burns.
+ * Optionally it also keeps a histogram of the step at which each cell ignited, from which quantiles
+ * of the arrival time are read. Counts are plain int arrays, so each runner thread keeps its own
+ * map without synchronisation and the maps are merged by adding them.
+ * 
+ * Histograms cost bins * 4 bytes per cell. Steps at or past bins * binWidth fall into the last bin.
+ */
+public class BurnProbabilityMap {
+    
+    private final int height;
+    private final int width;
+    private final int bins;
+    private final int binWidth;
+    private final int[] burnCounts;
+    private final int[] histograms;
+    private int replicas;
+    
+    /**
+     * Creates an empty map.
+     * 
+     * @param height The height of the forest
+     * @param width The width of the forest
+     * @param bins The number of ignition-step histogram bins per cell, or 0 for burn counts only
+     * @param binWidth The number of steps per histogram bin
+     * @throws IllegalArgumentException If the bin settings are invalid
+     */
+    public BurnProbabilityMap(int height, int width, int bins, int binWidth) throws IllegalArgumentException {
+        if (bins < 0 || binWidth <= 0) {
+            throw new IllegalArgumentException("Histogram bins must not be negative and bin width must be positive");
+        }
+        this.height = height;
+        this.width = width;
+        this.bins = bins;
+        this.binWidth = binWidth;
+        this.burnCounts = new int[height * width];
+        this.histograms = bins > 0 ? new int[height * width * bins] : null;
+    }
+    
+    /**
+     * Chooses a bin width that spreads the bins over the steps a replica can take: the step limit
+     * if there is one, otherwise twice the forest perimeter, which covers a front winding through
+     * most sparse forests.
+     * 
+     * @param height The height of the forest
+     * @param width The width of the forest
+     * @param bins The number of histogram bins
+     * @param maxSteps The step limit of each replica, or -1 for none
+     * @return The bin width, at least 1
+     */
+    public static int defaultBinWidth(int height, int width, int bins, int maxSteps) {
+        if (bins <= 0) {
+            return 1;
+        }
+        long span = maxSteps > 0 ? maxSteps : 2L * (height + width);
+        return (int) Math.max(1, (span + bins - 1) / bins);
+    }
+    
+    /**
+     * Adds one replica from the ignition steps of its final forest.
+     * 
+     * @param ignitionSteps The step each cell ignited at, -1 for cells that never did
+     */
+    public void add(int[] ignitionSteps) {
+        for (int i = 0; i < burnCounts.length; i++) {
+            int step = ignitionSteps[i];
+            if (step >= 0) {
+                burnCounts[i]++;
+                if (histograms != null) {
+                    histograms[i * bins + Math.min(step / binWidth, bins - 1)]++;
+                }
+            }
+        }
+        replicas++;
+    }
+    
+    /**
+     * Adds the counts of another map with the same dimensions and bins.
+     * 
+     * @param other The map to add
+     * @throws IllegalArgumentException If the maps have different shapes
+     */
+    public void merge(BurnProbabilityMap other) throws IllegalArgumentException {
+        if (other.burnCounts.length != burnCounts.length || other.bins != bins || other.binWidth != binWidth) {
+            throw new IllegalArgumentException("Cannot merge burn maps of different shapes");
+        }
+        for (int i = 0; i < burnCounts.length; i++) {
+            burnCounts[i] += other.burnCounts[i];
+        }
+        if (histograms != null) {
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] += other.histograms[i];
+            }
+        }
+        replicas += other.replicas;
+    }
+    
+    /**
+     * Removes every count.
+     */
+    public void clear() {
+        Arrays.fill(burnCounts, 0);
+        if (histograms != null) {
+            Arrays.fill(histograms, 0);
+        }
+        replicas = 0;
+    }
+    
+    /**
+     * Gets the probability that a cell burns.
+     * 
+     * @param index The row-major index of the cell
+     * @return The fraction of replicas in which the cell burned, or 0 before any replica
+     */
+    public double getProbability(int index) {
+        return replicas > 0 ? (double) burnCounts[index] / replicas : 0;
+    }
+    
+    /**
+     * Gets the burn probability of every cell.
+     * 
+     * @return The row-major probabilities
+     */
+    public float[] getProbabilities() {
+        float[] probabilities = new float[burnCounts.length];
+        for (int i = 0; i < probabilities.length; i++) {
+            probabilities[i] = (float) getProbability(i);
+        }
+        return probabilities;
+    }
+    
+    /**
+     * Gets a quantile of the step at which a cell ignites, over the replicas in which it burned.
+     * The result is the first step of the histogram bin holding the quantile, so it is exact
+     * when the bin width is 1.
+     * 
+     * @param index The row-major index of the cell
+     * @param quantile The quantile, between 0 and 1
+     * @return The ignition step quantile, or -1 if the cell never burned
+     * @throws IllegalStateException If the map keeps no histograms
+     */
+    public int getIgnitionQuantile(int index, double quantile) throws IllegalStateException {
+        if (histograms == null) {
+            throw new IllegalStateException("Ignition quantiles need histogram bins");
+        }
+        int count = burnCounts[index];
+        if (count == 0) {
+            return -1;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long cumulative = 0;
+        int base = index * bins;
+        for (int b = 0; b < bins; b++) {
+            cumulative += histograms[base + b];
+            if (cumulative >= rank) {
+                return b * binWidth;
+            }
+        }
+        return (bins - 1) * binWidth;
+    }
+    
+    /**
+     * Gets a quantile of the ignition step of every cell.
+     * 
+     * @param quantile The quantile, between 0 and 1
+     * @return The row-major quantiles, -1 for cells that never burned
+     * @throws IllegalStateException If the map keeps no histograms
+     */
+    public int[] getIgnitionQuantiles(double quantile) throws IllegalStateException {
+        int[] quantiles = new int[burnCounts.length];
+        for (int i = 0; i < quantiles.length; i++) {
+            quantiles[i] = getIgnitionQuantile(i, quantile);
+        }
+        return quantiles;
+    }
+    
+    /**
+     * Gets the size of the binary form written by write().
+     * 
+     * @return The size in bytes
+     */
+    public int getSerializedSize() {
+        return 5 * 4 + 4 * burnCounts.length + (histograms != null ? 4 * histograms.length : 0);
+    }
+    
+    /**
+     * Writes the map in its binary form: height, width, bins, bin width and replica count, then the
+     * burn counts and the histograms as big-endian ints.
+     * 
+     * @param buffer The buffer to write to, with at least getSerializedSize() bytes remaining
+     */
+    public void write(ByteBuffer buffer) {
+        buffer.putInt(height).putInt(width).putInt(bins).putInt(binWidth).putInt(replicas);
+        buffer.asIntBuffer().put(burnCounts);
+        buffer.position(buffer.position() + 4 * burnCounts.length);
+        if (histograms != null) {
+            buffer.asIntBuffer().put(histograms);
+            buffer.position(buffer.position() + 4 * histograms.length);
+        }
+    }
+    
+    /**
+     * Reads a map written by write().
+     * 
+     * @param buffer The buffer to read from
+     * @return The map
+     */
+    public static BurnProbabilityMap read(ByteBuffer buffer) {
+        BurnProbabilityMap map = new BurnProbabilityMap(buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt());
+        map.replicas = buffer.getInt();
+        buffer.asIntBuffer().get(map.burnCounts);
+        buffer.position(buffer.position() + 4 * map.burnCounts.length);
+        if (map.histograms != null) {
+            buffer.asIntBuffer().get(map.histograms);
+            buffer.position(buffer.position() + 4 * map.histograms.length);
+        }
+        return map;
+    }
+    
+    /**
+     * Gets the number of replicas added.
+     * 
+     * @return The replica count
+     */
+    public int getReplicas() {
+        return replicas;
+    }
+    
+    /**
+     * Gets the height of the forest.
+     * 
+     * @return The height
+     */
+    public int getHeight() {
+        return height;
+    }
+    
+    /**
+     * Gets the width of the forest.
+     * 
+     * @return The width
+     */
+    public int getWidth() {
+        return width;
+    }
+    
+    /**
+     * Gets the number of histogram bins per cell.
+     * 
+     * @return The bin count, 0 if no histograms are kept
+     */
+    public int getBins() {
+        return bins;
+    }
+    
+    /**
+     * Gets the number of steps per histogram bin.
+     * 
+     * @return The bin width
+     */
+    public int getBinWidth() {
+        return binWidth;
+    }
+}
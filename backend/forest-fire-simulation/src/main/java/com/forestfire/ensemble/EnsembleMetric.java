@@ -0,0 +1,66 @@
+package com.forestfire.ensemble;
+
+/**
+ * Per-replica outcomes whose ensemble mean can be estimated to a target precision.
+ */
+public enum EnsembleMetric {
+    BURNED_FRACTION, // Fraction of the forest burning or burnt at the end of a replica
+    EXTINCTION_STEP; // Steps until no cell was burning, or the step limit if the fire outlived it
+    
+    /**
+     * Parses a metric name, ignoring case and accepting "-" in place of "_".
+     * 
+     * @param name The metric name, e.g. "burned-fraction" or "extinction-step"
+     * @return The matching metric
+     * @throws IllegalArgumentException If the name is not a known metric
+     */
+    public static EnsembleMetric parse(String name) throws IllegalArgumentException {
+        try {
+            return valueOf(name.trim().toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown metric: " + name + " (expected burned-fraction or extinction-step)");
+        }
+    }
+    
+    /**
+     * Gets the name of the metric as it is written in options and reports.
+     * 
+     * @return The name, e.g. "burned-fraction"
+     */
+    public String getName() {
+        return name().toLowerCase().replace('_', '-');
+    }
+    
+    /**
+     * Gets the value of the metric for one replica.
+     * 
+     * @param summary The replica summary
+     * @param cells The number of cells of the forest
+     * @return The value
+     */
+    public double valueOf(ReplicaSummary summary, long cells) {
+        return this == BURNED_FRACTION ? (double) summary.getBurnedCells() / cells : summary.getSteps();
+    }
+    
+    /**
+     * Gets the ensemble mean of the metric.
+     * 
+     * @param statistics The ensemble statistics
+     * @param cells The number of cells of the forest
+     * @return The mean
+     */
+    public double getMean(EnsembleStatistics statistics, long cells) {
+        return this == BURNED_FRACTION ? statistics.getMeanBurned() / cells : statistics.getMeanSteps();
+    }
+    
+    /**
+     * Gets the sample standard deviation of the metric over the replicas.
+     * 
+     * @param statistics The ensemble statistics
+     * @param cells The number of cells of the forest
+     * @return The standard deviation
+     */
+    public double getStdDev(EnsembleStatistics statistics, long cells) {
+        return this == BURNED_FRACTION ? statistics.getStdDevBurned() / cells : statistics.getStdDevSteps();
+    }
+}
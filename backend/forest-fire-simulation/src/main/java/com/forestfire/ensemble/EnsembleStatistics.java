@@ -0,0 +1,108 @@
+package com.forestfire.ensemble;
+
+/**
+ * Running statistics of the replica outcomes of an ensemble.
+ * The means and variances use Welford's update, so they stay accurate over many replicas.
+ */
+public class EnsembleStatistics {
+    
+    private long replicas;
+    private double meanBurned;
+    private double sumSquaredDeviations;
+    private long minBurned = Long.MAX_VALUE;
+    private long maxBurned = Long.MIN_VALUE;
+    private long totalSteps;
+    private double meanSteps;
+    private double stepSquaredDeviations;
+    
+    /**
+     * Adds the outcome of one replica.
+     * 
+     * @param summary The replica summary
+     */
+    public void add(ReplicaSummary summary) {
+        long burned = summary.getBurnedCells();
+        replicas++;
+        double delta = burned - meanBurned;
+        meanBurned += delta / replicas;
+        sumSquaredDeviations += delta * (burned - meanBurned);
+        minBurned = Math.min(minBurned, burned);
+        maxBurned = Math.max(maxBurned, burned);
+        totalSteps += summary.getSteps();
+        double stepDelta = summary.getSteps() - meanSteps;
+        meanSteps += stepDelta / replicas;
+        stepSquaredDeviations += stepDelta * (summary.getSteps() - meanSteps);
+    }
+    
+    /**
+     * Gets the number of replicas added.
+     * 
+     * @return The replica count
+     */
+    public long getReplicas() {
+        return replicas;
+    }
+    
+    /**
+     * Gets the mean number of burned cells per replica.
+     * 
+     * @return The mean, or 0 if no replica was added
+     */
+    public double getMeanBurned() {
+        return meanBurned;
+    }
+    
+    /**
+     * Gets the sample standard deviation of the burned cells per replica.
+     * 
+     * @return The standard deviation, or 0 with fewer than two replicas
+     */
+    public double getStdDevBurned() {
+        return replicas > 1 ? Math.sqrt(sumSquaredDeviations / (replicas - 1)) : 0;
+    }
+    
+    /**
+     * Gets the fewest burned cells of any replica.
+     * 
+     * @return The minimum, or 0 if no replica was added
+     */
+    public long getMinBurned() {
+        return replicas > 0 ? minBurned : 0;
+    }
+    
+    /**
+     * Gets the most burned cells of any replica.
+     * 
+     * @return The maximum, or 0 if no replica was added
+     */
+    public long getMaxBurned() {
+        return replicas > 0 ? maxBurned : 0;
+    }
+    
+    /**
+     * Gets the mean number of steps per replica.
+     * 
+     * @return The mean step count, or 0 if no replica was added
+     */
+    public double getMeanSteps() {
+        return replicas > 0 ? (double) totalSteps / replicas : 0;
+    }
+    
+    /**
+     * Gets the sample standard deviation of the steps per replica.
+     * 
+     * @return The standard deviation, or 0 with fewer than two replicas
+     */
+    public double getStdDevSteps() {
+        return replicas > 1 ? Math.sqrt(stepSquaredDeviations / (replicas - 1)) : 0;
+    }
+    
+    /**
+     * Gets the number of steps executed by all replicas together.
+     * 
+     * @return The total step count
+     */
+    public long getTotalSteps() {
+        return totalSteps;
+    }
+}
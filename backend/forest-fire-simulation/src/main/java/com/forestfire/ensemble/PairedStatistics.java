@@ -0,0 +1,123 @@
+package com.forestfire.ensemble;
+
+/**
+ * Running statistics of one metric over paired replicas of a baseline and a variant scenario.
+ * The means and variances of both scenarios and of their per-pair difference use Welford's update.
+ * 
+ * When the pairs share their random draws, the two outcomes of a pair are positively correlated
+ * and the difference varies far less than either outcome; the variance reduction is the factor
+ * by which independent replicas would need more runs for the same precision.
+ */
+public class PairedStatistics {
+    
+    private long pairs;
+    private double meanBaseline;
+    private double meanVariant;
+    private double meanDifference;
+    private double baselineSquaredDeviations;
+    private double variantSquaredDeviations;
+    private double differenceSquaredDeviations;
+    
+    /**
+     * Adds the outcomes of one pair of replicas.
+     * 
+     * @param baseline The value of the baseline replica
+     * @param variant The value of the variant replica
+     */
+    public void add(double baseline, double variant) {
+        pairs++;
+        double deltaBaseline = baseline - meanBaseline;
+        meanBaseline += deltaBaseline / pairs;
+        baselineSquaredDeviations += deltaBaseline * (baseline - meanBaseline);
+        double deltaVariant = variant - meanVariant;
+        meanVariant += deltaVariant / pairs;
+        variantSquaredDeviations += deltaVariant * (variant - meanVariant);
+        double difference = variant - baseline;
+        double deltaDifference = difference - meanDifference;
+        meanDifference += deltaDifference / pairs;
+        differenceSquaredDeviations += deltaDifference * (difference - meanDifference);
+    }
+    
+    /**
+     * Gets the number of pairs added.
+     * 
+     * @return The pair count
+     */
+    public long getPairs() {
+        return pairs;
+    }
+    
+    /**
+     * Gets the mean of the baseline replicas.
+     * 
+     * @return The baseline mean
+     */
+    public double getMeanBaseline() {
+        return meanBaseline;
+    }
+    
+    /**
+     * Gets the mean of the variant replicas.
+     * 
+     * @return The variant mean
+     */
+    public double getMeanVariant() {
+        return meanVariant;
+    }
+    
+    /**
+     * Gets the mean difference, variant minus baseline.
+     * 
+     * @return The mean paired difference
+     */
+    public double getMeanDifference() {
+        return meanDifference;
+    }
+    
+    /**
+     * Gets the sample variance of the per-pair differences.
+     * 
+     * @return The variance, or 0 with fewer than two pairs
+     */
+    public double getDifferenceVariance() {
+        return pairs > 1 ? differenceSquaredDeviations / (pairs - 1) : 0;
+    }
+    
+    /**
+     * Gets the standard error of the mean difference.
+     * 
+     * @return The standard error, or 0 with fewer than two pairs
+     */
+    public double getStandardError() {
+        return pairs > 1 ? Math.sqrt(getDifferenceVariance() / pairs) : 0;
+    }
+    
+    /**
+     * Gets the half width of the 95% confidence interval of the mean difference.
+     * 
+     * @return The half width
+     */
+    public double getHalfWidth() {
+        return ThresholdPoint.Z95 * getStandardError();
+    }
+    
+    /**
+     * Gets the variance the difference of two independent replicas would have: the sum of the
+     * sample variances of the two scenarios.
+     * 
+     * @return The independent variance, or 0 with fewer than two pairs
+     */
+    public double getIndependentVariance() {
+        return pairs > 1 ? (baselineSquaredDeviations + variantSquaredDeviations) / (pairs - 1) : 0;
+    }
+    
+    /**
+     * Gets the factor by which pairing reduced the variance of the difference.
+     * 
+     * @return The independent variance over the paired variance, infinity if every pair differed
+     *         by the same amount, or NaN if neither scenario varied
+     */
+    public double getVarianceReduction() {
+        return getIndependentVariance() / getDifferenceVariance();
+    }
+}
@@ -0,0 +1,79 @@
+package com.forestfire.ensemble;
+
+/**
+ * A contiguous range of replicas of an ensemble, the unit of work handed to a worker.
+ * Every replica's seed is derived from the ensemble seed and its index alone, so a batch
+ * gives the same results whichever worker runs it and however often it is retried.
+ */
+public final class ReplicaBatch {
+    
+    private final int firstReplica;
+    private final int replicaCount;
+    private final long ensembleSeed;
+    private final int maxSteps;
+    
+    /**
+     * Creates a batch.
+     * 
+     * @param firstReplica The index of the first replica
+     * @param replicaCount The number of replicas
+     * @param ensembleSeed The seed of the whole ensemble
+     * @param maxSteps The step limit of each replica, or -1 to run until no cell is burning
+     */
+    public ReplicaBatch(int firstReplica, int replicaCount, long ensembleSeed, int maxSteps) {
+        this.firstReplica = firstReplica;
+        this.replicaCount = replicaCount;
+        this.ensembleSeed = ensembleSeed;
+        this.maxSteps = maxSteps;
+    }
+    
+    /**
+     * Derives the seed of one replica with the SplitMix64 finaliser, so that neighbouring
+     * replica indices get unrelated random streams.
+     * 
+     * @param replica The replica index
+     * @return The seed of the replica
+     */
+    public long seedOf(int replica) {
+        long z = ensembleSeed + (replica + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+    
+    /**
+     * Gets the index of the first replica.
+     * 
+     * @return The first replica index
+     */
+    public int getFirstReplica() {
+        return firstReplica;
+    }
+    
+    /**
+     * Gets the number of replicas.
+     * 
+     * @return The replica count
+     */
+    public int getReplicaCount() {
+        return replicaCount;
+    }
+    
+    /**
+     * Gets the seed of the whole ensemble.
+     * 
+     * @return The ensemble seed
+     */
+    public long getEnsembleSeed() {
+        return ensembleSeed;
+    }
+    
+    /**
+     * Gets the step limit of each replica.
+     * 
+     * @return The maximum number of steps, or -1 to run until no cell is burning
+     */
+    public int getMaxSteps() {
+        return maxSteps;
+    }
+}
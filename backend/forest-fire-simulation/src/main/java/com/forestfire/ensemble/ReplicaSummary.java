@@ -0,0 +1,124 @@
+package com.forestfire.ensemble;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/**
+ * The outcome of one replica of an ensemble.
+ */
+public final class ReplicaSummary {
+    
+    /** Size of the binary form written by write(). */
+    public static final int BYTES = 4 + 8 + 4 + 8 + 8 + 1;
+    
+    private final int replica;
+    private final long seed;
+    private final int steps;
+    private final long trees;
+    private final long burnedCells;
+    private final boolean spanned;
+    
+    /**
+     * Creates a replica summary.
+     * 
+     * @param replica The replica index
+     * @param seed The seed the replica ran with
+     * @param steps The number of steps executed
+     * @param trees The number of trees at the end
+     * @param burnedCells The number of cells burning or burnt at the end
+     * @param spanned Whether the replica stopped because its burned area spanned the grid
+     */
+    public ReplicaSummary(int replica, long seed, int steps, long trees, long burnedCells, boolean spanned) {
+        this.replica = replica;
+        this.seed = seed;
+        this.steps = steps;
+        this.trees = trees;
+        this.burnedCells = burnedCells;
+        this.spanned = spanned;
+    }
+    
+    /**
+     * Writes the summary in its binary form.
+     * 
+     * @param buffer The buffer to write to, with at least BYTES remaining
+     */
+    public void write(ByteBuffer buffer) {
+        buffer.putInt(replica).putLong(seed).putInt(steps).putLong(trees).putLong(burnedCells).put((byte) (spanned ? 1 : 0));
+    }
+    
+    /**
+     * Reads a summary written by write().
+     * 
+     * @param buffer The buffer to read from
+     * @return The summary
+     */
+    public static ReplicaSummary read(ByteBuffer buffer) {
+        return new ReplicaSummary(buffer.getInt(), buffer.getLong(), buffer.getInt(), buffer.getLong(), buffer.getLong(),
+            buffer.get() != 0);
+    }
+    
+    /**
+     * Formats the summary as a single-line JSON object.
+     * 
+     * @return The JSON text
+     */
+    public String toJson() {
+        return String.format(Locale.ROOT, "{\"replica\":%d,\"seed\":%d,\"steps\":%d,\"trees\":%d,\"burned\":%d%s}",
+            replica, seed, steps, trees, burnedCells, spanned ? ",\"spanned\":true" : "");
+    }
+    
+    /**
+     * Gets the replica index.
+     * 
+     * @return The replica index
+     */
+    public int getReplica() {
+        return replica;
+    }
+    
+    /**
+     * Gets the seed the replica ran with.
+     * 
+     * @return The seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+    
+    /**
+     * Gets the number of steps executed.
+     * 
+     * @return The step count
+     */
+    public int getSteps() {
+        return steps;
+    }
+    
+    /**
+     * Gets the number of trees at the end of the replica.
+     * 
+     * @return The tree count
+     */
+    public long getTrees() {
+        return trees;
+    }
+    
+    /**
+     * Gets the number of cells burning or burnt at the end of the replica.
+     * 
+     * @return The burned cell count
+     */
+    public long getBurnedCells() {
+        return burnedCells;
+    }
+    
+    /**
+     * Checks if the replica stopped because its burned area connected two opposite edges.
+     * Only replicas run with stop-on-spanning can be true.
+     * 
+     * @return true if the burned area spanned the grid
+     */
+    public boolean isSpanned() {
+        return spanned;
+    }
+}
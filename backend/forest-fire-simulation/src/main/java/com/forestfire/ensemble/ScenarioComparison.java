@@ -0,0 +1,101 @@
+package com.forestfire.ensemble;
+
+import com.forestfire.config.SimulationConfig;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Compares two scenarios with common random numbers: replica i of the baseline and replica i
+ * of the variant run with the same seed and keyed random draws, so every edge the fire can cross
+ * in both forests gets the same draw at the same step. The two runs of a pair then only differ
+ * where the scenarios themselves differ, and the paired difference of their outcomes has a much
+ * smaller variance than the difference of independent runs.
+ * 
+ * The replicas run in rounds: the baseline replicas of a round, then the variant replicas with
+ * the same indices, each on a BatchRunner of its own so that both keep their grids.
+ */
+public class ScenarioComparison {
+    
+    private final SimulationConfig baseline;
+    private final SimulationConfig variant;
+    private final int threads;
+    private int roundSize = 256;
+    
+    /**
+     * Creates a comparison.
+     * 
+     * @param baseline The configuration of the baseline scenario
+     * @param variant The configuration of the variant scenario
+     * @param threads The number of replicas to run at once
+     * @throws IllegalArgumentException If the forests differ in size or the thread count is not positive
+     */
+    public ScenarioComparison(SimulationConfig baseline, SimulationConfig variant, int threads)
+            throws IllegalArgumentException {
+        if (baseline.getForestHeight() != variant.getForestHeight() || baseline.getForestWidth() != variant.getForestWidth()) {
+            throw new IllegalArgumentException("Paired scenarios must have the same forest size, so that their cells share draws");
+        }
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Thread count must be positive");
+        }
+        this.baseline = new SimulationConfig(baseline);
+        this.variant = new SimulationConfig(variant);
+        this.baseline.setKeyedRandom(true);
+        this.variant.setKeyedRandom(true);
+        this.threads = threads;
+    }
+    
+    /**
+     * Sets the number of pairs per round, which bounds the outcomes held in memory at once.
+     * 
+     * @param roundSize The number of pairs per round
+     * @throws IllegalArgumentException If the size is not positive
+     */
+    public void setRoundSize(int roundSize) throws IllegalArgumentException {
+        if (roundSize <= 0) {
+            throw new IllegalArgumentException("Round size must be positive");
+        }
+        this.roundSize = roundSize;
+    }
+    
+    /**
+     * Runs the paired replicas and collects the statistics of every metric.
+     * 
+     * @param pairs The number of replica pairs
+     * @param seed The seed of the ensemble, shared by both scenarios
+     * @param maxSteps The step limit of each replica, or -1 to run until no cell is burning
+     * @return The paired statistics of each metric
+     * @throws IllegalArgumentException If the pair count is not positive or a scenario never completes without a step limit
+     * @throws InterruptedException If the calling thread is interrupted while waiting
+     */
+    public Map<EnsembleMetric, PairedStatistics> run(int pairs, long seed, int maxSteps)
+            throws IllegalArgumentException, InterruptedException {
+        if (pairs <= 0) {
+            throw new IllegalArgumentException("Replica count must be positive");
+        }
+        long cells = (long) baseline.getForestHeight() * baseline.getForestWidth();
+        Map<EnsembleMetric, PairedStatistics> statistics = new EnumMap<>(EnsembleMetric.class);
+        for (EnsembleMetric metric : EnsembleMetric.values()) {
+            statistics.put(metric, new PairedStatistics());
+        }
+        
+        ReplicaSummary[] baselineSummaries = new ReplicaSummary[Math.min(roundSize, pairs)];
+        ReplicaSummary[] variantSummaries = new ReplicaSummary[baselineSummaries.length];
+        try (BatchRunner baselineRunner = new BatchRunner(baseline, threads);
+             BatchRunner variantRunner = new BatchRunner(variant, threads)) {
+            for (int first = 0; first < pairs; first += roundSize) {
+                int offset = first;
+                ReplicaBatch batch = new ReplicaBatch(first, Math.min(roundSize, pairs - first), seed, maxSteps);
+                baselineRunner.run(batch, summary -> baselineSummaries[summary.getReplica() - offset] = summary);
+                variantRunner.run(batch, summary -> variantSummaries[summary.getReplica() - offset] = summary);
+                for (int k = 0; k < batch.getReplicaCount(); k++) {
+                    for (Map.Entry<EnsembleMetric, PairedStatistics> entry : statistics.entrySet()) {
+                        EnsembleMetric metric = entry.getKey();
+                        entry.getValue().add(metric.valueOf(baselineSummaries[k], cells), metric.valueOf(variantSummaries[k], cells));
+                    }
+                }
+            }
+        }
+        return statistics;
+    }
+}
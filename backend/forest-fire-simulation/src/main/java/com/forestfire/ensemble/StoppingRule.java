@@ -0,0 +1,130 @@
+package com.forestfire.ensemble;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A sequential stopping rule for an ensemble: it is met once the 95% confidence interval of the
+ * mean of every chosen metric is no wider than its target. The interval uses the normal
+ * approximation, mean ± 1.96 sd / sqrt(n), so a minimum replica count guards against stopping
+ * on the deceptively small spread of the first few replicas.
+ */
+public class StoppingRule {
+    
+    private final Map<EnsembleMetric, Double> targets;
+    private int minReplicas = 30;
+    
+    /**
+     * Creates a stopping rule.
+     * 
+     * @param targets The target interval width of each metric
+     * @throws IllegalArgumentException If there is no target or a width is not positive
+     */
+    public StoppingRule(Map<EnsembleMetric, Double> targets) throws IllegalArgumentException {
+        if (targets.isEmpty()) {
+            throw new IllegalArgumentException("A stopping rule needs at least one target");
+        }
+        for (double width : targets.values()) {
+            if (!(width > 0)) {
+                throw new IllegalArgumentException("Target interval widths must be positive");
+            }
+        }
+        this.targets = new EnumMap<>(targets);
+    }
+    
+    /**
+     * Parses a stopping rule.
+     * 
+     * @param spec Comma-separated METRIC=WIDTH pairs, e.g. "burned-fraction=0.01,extinction-step=2"
+     * @return The stopping rule
+     * @throws IllegalArgumentException If a pair is malformed or names an unknown metric
+     */
+    public static StoppingRule parse(String spec) throws IllegalArgumentException {
+        Map<EnsembleMetric, Double> targets = new EnumMap<>(EnsembleMetric.class);
+        for (String pair : spec.split(",")) {
+            String[] parts = pair.split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Interval target must be METRIC=WIDTH: " + pair);
+            }
+            targets.put(EnsembleMetric.parse(parts[0]), Double.parseDouble(parts[1].trim()));
+        }
+        return new StoppingRule(targets);
+    }
+    
+    /**
+     * Sets the number of replicas below which the rule is never met.
+     * 
+     * @param minReplicas The minimum replica count, at least 2
+     * @throws IllegalArgumentException If the count is below 2
+     */
+    public void setMinReplicas(int minReplicas) throws IllegalArgumentException {
+        if (minReplicas < 2) {
+            throw new IllegalArgumentException("A confidence interval needs at least 2 replicas");
+        }
+        this.minReplicas = minReplicas;
+    }
+    
+    /**
+     * Gets the number of replicas below which the rule is never met.
+     * 
+     * @return The minimum replica count
+     */
+    public int getMinReplicas() {
+        return minReplicas;
+    }
+    
+    /**
+     * Gets the metrics with a target.
+     * 
+     * @return The metrics, in declaration order
+     */
+    public Set<EnsembleMetric> getMetrics() {
+        return Collections.unmodifiableSet(targets.keySet());
+    }
+    
+    /**
+     * Gets the target interval width of a metric.
+     * 
+     * @param metric The metric
+     * @return The target width, or 0 if the metric has no target
+     */
+    public double getTarget(EnsembleMetric metric) {
+        return targets.getOrDefault(metric, 0.0);
+    }
+    
+    /**
+     * Gets the current width of the 95% confidence interval of a metric's mean.
+     * 
+     * @param metric The metric
+     * @param statistics The ensemble statistics
+     * @param cells The number of cells of the forest
+     * @return The full interval width, or infinity with fewer than two replicas
+     */
+    public static double getWidth(EnsembleMetric metric, EnsembleStatistics statistics, long cells) {
+        if (statistics.getReplicas() < 2) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return 2 * ThresholdPoint.Z95 * metric.getStdDev(statistics, cells) / Math.sqrt(statistics.getReplicas());
+    }
+    
+    /**
+     * Checks if the ensemble has enough replicas and every interval is within its target.
+     * 
+     * @param statistics The ensemble statistics
+     * @param cells The number of cells of the forest
+     * @return true if the ensemble can stop
+     */
+    public boolean isMet(EnsembleStatistics statistics, long cells) {
+        if (statistics.getReplicas() < minReplicas) {
+            return false;
+        }
+        for (Map.Entry<EnsembleMetric, Double> target : targets.entrySet()) {
+            if (getWidth(target.getKey(), statistics, cells) > target.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,138 @@
+package com.forestfire.ensemble;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The estimated critical propagation probability of one grid size: the probability at which
+ * half of the replicas burn across the grid, with its 95% confidence interval and the points
+ * the search measured.
+ */
+public final class ThresholdEstimate {
+    
+    private final int height;
+    private final int width;
+    private final double threshold;
+    private final double lower;
+    private final double upper;
+    private final boolean fitted;
+    private final List<ThresholdPoint> points;
+    
+    /**
+     * Creates an estimate.
+     * 
+     * @param height The height of the grid
+     * @param width The width of the grid
+     * @param threshold The estimated critical probability
+     * @param lower The lower end of the 95% confidence interval
+     * @param upper The upper end of the 95% confidence interval
+     * @param fitted true if the estimate comes from the logistic fit, false if it is the bisection bracket
+     * @param points The measured points, in the order they were measured
+     */
+    public ThresholdEstimate(int height, int width, double threshold, double lower, double upper, boolean fitted,
+                             List<ThresholdPoint> points) {
+        this.height = height;
+        this.width = width;
+        this.threshold = threshold;
+        this.lower = lower;
+        this.upper = upper;
+        this.fitted = fitted;
+        this.points = points;
+    }
+    
+    /**
+     * Gets the height of the grid.
+     * 
+     * @return The height
+     */
+    public int getHeight() {
+        return height;
+    }
+    
+    /**
+     * Gets the width of the grid.
+     * 
+     * @return The width
+     */
+    public int getWidth() {
+        return width;
+    }
+    
+    /**
+     * Gets the estimated critical probability.
+     * 
+     * @return The probability at which the spanning fraction crosses one half
+     */
+    public double getThreshold() {
+        return threshold;
+    }
+    
+    /**
+     * Gets the lower end of the 95% confidence interval.
+     * 
+     * @return The lower bound
+     */
+    public double getLower() {
+        return lower;
+    }
+    
+    /**
+     * Gets the upper end of the 95% confidence interval.
+     * 
+     * @return The upper bound
+     */
+    public double getUpper() {
+        return upper;
+    }
+    
+    /**
+     * Checks if the estimate comes from the logistic fit rather than the bisection bracket.
+     * 
+     * @return true if the fit converged
+     */
+    public boolean isFitted() {
+        return fitted;
+    }
+    
+    /**
+     * Gets the measured points.
+     * 
+     * @return The points, in the order they were measured
+     */
+    public List<ThresholdPoint> getPoints() {
+        return points;
+    }
+    
+    /**
+     * Gets the number of replicas run for this grid size.
+     * 
+     * @return The replica count over every point
+     */
+    public long getTotalReplicas() {
+        long total = 0;
+        for (ThresholdPoint point : points) {
+            total += point.getReplicas();
+        }
+        return total;
+    }
+    
+    /**
+     * Formats the estimate as a single-line JSON object.
+     * 
+     * @return The JSON text
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder(128 + 96 * points.size());
+        json.append(String.format(Locale.ROOT,
+            "{\"height\":%d,\"width\":%d,\"threshold\":%.6f,\"lower\":%.6f,\"upper\":%.6f,\"method\":\"%s\","
+                + "\"replicas\":%d,\"points\":[",
+            height, width, threshold, lower, upper, fitted ? "logistic" : "bracket", getTotalReplicas()));
+        for (int i = 0; i < points.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(points.get(i).toJson());
+        }
+        return json.append("]}").toString();
+    }
+}
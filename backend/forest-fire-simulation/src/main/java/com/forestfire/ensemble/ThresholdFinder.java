@@ -0,0 +1,270 @@
+package com.forestfire.ensemble;
+
+import com.forestfire.config.SimulationConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Estimates the critical propagation probability of a configuration: the probability at which
+ * a fire lit in the centre of the grid burns across it in half of the replicas.
+ * 
+ * For each grid size, the search measures the spanning fraction at both ends of a probability
+ * range and then bisects the bracket around the transition. Each point starts with a few
+ * replicas and doubles them while the Wilson interval of its fraction still contains one half,
+ * so points far from the transition stay cheap and the replicas go where the decision is close.
+ * The threshold and its confidence interval then come from a logistic maximum-likelihood fit
+ * over every measured point.
+ * 
+ * Every point of a grid size runs on the same BatchRunner, whose thread simulations are only
+ * given the new probability, so the grids are allocated once per size rather than once per run.
+ * Every point also uses the same replica seeds, which makes neighbouring points differ mostly
+ * through the probability rather than through the random streams.
+ */
+public class ThresholdFinder {
+    
+    /** Newton iterations after which a fit that has not converged is abandoned. */
+    private static final int MAX_ITERATIONS = 100;
+    
+    private final SimulationConfig base;
+    private final int threads;
+    private int initialReplicas = 100;
+    private int maxReplicas = 1600;
+    private double tolerance = 0.002;
+    private Consumer<ThresholdPoint> progress;
+    
+    /**
+     * Creates a threshold finder.
+     * 
+     * @param config The configuration to vary; its size, probability and ignitions are replaced
+     * @param threads The number of replicas to run at once
+     * @throws IllegalArgumentException If the configuration cannot be swept or the thread count is not positive
+     */
+    public ThresholdFinder(SimulationConfig config, int threads) throws IllegalArgumentException {
+        if (config.getPropagationMap() != null) {
+            throw new IllegalArgumentException("A threshold search varies the global probability and cannot use a propagation map");
+        }
+        if (config.isContinuous()) {
+            throw new IllegalArgumentException("A threshold search needs fires that burn out, not continuous regrowth");
+        }
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Thread count must be positive");
+        }
+        this.base = config;
+        this.threads = threads;
+    }
+    
+    /**
+     * Sets how many replicas each point runs.
+     * 
+     * @param initialReplicas The replicas of the first batch of a point
+     * @param maxReplicas The most replicas a point may double up to
+     * @throws IllegalArgumentException If the counts are not positive or the maximum is below the initial count
+     */
+    public void setReplicas(int initialReplicas, int maxReplicas) throws IllegalArgumentException {
+        if (initialReplicas <= 0 || maxReplicas < initialReplicas) {
+            throw new IllegalArgumentException("Replica counts must be positive, with the maximum at least the initial count");
+        }
+        this.initialReplicas = initialReplicas;
+        this.maxReplicas = maxReplicas;
+    }
+    
+    /**
+     * Sets the bracket width at which bisection stops.
+     * 
+     * @param tolerance The width, greater than 0
+     * @throws IllegalArgumentException If the tolerance is not positive
+     */
+    public void setTolerance(double tolerance) throws IllegalArgumentException {
+        if (!(tolerance > 0)) {
+            throw new IllegalArgumentException("Tolerance must be positive");
+        }
+        this.tolerance = tolerance;
+    }
+    
+    /**
+     * Sets a callback for each point as soon as it is measured, for progress output.
+     * 
+     * @param progress The callback, or null for none
+     */
+    public void setProgress(Consumer<ThresholdPoint> progress) {
+        this.progress = progress;
+    }
+    
+    /**
+     * Estimates the threshold of several grid sizes, one after the other.
+     * 
+     * @param sizes The grid sizes as {height, width} pairs
+     * @param low The lower end of the probability range, where fires must mostly stay contained
+     * @param high The upper end of the probability range, where fires must mostly span the grid
+     * @param seed The seed of the replicas
+     * @return The estimate of each size, in order
+     * @throws IllegalArgumentException If the range is invalid or the transition is not inside it
+     * @throws InterruptedException If the calling thread is interrupted while waiting
+     */
+    public List<ThresholdEstimate> sweep(int[][] sizes, double low, double high, long seed)
+            throws IllegalArgumentException, InterruptedException {
+        List<ThresholdEstimate> estimates = new ArrayList<>();
+        for (int[] size : sizes) {
+            estimates.add(find(size[0], size[1], low, high, seed));
+        }
+        return estimates;
+    }
+    
+    /**
+     * Estimates the threshold of one grid size.
+     * 
+     * @param height The height of the grid
+     * @param width The width of the grid
+     * @param low The lower end of the probability range, where fires must mostly stay contained
+     * @param high The upper end of the probability range, where fires must mostly span the grid
+     * @param seed The seed of the replicas
+     * @return The estimate
+     * @throws IllegalArgumentException If the range is invalid or the transition is not inside it
+     * @throws InterruptedException If the calling thread is interrupted while waiting
+     */
+    public ThresholdEstimate find(int height, int width, double low, double high, long seed)
+            throws IllegalArgumentException, InterruptedException {
+        if (!(low >= 0 && low < high && high <= 1)) {
+            throw new IllegalArgumentException("Probability range must satisfy 0 <= low < high <= 1");
+        }
+        SimulationConfig config = new SimulationConfig(base);
+        config.setForestHeight(height);
+        config.setForestWidth(width);
+        config.setFirePropagationProbability(low);
+        config.setInitialFirePositions(new int[][] {{height / 2, width / 2}});
+        config.setBulkFirePositions(null);
+        config.setRandomIgnitions(null);
+        
+        List<ThresholdPoint> points = new ArrayList<>();
+        try (BatchRunner runner = new BatchRunner(config, threads)) {
+            runner.setStopOnSpanning(true);
+            ThresholdPoint lowPoint = measure(runner, low, seed, points);
+            ThresholdPoint highPoint = measure(runner, high, seed, points);
+            if (lowPoint.getFraction() >= 0.5 || highPoint.getFraction() <= 0.5) {
+                throw new IllegalArgumentException(String.format(Locale.ROOT,
+                    "The spanning fraction of a %dx%d grid does not cross 1/2 between p=%s (%.3f) and p=%s (%.3f)",
+                    height, width, low, lowPoint.getFraction(), high, highPoint.getFraction()));
+            }
+            
+            double bracketLow = low;
+            double bracketHigh = high;
+            while (bracketHigh - bracketLow > tolerance) {
+                double middle = (bracketLow + bracketHigh) / 2;
+                if (measure(runner, middle, seed, points).getFraction() < 0.5) {
+                    bracketLow = middle;
+                } else {
+                    bracketHigh = middle;
+                }
+            }
+            return fit(height, width, points, bracketLow, bracketHigh);
+        }
+    }
+    
+    /**
+     * Measures the spanning fraction at one probability, doubling the replicas until its
+     * interval excludes one half or the maximum is reached.
+     * 
+     * @param runner The runner of the grid size
+     * @param probability The propagation probability
+     * @param seed The seed of the replicas
+     * @param points The list the point is added to
+     * @return The point
+     * @throws InterruptedException If the calling thread is interrupted while waiting
+     */
+    private ThresholdPoint measure(BatchRunner runner, double probability, long seed, List<ThresholdPoint> points)
+            throws InterruptedException {
+        runner.setPropagationProbability(probability);
+        int[] spanned = new int[1];
+        int replicas = 0;
+        int batch = initialReplicas;
+        ThresholdPoint point;
+        do {
+            runner.run(new ReplicaBatch(replicas, batch, seed, -1), summary -> {
+                if (summary.isSpanned()) {
+                    spanned[0]++;
+                }
+            });
+            replicas += batch;
+            point = new ThresholdPoint(probability, replicas, spanned[0]);
+            batch = Math.min(replicas, maxReplicas - replicas);
+        } while (batch > 0 && point.getLower() <= 0.5 && point.getUpper() >= 0.5);
+        
+        points.add(point);
+        if (progress != null) {
+            progress.accept(point);
+        }
+        return point;
+    }
+    
+    /**
+     * Fits a logistic curve to the spanning fractions by Newton's method and takes the
+     * probability where it crosses one half, with a delta-method confidence interval.
+     * Falls back to the bisection bracket when the fit does not converge, which happens when
+     * the points separate perfectly into spanning and contained ones.
+     * 
+     * @param height The height of the grid
+     * @param width The width of the grid
+     * @param points The measured points
+     * @param bracketLow The lower end of the final bracket
+     * @param bracketHigh The upper end of the final bracket
+     * @return The estimate
+     */
+    private ThresholdEstimate fit(int height, int width, List<ThresholdPoint> points,
+                                  double bracketLow, double bracketHigh) {
+        // Centre and scale the probabilities on the bracket, so the fit is well conditioned however narrow it is
+        double centre = (bracketLow + bracketHigh) / 2;
+        double scale = Math.max(bracketHigh - bracketLow, 1e-9);
+        double a = 0;
+        double b = 0;
+        double infoAA = 0;
+        double infoAB = 0;
+        double infoBB = 0;
+        boolean converged = false;
+        for (int iteration = 0; iteration < MAX_ITERATIONS && !converged; iteration++) {
+            double gradA = 0;
+            double gradB = 0;
+            infoAA = 0;
+            infoAB = 0;
+            infoBB = 0;
+            for (ThresholdPoint point : points) {
+                double x = (point.getProbability() - centre) / scale;
+                double mu = 1 / (1 + Math.exp(-(a + b * x)));
+                double n = point.getReplicas();
+                double residual = point.getSpanned() - n * mu;
+                double weight = n * mu * (1 - mu);
+                gradA += residual;
+                gradB += residual * x;
+                infoAA += weight;
+                infoAB += weight * x;
+                infoBB += weight * x * x;
+            }
+            double determinant = infoAA * infoBB - infoAB * infoAB;
+            if (!(determinant > 0)) {
+                break;
+            }
+            double stepA = (infoBB * gradA - infoAB * gradB) / determinant;
+            double stepB = (infoAA * gradB - infoAB * gradA) / determinant;
+            a += stepA;
+            b += stepB;
+            converged = Math.abs(stepA) < 1e-10 && Math.abs(stepB) < 1e-10 * Math.max(1, Math.abs(b));
+        }
+        
+        double determinant = infoAA * infoBB - infoAB * infoAB;
+        if (converged && b > 0 && determinant > 0) {
+            double threshold = centre - scale * a / b;
+            // Variance of -a/b from the inverse information matrix
+            double dA = -1 / b;
+            double dB = a / (b * b);
+            double variance = (dA * dA * infoBB - 2 * dA * dB * infoAB + dB * dB * infoAA) / determinant;
+            double halfWidth = ThresholdPoint.Z95 * scale * Math.sqrt(variance);
+            if (threshold >= bracketLow - scale && threshold <= bracketHigh + scale && !Double.isNaN(halfWidth)) {
+                return new ThresholdEstimate(height, width, threshold, threshold - halfWidth, threshold + halfWidth,
+                    true, points);
+            }
+        }
+        return new ThresholdEstimate(height, width, centre, bracketLow, bracketHigh, false, points);
+    }
+}
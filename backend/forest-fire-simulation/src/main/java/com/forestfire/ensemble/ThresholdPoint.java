@@ -0,0 +1,113 @@
+package com.forestfire.ensemble;
+
+import java.util.Locale;
+
+/**
+ * The spanning fraction measured at one propagation probability of a threshold search,
+ * with its Wilson score interval.
+ */
+public final class ThresholdPoint {
+    
+    /** The standard normal quantile of a two-sided 95% interval. */
+    static final double Z95 = 1.959963984540054;
+    
+    private final double probability;
+    private final int replicas;
+    private final int spanned;
+    
+    /**
+     * Creates a point.
+     * 
+     * @param probability The propagation probability the replicas ran with
+     * @param replicas The number of replicas
+     * @param spanned The number of replicas whose burned area spanned the grid
+     */
+    public ThresholdPoint(double probability, int replicas, int spanned) {
+        this.probability = probability;
+        this.replicas = replicas;
+        this.spanned = spanned;
+    }
+    
+    /**
+     * Gets the propagation probability the replicas ran with.
+     * 
+     * @return The probability
+     */
+    public double getProbability() {
+        return probability;
+    }
+    
+    /**
+     * Gets the number of replicas run at this probability.
+     * 
+     * @return The replica count
+     */
+    public int getReplicas() {
+        return replicas;
+    }
+    
+    /**
+     * Gets the number of replicas whose burned area spanned the grid.
+     * 
+     * @return The spanning replica count
+     */
+    public int getSpanned() {
+        return spanned;
+    }
+    
+    /**
+     * Gets the fraction of replicas that spanned the grid.
+     * 
+     * @return The spanning fraction, or 0 without replicas
+     */
+    public double getFraction() {
+        return replicas > 0 ? (double) spanned / replicas : 0;
+    }
+    
+    /**
+     * Gets the lower end of the 95% Wilson score interval of the spanning fraction.
+     * 
+     * @return The lower bound
+     */
+    public double getLower() {
+        return wilson(-1);
+    }
+    
+    /**
+     * Gets the upper end of the 95% Wilson score interval of the spanning fraction.
+     * 
+     * @return The upper bound
+     */
+    public double getUpper() {
+        return wilson(1);
+    }
+    
+    /**
+     * Computes one end of the Wilson score interval, which unlike the normal approximation
+     * stays inside [0, 1] and is usable when every replica or none spanned.
+     * 
+     * @param sign -1 for the lower end, 1 for the upper end
+     * @return The bound
+     */
+    private double wilson(int sign) {
+        if (replicas == 0) {
+            return sign < 0 ? 0 : 1;
+        }
+        double n = replicas;
+        double z2 = Z95 * Z95;
+        double centre = (spanned + z2 / 2) / (n + z2);
+        double halfWidth = Z95 * Math.sqrt(spanned * (n - spanned) / n + z2 / 4) / (n + z2);
+        return Math.max(0, Math.min(1, centre + sign * halfWidth));
+    }
+    
+    /**
+     * Formats the point as a single-line JSON object.
+     * 
+     * @return The JSON text
+     */
+    public String toJson() {
+        return String.format(Locale.ROOT,
+            "{\"p\":%.6f,\"replicas\":%d,\"spanned\":%d,\"fraction\":%.4f,\"lower\":%.4f,\"upper\":%.4f}",
+            probability, replicas, spanned, getFraction(), getLower(), getUpper());
+    }
+}
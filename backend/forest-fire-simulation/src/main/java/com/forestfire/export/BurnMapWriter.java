@@ -0,0 +1,190 @@
+package com.forestfire.export;
+
+import com.forestfire.ensemble.BurnProbabilityMap;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Streams an ensemble burn probability map to a file or stream one row at a time.
+ * 
+ * Formats:
+ * - PGM: 16-bit binary greyscale (P5) of the burn probability, 0 for never burned and 65535
+ *   for burned in every replica, most significant byte first
+ * - NDJSON: one line per row, {"replicas":n,"row":r,"probabilities":[...]}, plus one
+ *   "q<percent>":[...] array per requested ignition-step quantile (-1 for cells that never burned)
+ */
+public class BurnMapWriter {
+    
+    private static final int BUFFER_SIZE = 1 << 16;
+    
+    private final BurnProbabilityMap map;
+    private final double[] quantiles;
+    
+    /**
+     * Creates a writer for a burn map.
+     * 
+     * @param map The map to write
+     * @param quantiles The ignition-step quantiles written to NDJSON, each between 0 and 1; may be empty
+     * @throws IllegalArgumentException If a quantile is out of range
+     * @throws IllegalStateException If quantiles are requested from a map without histograms
+     */
+    public BurnMapWriter(BurnProbabilityMap map, double[] quantiles) throws IllegalArgumentException, IllegalStateException {
+        checkQuantiles(quantiles);
+        if (quantiles.length > 0 && map.getBins() == 0) {
+            throw new IllegalStateException("Ignition quantiles need histogram bins");
+        }
+        this.map = map;
+        this.quantiles = quantiles;
+    }
+    
+    /**
+     * Writes the map to a file, choosing the format from its extension: .pgm for the image
+     * and .ndjson or .jsonl for the rows.
+     * 
+     * @param path The file to write
+     * @throws IOException If the file cannot be written
+     * @throws IllegalArgumentException If the extension is not recognised
+     */
+    public void write(Path path) throws IOException, IllegalArgumentException {
+        boolean pgm = isPgm(path);
+        try (OutputStream out = Files.newOutputStream(path)) {
+            if (pgm) {
+                writePgm(out);
+            } else {
+                writeNdjson(out);
+            }
+        }
+    }
+    
+    /**
+     * Checks that every quantile is between 0 and 1, so that a caller can fail before running the ensemble.
+     * 
+     * @param quantiles The quantiles
+     * @throws IllegalArgumentException If a quantile is out of range
+     */
+    public static void checkQuantiles(double[] quantiles) throws IllegalArgumentException {
+        for (double quantile : quantiles) {
+            if (!(quantile >= 0 && quantile <= 1)) {
+                throw new IllegalArgumentException("Quantiles must be between 0 and 1");
+            }
+        }
+    }
+    
+    /**
+     * Checks which format a file name selects, before the ensemble runs.
+     * 
+     * @param path The file to write
+     * @return true for the PGM image, false for NDJSON
+     * @throws IllegalArgumentException If the extension is not recognised
+     */
+    public static boolean isPgm(Path path) throws IllegalArgumentException {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".pgm")) {
+            return true;
+        }
+        if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+            return false;
+        }
+        throw new IllegalArgumentException("Unknown burn map format: " + name + " (expected .pgm or .ndjson)");
+    }
+    
+    /**
+     * Writes the burn probabilities as a 16-bit PGM image. The stream is not closed.
+     * 
+     * @param stream The stream to write to
+     * @throws IOException If the stream cannot be written
+     */
+    public void writePgm(OutputStream stream) throws IOException {
+        BufferedOutputStream out = new BufferedOutputStream(stream, BUFFER_SIZE);
+        out.write(("P5\n" + map.getWidth() + " " + map.getHeight() + "\n65535\n").getBytes(StandardCharsets.US_ASCII));
+        int cells = map.getHeight() * map.getWidth();
+        for (int i = 0; i < cells; i++) {
+            int level = (int) Math.round(map.getProbability(i) * 65535);
+            out.write(level >>> 8);
+            out.write(level);
+        }
+        out.flush();
+    }
+    
+    /**
+     * Writes the burn probabilities and ignition-step quantiles as newline-delimited JSON,
+     * one object per row. The stream is not closed.
+     * 
+     * @param stream The stream to write to
+     * @throws IOException If the stream cannot be written
+     */
+    public void writeNdjson(OutputStream stream) throws IOException {
+        BufferedOutputStream out = new BufferedOutputStream(stream, BUFFER_SIZE);
+        int width = map.getWidth();
+        for (int r = 0; r < map.getHeight(); r++) {
+            int first = r * width;
+            write(out, "{\"replicas\":" + map.getReplicas() + ",\"row\":" + r + ",\"probabilities\":[");
+            for (int c = 0; c < width; c++) {
+                if (c > 0) {
+                    out.write(',');
+                }
+                write(out, formatProbability(map.getProbability(first + c)));
+            }
+            out.write(']');
+            for (double quantile : quantiles) {
+                write(out, ",\"" + quantileKey(quantile) + "\":[");
+                for (int c = 0; c < width; c++) {
+                    if (c > 0) {
+                        out.write(',');
+                    }
+                    write(out, Integer.toString(map.getIgnitionQuantile(first + c, quantile)));
+                }
+                out.write(']');
+            }
+            out.write('}');
+            out.write('\n');
+        }
+        out.flush();
+    }
+    
+    /**
+     * Gets the JSON key of a quantile, "q" followed by its percentage, e.g. q50 or q97.5.
+     * 
+     * @param quantile The quantile, between 0 and 1
+     * @return The key
+     */
+    public static String quantileKey(double quantile) {
+        return "q" + BigDecimal.valueOf(quantile).movePointRight(2).stripTrailingZeros().toPlainString();
+    }
+    
+    /**
+     * Formats a probability with 4 decimals, without the cost of String.format per cell.
+     * 
+     * @param probability The probability, between 0 and 1
+     * @return The formatted probability
+     */
+    private static String formatProbability(double probability) {
+        int scaled = (int) Math.round(probability * 10000);
+        if (scaled == 0) {
+            return "0";
+        }
+        if (scaled == 10000) {
+            return "1";
+        }
+        String digits = Integer.toString(10000 + scaled).substring(1);
+        return "0." + digits;
+    }
+    
+    /**
+     * Writes an ASCII string.
+     * 
+     * @param out The stream to write to
+     * @param text The text to write
+     * @throws IOException If the stream cannot be written
+     */
+    private static void write(OutputStream out, String text) throws IOException {
+        out.write(text.getBytes(StandardCharsets.US_ASCII));
+    }
+}
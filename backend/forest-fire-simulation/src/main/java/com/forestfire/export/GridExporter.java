@@ -0,0 +1,366 @@
+package com.forestfire.export;
+
+import com.forestfire.model.Forest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Streams the forest grid to a channel one row at a time.
+ * Memory use is bounded by a fixed output buffer and one row of states, whatever the grid size.
+ * 
+ * Formats:
+ * - PGM: binary greyscale (P5), tree 85, fire 255, ash 170
+ * - PNG: 2-bit indexed colour using the GUI colours, deflated in bounded IDAT chunks
+ * - PACKED: the ASCII magic "FFG2", then height, width and step as big-endian 32-bit ints,
+ *   then the Cell.State ordinal of every cell in row-major order, 2 bits each, 4 cells per byte,
+ *   first cell in the high bits, the last byte padded with zeros
+ * - NDJSON: one line per row, {"step":s,"row":r,"states":"TTFA..."}, plus "ignitions":[...]
+ *   with the ignition step of each cell (-1 if never ignited) when the forest records them
+ * - IGNITION: 16-bit binary PGM of the ignition steps, 0 for cells that never ignited and
+ *   step + 1 (capped at 65535) for the others
+ */
+public class GridExporter {
+    
+    private static final int BUFFER_SIZE = 1 << 16;
+    
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] PNG_PALETTE = {
+        34, (byte) 139, 34, // Tree: forest green
+        (byte) 255, 69, 0, // Fire: red-orange
+        (byte) 169, (byte) 169, (byte) 169 // Ash: dark grey
+    };
+    private static final byte[] PGM_LEVELS = {85, (byte) 255, (byte) 170};
+    private static final byte[] STATE_LETTERS = {'T', 'F', 'A'};
+    
+    private final Forest forest;
+    private final int step;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final byte[] row;
+    private final int[] ignitionRow;
+    private WritableByteChannel channel;
+    
+    /**
+     * Creates an exporter for a forest.
+     * The forest must not change while it is exported; export a fork of a running forest.
+     * 
+     * @param forest The forest to export
+     * @param step The step the forest is at, recorded by the formats that carry it
+     */
+    public GridExporter(Forest forest, int step) {
+        this.forest = forest;
+        this.step = step;
+        this.row = new byte[forest.getWidth()];
+        this.ignitionRow = new int[forest.getWidth()];
+    }
+    
+    /**
+     * Gets the step of the exported forest.
+     * 
+     * @return The step
+     */
+    public int getStep() {
+        return step;
+    }
+    
+    /**
+     * Checks that the forest has the data a format needs, so that a caller can fail
+     * before any output is written.
+     * 
+     * @param format The output format
+     * @throws IllegalStateException If the format needs ignition steps and the forest has none
+     */
+    public void checkSupported(GridFormat format) throws IllegalStateException {
+        if (format == GridFormat.IGNITION && forest.getIgnitionSteps() == null) {
+            throw new IllegalStateException("The ignition map needs simulation.record.ignitions enabled");
+        }
+    }
+    
+    /**
+     * Exports the grid to a file, replacing any existing file.
+     * 
+     * @param format The output format
+     * @param path The file to write
+     * @throws IOException If the file cannot be written
+     */
+    public void export(GridFormat format, Path path) throws IOException {
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            export(format, file);
+        }
+    }
+    
+    /**
+     * Exports the grid to a channel. The channel is not closed.
+     * 
+     * @param format The output format
+     * @param channel The channel to write to
+     * @throws IOException If the channel cannot be written
+     * @throws IllegalStateException If the forest lacks the data the format needs
+     */
+    public void export(GridFormat format, WritableByteChannel channel) throws IOException, IllegalStateException {
+        checkSupported(format);
+        this.channel = channel;
+        buffer.clear();
+        switch (format) {
+            case PGM:
+                writePgm();
+                break;
+            case PNG:
+                writePng();
+                break;
+            case PACKED:
+                writePacked();
+                break;
+            case IGNITION:
+                writeIgnitionPgm();
+                break;
+            default:
+                writeNdjson();
+        }
+        flush();
+    }
+    
+    /**
+     * Writes the grid as a binary PGM image.
+     * 
+     * @throws IOException If the channel cannot be written
+     */
+    private void writePgm() throws IOException {
+        put(("P5\n" + forest.getWidth() + " " + forest.getHeight() + "\n255\n").getBytes(StandardCharsets.US_ASCII));
+        for (int r = 0; r < forest.getHeight(); r++) {
+            forest.copyRow(r, row);
+            for (byte state : row) {
+                put(PGM_LEVELS[state]);
+            }
+        }
+    }
+    
+    /**
+     * Writes the ignition steps as a 16-bit binary PGM image, most significant byte first.
+     * 
+     * @throws IOException If the channel cannot be written
+     */
+    private void writeIgnitionPgm() throws IOException {
+        put(("P5\n" + forest.getWidth() + " " + forest.getHeight() + "\n65535\n").getBytes(StandardCharsets.US_ASCII));
+        for (int r = 0; r < forest.getHeight(); r++) {
+            forest.copyIgnitionSteps(r, 0, 1, forest.getWidth(), ignitionRow);
+            for (int ignitionStep : ignitionRow) {
+                int level = Math.min(ignitionStep + 1, 65535);
+                put((byte) (level >>> 8));
+                put((byte) level);
+            }
+        }
+    }
+    
+    /**
+     * Writes the grid in the packed 2-bit format.
+     * 
+     * @throws IOException If the channel cannot be written
+     */
+    private void writePacked() throws IOException {
+        put(new byte[]{'F', 'F', 'G', '2'});
+        putInt(forest.getHeight());
+        putInt(forest.getWidth());
+        putInt(step);
+        
+        // Cells are packed continuously across row boundaries
+        int packed = 0;
+        int filled = 0;
+        for (int r = 0; r < forest.getHeight(); r++) {
+            forest.copyRow(r, row);
+            for (byte state : row) {
+                packed = (packed << 2) | state;
+                if (++filled == 4) {
+                    put((byte) packed);
+                    packed = 0;
+                    filled = 0;
+                }
+            }
+        }
+        if (filled > 0) {
+            put((byte) (packed << (2 * (4 - filled))));
+        }
+    }
+    
+    /**
+     * Writes the grid as newline-delimited JSON, one object per row.
+     * 
+     * @throws IOException If the channel cannot be written
+     */
+    private void writeNdjson() throws IOException {
+        for (int r = 0; r < forest.getHeight(); r++) {
+            forest.copyRow(r, row);
+            put(("{\"step\":" + step + ",\"row\":" + r + ",\"states\":\"").getBytes(StandardCharsets.US_ASCII));
+            for (byte state : row) {
+                put(STATE_LETTERS[state]);
+            }
+            put((byte) '"');
+            if (forest.getIgnitionSteps() != null) {
+                forest.copyIgnitionSteps(r, 0, 1, forest.getWidth(), ignitionRow);
+                put(",\"ignitions\":[".getBytes(StandardCharsets.US_ASCII));
+                for (int c = 0; c < ignitionRow.length; c++) {
+                    if (c > 0) {
+                        put((byte) ',');
+                    }
+                    put(Integer.toString(ignitionRow[c]).getBytes(StandardCharsets.US_ASCII));
+                }
+                put((byte) ']');
+            }
+            put(new byte[]{'}', '\n'});
+        }
+    }
+    
+    /**
+     * Writes the grid as a 2-bit indexed-colour PNG. Rows are deflated as they are read and
+     * the compressed data is emitted in IDAT chunks of at most the buffer size.
+     * 
+     * @throws IOException If the channel cannot be written
+     */
+    private void writePng() throws IOException {
+        int width = forest.getWidth();
+        int height = forest.getHeight();
+        put(PNG_SIGNATURE);
+        
+        ByteBuffer header = ByteBuffer.allocate(13);
+        header.putInt(width).putInt(height);
+        header.put((byte) 2); // Bit depth
+        header.put((byte) 3); // Colour type: indexed
+        header.put((byte) 0).put((byte) 0).put((byte) 0); // Deflate, adaptive filtering, no interlace
+        writePngChunk("IHDR", header.array(), header.position());
+        writePngChunk("PLTE", PNG_PALETTE, PNG_PALETTE.length);
+        
+        // Each scanline starts with filter type 0 followed by 4 pixels per byte
+        byte[] scanline = new byte[1 + (width + 3) / 4];
+        byte[] compressed = new byte[BUFFER_SIZE];
+        int compressedLength = 0;
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            for (int r = 0; r < height; r++) {
+                forest.copyRow(r, row);
+                Arrays.fill(scanline, (byte) 0);
+                for (int c = 0; c < width; c++) {
+                    scanline[1 + (c >> 2)] |= row[c] << (6 - 2 * (c & 3));
+                }
+                deflater.setInput(scanline);
+                while (!deflater.needsInput()) {
+                    compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+                    if (compressedLength == compressed.length) {
+                        writePngChunk("IDAT", compressed, compressedLength);
+                        compressedLength = 0;
+                    }
+                }
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+                if (compressedLength == compressed.length) {
+                    writePngChunk("IDAT", compressed, compressedLength);
+                    compressedLength = 0;
+                }
+            }
+            if (compressedLength > 0) {
+                writePngChunk("IDAT", compressed, compressedLength);
+            }
+        } finally {
+            deflater.end();
+        }
+        writePngChunk("IEND", new byte[0], 0);
+    }
+    
+    /**
+     * Writes one PNG chunk: length, type, data and the CRC of type and data.
+     * 
+     * @param type The four-letter chunk type
+     * @param data The chunk data
+     * @param length The number of data bytes to write
+     * @throws IOException If the channel cannot be written
+     */
+    private void writePngChunk(String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        
+        putInt(length);
+        put(typeBytes);
+        put(data, length);
+        putInt((int) crc.getValue());
+    }
+    
+    /**
+     * Appends one byte to the output buffer, flushing it when full.
+     * 
+     * @param value The byte to write
+     * @throws IOException If the channel cannot be written
+     */
+    private void put(byte value) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        buffer.put(value);
+    }
+    
+    /**
+     * Appends a byte array to the output buffer.
+     * 
+     * @param bytes The bytes to write
+     * @throws IOException If the channel cannot be written
+     */
+    private void put(byte[] bytes) throws IOException {
+        put(bytes, bytes.length);
+    }
+    
+    /**
+     * Appends the start of a byte array to the output buffer, flushing it as it fills.
+     * 
+     * @param bytes The bytes to write
+     * @param length The number of bytes to write
+     * @throws IOException If the channel cannot be written
+     */
+    private void put(byte[] bytes, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            int chunk = Math.min(length - offset, buffer.remaining());
+            buffer.put(bytes, offset, chunk);
+            offset += chunk;
+        }
+    }
+    
+    /**
+     * Appends a big-endian int to the output buffer.
+     * 
+     * @param value The int to write
+     * @throws IOException If the channel cannot be written
+     */
+    private void putInt(int value) throws IOException {
+        if (buffer.remaining() < 4) {
+            flush();
+        }
+        buffer.putInt(value);
+    }
+    
+    /**
+     * Writes the buffered bytes to the channel.
+     * 
+     * @throws IOException If the channel cannot be written
+     */
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,78 @@
+package com.forestfire.export;
+
+/**
+ * File formats the forest grid can be exported to.
+ */
+public enum GridFormat {
+    PGM("pgm", "image/x-portable-graymap"), // Binary greyscale image, one byte per cell
+    PNG("png", "image/png"), // Indexed-colour image, 2 bits per cell
+    PACKED("ffg", "application/octet-stream"), // Header followed by 2-bit state codes, 4 cells per byte
+    NDJSON("ndjson", "application/x-ndjson"), // One JSON object per grid row
+    IGNITION("ign.pgm", "image/x-portable-graymap"); // 16-bit greyscale image of the step each cell ignited at
+    
+    private final String extension;
+    private final String contentType;
+    
+    GridFormat(String extension, String contentType) {
+        this.extension = extension;
+        this.contentType = contentType;
+    }
+    
+    /**
+     * Gets the file name extension, without the dot.
+     * 
+     * @return The extension
+     */
+    public String getExtension() {
+        return extension;
+    }
+    
+    /**
+     * Gets the MIME type of the format.
+     * 
+     * @return The content type
+     */
+    public String getContentType() {
+        return contentType;
+    }
+    
+    /**
+     * Parses a format name, ignoring case.
+     * 
+     * @param name The format name, e.g. "png" or "ndjson"
+     * @return The matching format
+     * @throws IllegalArgumentException If the name is not a known format
+     */
+    public static GridFormat parse(String name) throws IllegalArgumentException {
+        try {
+            return valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown export format: " + name
+                + " (expected pgm, png, packed, ndjson or ignition)");
+        }
+    }
+    
+    /**
+     * Determines the format from a file name extension. The longest matching extension wins,
+     * so "map.ign.pgm" is an ignition map rather than a state image.
+     * 
+     * @param fileName The file name
+     * @return The format whose extension the name ends with
+     * @throws IllegalArgumentException If the extension is not recognised
+     */
+    public static GridFormat fromFileName(String fileName) throws IllegalArgumentException {
+        String lower = fileName.toLowerCase();
+        GridFormat match = null;
+        for (GridFormat format : values()) {
+            if (lower.endsWith("." + format.extension)
+                    && (match == null || format.extension.length() > match.extension.length())) {
+                match = format;
+            }
+        }
+        if (match == null) {
+            throw new IllegalArgumentException("Cannot tell the export format of " + fileName
+                + " (expected .pgm, .png, .ffg, .ndjson or .ign.pgm)");
+        }
+        return match;
+    }
+}
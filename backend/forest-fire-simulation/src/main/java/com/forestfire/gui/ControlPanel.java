@@ -1,5 +1,7 @@
 package com.forestfire.gui;
 
+import com.forestfire.service.InterventionType;
+
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
@@ -16,6 +18,7 @@ public class ControlPanel extends JPanel {
     private JButton stepButton;
     private JButton resetButton;
     private JSlider speedSlider;
+    private JComboBox<String> toolBox;
     private JLabel statusLabel;
     private boolean isRunning = false;
     
@@ -75,6 +78,25 @@ public class ControlPanel extends JPanel {
             }
         });
         
+        // Create intervention tool selector; the selected tool acts on areas dragged over the grid
+        JLabel toolLabel = new JLabel("Tool:");
+        toolBox = new JComboBox<>(new String[] {"None", "Firebreak", "Extinguish", "Ignite"});
+        toolBox.addActionListener(e -> {
+            switch (toolBox.getSelectedIndex()) {
+                case 1:
+                    parent.setInterventionType(InterventionType.CLEAR);
+                    break;
+                case 2:
+                    parent.setInterventionType(InterventionType.EXTINGUISH);
+                    break;
+                case 3:
+                    parent.setInterventionType(InterventionType.IGNITE);
+                    break;
+                default:
+                    parent.setInterventionType(null);
+            }
+        });
+        
         // Create status label
         statusLabel = new JLabel("Status: Ready (Step 0)");
         
@@ -101,6 +123,13 @@ public class ControlPanel extends JPanel {
         
         gbc.gridx = 0;
         gbc.gridy = 3;
+        add(toolLabel, gbc);
+        
+        gbc.gridx = 1;
+        add(toolBox, gbc);
+        
+        gbc.gridx = 0;
+        gbc.gridy = 4;
         gbc.gridwidth = 2;
         add(statusLabel, gbc);
     }
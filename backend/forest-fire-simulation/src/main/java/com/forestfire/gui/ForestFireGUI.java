@@ -2,6 +2,8 @@ package com.forestfire.gui;
 
 import com.forestfire.model.Cell;
 import com.forestfire.model.Forest;
+import com.forestfire.service.Intervention;
+import com.forestfire.service.InterventionType;
 import com.forestfire.service.SimulationService;
 import com.forestfire.config.SimulationConfig;
 
@@ -23,6 +25,7 @@ public class ForestFireGUI extends JFrame {
     private ConfigPanel configPanel;
     private Timer simulationTimer;
     private int delay = 500; // milliseconds between simulation steps
+    private InterventionType interventionType; // null when dragging over the grid does nothing
     
     /**
      * Creates a new Forest Fire GUI with the specified configuration file path.
@@ -68,7 +71,7 @@ public class ForestFireGUI extends JFrame {
         setupMenuBar();
         
         // Create forest grid panel
-        forestGridPanel = new ForestGridPanel(simulationService.getForest());
+        forestGridPanel = new ForestGridPanel(simulationService.getForest(), this);
         add(forestGridPanel, BorderLayout.CENTER);
         
         // Create side panel for controls and configuration
@@ -175,6 +178,36 @@ public class ForestFireGUI extends JFrame {
         controlPanel.updateStatus(0, true);
     }
     
+    /**
+     * Selects the intervention applied to areas selected on the grid.
+     * 
+     * @param type The intervention, or null for none
+     */
+    public void setInterventionType(InterventionType type) {
+        interventionType = type;
+    }
+    
+    /**
+     * Applies the selected intervention to a rectangle of cells. While the simulation runs
+     * it is queued for the next step; otherwise it is applied at once and shown.
+     * 
+     * @param top The first row
+     * @param left The first column
+     * @param bottom The last row
+     * @param right The last column
+     */
+    public void intervene(int top, int left, int bottom, int right) {
+        if (interventionType == null) {
+            return;
+        }
+        simulationService.submitIntervention(new Intervention(interventionType, top, left, bottom, right));
+        if (!simulationTimer.isRunning()) {
+            simulationService.applyInterventions();
+            forestGridPanel.updateGrid(simulationService.getForest());
+            controlPanel.updateStatus(simulationService.getStepCount(), simulationService.isRunning());
+        }
+    }
+    
     /**
      * Updates the simulation speed.
      * 
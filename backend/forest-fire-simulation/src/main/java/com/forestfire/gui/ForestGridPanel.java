@@ -5,25 +5,81 @@ import com.forestfire.model.Forest;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 
 /**
  * Panel for visualizing the forest grid.
- * Renders the forest as a grid of colored cells.
+ * Renders the forest as a grid of colored cells; dragging over it selects
+ * a rectangle of cells for the intervention chosen in the control panel.
  */
 public class ForestGridPanel extends JPanel {
     
+    private ForestFireGUI parent;
     private Forest forest;
     private int cellSize = 20; // Default cell size in pixels
+    private Point dragStart; // Cell where the current drag started, as (col, row)
+    private Point dragEnd;
     
     /**
      * Creates a new forest grid panel with the specified forest.
      * 
      * @param forest The forest to visualize
+     * @param parent The parent ForestFireGUI, which receives the selected areas
      */
-    public ForestGridPanel(Forest forest) {
+    public ForestGridPanel(Forest forest, ForestFireGUI parent) {
         this.forest = forest;
+        this.parent = parent;
         setBackground(Color.WHITE);
         setBorder(BorderFactory.createLineBorder(Color.BLACK));
+        
+        MouseAdapter selection = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                dragStart = toCell(e.getPoint());
+                dragEnd = dragStart;
+                repaint();
+            }
+            
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if (dragStart != null) {
+                    dragEnd = toCell(e.getPoint());
+                    repaint();
+                }
+            }
+            
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                if (dragStart == null) {
+                    return;
+                }
+                dragEnd = toCell(e.getPoint());
+                int top = Math.min(dragStart.y, dragEnd.y);
+                int left = Math.min(dragStart.x, dragEnd.x);
+                int bottom = Math.max(dragStart.y, dragEnd.y);
+                int right = Math.max(dragStart.x, dragEnd.x);
+                dragStart = null;
+                dragEnd = null;
+                parent.intervene(top, left, bottom, right);
+                repaint();
+            }
+        };
+        addMouseListener(selection);
+        addMouseMotionListener(selection);
+    }
+    
+    /**
+     * Converts a point on the panel to the cell under it, clamped to the grid.
+     * 
+     * @param point The point in panel coordinates
+     * @return The cell as (col, row)
+     */
+    private Point toCell(Point point) {
+        int size = Math.max(cellSize, 1);
+        int col = Math.max(0, Math.min(forest.getWidth() - 1, point.x / size));
+        int row = Math.max(0, Math.min(forest.getHeight() - 1, point.y / size));
+        return new Point(col, row);
     }
     
     /**
@@ -94,6 +150,16 @@ public class ForestGridPanel extends JPanel {
                 g.drawRect(x, y, cellSize, cellSize);
             }
         }
+        
+        // Outline the area being selected
+        if (dragStart != null && dragEnd != null) {
+            int left = Math.min(dragStart.x, dragEnd.x);
+            int top = Math.min(dragStart.y, dragEnd.y);
+            int cols = Math.abs(dragStart.x - dragEnd.x) + 1;
+            int rows = Math.abs(dragStart.y - dragEnd.y) + 1;
+            g.setColor(Color.BLUE);
+            g.drawRect(left * cellSize, top * cellSize, cols * cellSize, rows * cellSize);
+        }
     }
     
     /**
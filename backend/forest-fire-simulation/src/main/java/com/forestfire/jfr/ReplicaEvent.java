@@ -0,0 +1,34 @@
+package com.forestfire.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for one completed replica of a batch or ensemble run.
+ * Disabled unless enabled in the recording settings.
+ */
+@Name("com.forestfire.Replica")
+@Label("Replica Completed")
+@Category("Forest Fire")
+@Description("One replica of a batch run finished")
+@Enabled(false)
+@StackTrace(false)
+public class ReplicaEvent extends Event {
+    
+    @Label("Replica")
+    public int replica;
+    
+    @Label("Seed")
+    public long seed;
+    
+    @Label("Steps")
+    public int steps;
+    
+    @Label("Burned Cells")
+    public int burnedCells;
+}
@@ -0,0 +1,29 @@
+package com.forestfire.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for serialising one API response body. Disabled unless enabled in the recording settings.
+ */
+@Name("com.forestfire.Serialization")
+@Label("DTO Serialization")
+@Category("Forest Fire")
+@Description("Serialisation of an API response body to JSON")
+@Enabled(false)
+@StackTrace(false)
+public class SerializationEvent extends Event {
+    
+    @Label("Payload Type")
+    public String payloadType;
+    
+    @Label("Payload Size")
+    @DataAmount
+    public long payloadBytes;
+}
@@ -0,0 +1,36 @@
+package com.forestfire.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for a simulation session being created or evicted.
+ * Disabled unless enabled in the recording settings.
+ */
+@Name("com.forestfire.Session")
+@Label("Simulation Session")
+@Category("Forest Fire")
+@Description("A simulation session was created or evicted")
+@Enabled(false)
+@StackTrace(false)
+public class SessionEvent extends Event {
+    
+    /** Action recorded when a session is created. */
+    public static final String CREATE = "create";
+    /** Action recorded when a session is evicted. */
+    public static final String EVICT = "evict";
+    
+    @Label("Action")
+    public String action;
+    
+    @Label("Session")
+    public String session;
+    
+    @Label("Grid Cells")
+    public long gridCells;
+}
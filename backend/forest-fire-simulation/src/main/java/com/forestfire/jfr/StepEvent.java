@@ -0,0 +1,31 @@
+package com.forestfire.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for one engine step. Disabled unless enabled in the recording settings.
+ */
+@Name("com.forestfire.Step")
+@Label("Simulation Step")
+@Category("Forest Fire")
+@Description("One call to Forest.simulateStep()")
+@Enabled(false)
+@StackTrace(false)
+public class StepEvent extends Event {
+    
+    @Label("Step")
+    public int step;
+    
+    @Label("Grid Cells")
+    public long gridCells;
+    
+    @Label("Burning Cells")
+    @Description("Cells burning at the start of the step")
+    public int burningCells;
+}
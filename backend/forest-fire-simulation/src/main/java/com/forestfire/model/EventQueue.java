@@ -0,0 +1,175 @@
+package com.forestfire.model;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Binary min-heap of timed cell events backed by parallel primitive arrays.
+ * Used by the event-driven engine to process ignitions and burnouts in time order
+ * without boxing or allocating an object per event.
+ */
+class EventQueue {
+    
+    private double[] times;
+    private int[] events;
+    private int[] sources;
+    private int size;
+    
+    /**
+     * Creates an empty queue with the given initial capacity.
+     * 
+     * @param capacity The initial number of events the queue can hold
+     */
+    EventQueue(int capacity) {
+        times = new double[Math.max(capacity, 16)];
+        events = new int[times.length];
+        sources = new int[times.length];
+    }
+    
+    /**
+     * Creates a queue holding the same events as another queue.
+     * 
+     * @param source The queue to copy
+     */
+    private EventQueue(EventQueue source) {
+        times = source.times.clone();
+        events = source.events.clone();
+        sources = source.sources.clone();
+        size = source.size;
+    }
+    
+    /**
+     * Copies the queue.
+     * 
+     * @return An independent queue with the same events
+     */
+    EventQueue copy() {
+        return new EventQueue(this);
+    }
+    
+    /**
+     * Adds an event to the queue.
+     * 
+     * @param time The time at which the event happens
+     * @param event The event payload
+     * @param source The cell whose burning caused the event
+     */
+    void push(double time, int event, int source) {
+        if (size == times.length) {
+            times = Arrays.copyOf(times, size * 2);
+            events = Arrays.copyOf(events, size * 2);
+            sources = Arrays.copyOf(sources, size * 2);
+        }
+        
+        // Sift the new event up from the end of the heap
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (times[parent] <= time) {
+                break;
+            }
+            times[i] = times[parent];
+            events[i] = events[parent];
+            sources[i] = sources[parent];
+            i = parent;
+        }
+        times[i] = time;
+        events[i] = event;
+        sources[i] = source;
+    }
+    
+    /**
+     * Gets the time of the earliest event.
+     * 
+     * @return The earliest time, or positive infinity if the queue is empty
+     */
+    double peekTime() {
+        return size == 0 ? Double.POSITIVE_INFINITY : times[0];
+    }
+    
+    /**
+     * Removes the earliest event.
+     * 
+     * @return The payload of the removed event
+     */
+    int pop() {
+        int top = events[0];
+        size--;
+        if (size > 0) {
+            // Sift the last event down from the root
+            siftDown(0, times[size], events[size], sources[size]);
+        }
+        return top;
+    }
+    
+    /**
+     * Removes every event caused by a source cell, for example the cells that were put out.
+     * 
+     * @param remove Tests the source of an event, true to remove the event
+     * @return The number of events removed
+     */
+    int removeSources(IntPredicate remove) {
+        int kept = 0;
+        for (int k = 0; k < size; k++) {
+            if (!remove.test(sources[k])) {
+                times[kept] = times[k];
+                events[kept] = events[k];
+                sources[kept] = sources[k];
+                kept++;
+            }
+        }
+        int removed = size - kept;
+        size = kept;
+        if (removed > 0) {
+            // Rebuild the heap bottom-up from the last parent
+            for (int i = (size >>> 1) - 1; i >= 0; i--) {
+                siftDown(i, times[i], events[i], sources[i]);
+            }
+        }
+        return removed;
+    }
+    
+    /**
+     * Places an event at a slot of the heap or below it, moving earlier children up.
+     * 
+     * @param i The slot to start from
+     * @param time The time of the event
+     * @param event The event payload
+     * @param source The source cell of the event
+     */
+    private void siftDown(int i, double time, int event, int source) {
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && times[child + 1] < times[child]) {
+                child++;
+            }
+            if (time <= times[child]) {
+                break;
+            }
+            times[i] = times[child];
+            events[i] = events[child];
+            sources[i] = sources[child];
+            i = child;
+        }
+        times[i] = time;
+        events[i] = event;
+        sources[i] = source;
+    }
+    
+    /**
+     * Gets the number of queued events.
+     * 
+     * @return The queue size
+     */
+    int size() {
+        return size;
+    }
+    
+    /**
+     * Removes all events.
+     */
+    void clear() {
+        size = 0;
+    }
+}
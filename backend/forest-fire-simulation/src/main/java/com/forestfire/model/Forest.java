@@ -1,18 +1,70 @@
 package com.forestfire.model;
 
+import java.util.Arrays;
 import java.util.Random;
 
 /**
  * Represents the forest grid containing cells.
  * Manages the state of all cells and handles the fire propagation logic.
+ * 
+ * Cell states are stored row-major as bytes (one Cell.State ordinal per cell) in tiles
+ * that forks share copy-on-write, and the burning cells are tracked in a frontier list,
+ * so a step only does work proportional to the number of burning cells. The event-driven engine instead samples
+ * an ignition time for every edge that transmits fire and processes them in time order.
  */
 public class Forest {
     
+    /** Byte code of Cell.State.TREE in the state array. */
+    public static final byte TREE = (byte) Cell.State.TREE.ordinal();
+    /** Byte code of Cell.State.FIRE in the state array. */
+    public static final byte FIRE = (byte) Cell.State.FIRE.ordinal();
+    /** Byte code of Cell.State.ASH in the state array. */
+    public static final byte ASH = (byte) Cell.State.ASH.ordinal();
+    
+    // Ash that regrows during the current step; becomes TREE once spreading is done
+    private static final byte SAPLING = 3;
+    // Ground cleared for a firebreak: never burns or regrows, and is shown as ash but not counted as burned
+    private static final byte CLEARED = 4;
+    
+    // The state shown for each code; saplings only exist within a step
+    private static final Cell.State[] STATES = {
+        Cell.State.TREE, Cell.State.FIRE, Cell.State.ASH, Cell.State.TREE, Cell.State.ASH
+    };
+    
+    private TiledStates states;
+    private byte[] flatStates;
+    private int[] fireCells;
+    private int fireCount;
+    private int[] nextFireCells;
+    private int[] regrownCells;
+    private int treeCount;
+    private int ashCount;
+    private int clearedCount;
     private Cell[][] grid;
+    private boolean gridDirty;
     private int height;
     private int width;
     private double propagationProbability;
+    private byte[] probabilityMap;
+    private boolean[] mapValuePresent;
+    private int[] ignitionSteps;
+    private boolean recordIgnitionSteps;
+    private int step;
+    private Neighbourhood neighbourhood;
+    private double windSpeed;
+    private double windDirection;
+    private PropagationTable propagationTable;
+    private double regrowthProbability;
+    private double lightningProbability;
+    private PropagationEngine engine;
+    private EventQueue events;
+    private int[] eventIgnitions;
+    private int eventIgnitionCount;
+    private double time;
     private Random random;
+    private boolean keyedDraws;
+    private long drawSeed;
+    private boolean frontierStale;
     
     /**
      * Creates a new forest with the specified dimensions and fire propagation probability.
@@ -25,7 +77,11 @@ public class Forest {
         this.height = height;
         this.width = width;
         this.propagationProbability = propagationProbability;
+        this.neighbourhood = Neighbourhood.VON_NEUMANN;
+        this.engine = PropagationEngine.SYNCHRONOUS;
         this.random = new Random();
+        this.drawSeed = random.nextLong();
+        this.propagationTable = new PropagationTable(neighbourhood, propagationProbability, windSpeed, windDirection);
         
         // Initialize the forest grid with trees
         initializeGrid();
@@ -35,12 +91,26 @@ public class Forest {
      * Initializes the forest grid with all cells set to TREE state.
      */
     private void initializeGrid() {
-        grid = new Cell[height][width];
-        for (int i = 0; i < height; i++) {
-            for (int j = 0; j < width; j++) {
-                grid[i][j] = new Cell(Cell.State.TREE, i, j);
-            }
+        int cells = height * width;
+        if (states == null || states.length() != cells) {
+            states = new TiledStates(cells);
+            fireCells = new int[Math.min(cells, 1024)];
+            nextFireCells = new int[fireCells.length];
+            regrownCells = new int[Math.min(cells, 1024)];
         }
+        states.fill(TREE);
+        fireCount = 0;
+        treeCount = cells;
+        ashCount = 0;
+        clearedCount = 0;
+        ignitionSteps = recordIgnitionSteps ? newIgnitionSteps() : null;
+        step = 0;
+        time = 0;
+        eventIgnitionCount = 0;
+        if (events != null) {
+            events.clear();
+        }
+        gridDirty = true;
     }
     
     /**
@@ -54,9 +124,348 @@ public class Forest {
             int col = position[1];
             
             if (isValidPosition(row, col)) {
-                grid[row][col].setState(Cell.State.FIRE);
+                ignite(row * width + col);
+            }
+        }
+    }
+    
+    /**
+     * Sets trees on fire from packed (row, col) coordinate pairs, without per-position objects.
+     * Positions outside the forest or on cells that are not trees are ignored.
+     * 
+     * @param coordinates Packed coordinates: row of position i at index 2i, column at 2i+1
+     * @param count The number of positions to apply
+     * @return The number of trees set on fire
+     */
+    public int igniteAll(int[] coordinates, int count) {
+        int ignited = 0;
+        for (int i = 0; i < count; i++) {
+            int row = coordinates[2 * i];
+            int col = coordinates[2 * i + 1];
+            if (isValidPosition(row, col) && states.get(row * width + col) == TREE) {
+                ignite(row * width + col);
+                ignited++;
+            }
+        }
+        return ignited;
+    }
+    
+    /**
+     * Sets every tree in a rectangle on fire. Cells outside the forest are ignored.
+     * 
+     * @param top The first row
+     * @param left The first column
+     * @param bottom The last row
+     * @param right The last column
+     * @return The number of trees set on fire
+     */
+    public int igniteArea(int top, int left, int bottom, int right) {
+        int ignited = 0;
+        for (int r = Math.max(top, 0); r <= Math.min(bottom, height - 1); r++) {
+            for (int c = Math.max(left, 0); c <= Math.min(right, width - 1); c++) {
+                if (states.get(r * width + c) == TREE) {
+                    ignite(r * width + c);
+                    ignited++;
+                }
+            }
+        }
+        return ignited;
+    }
+    
+    /**
+     * Removes the fuel from a rectangle, as a firebreak: trees become cleared ground, which
+     * never burns and is shown as ash but not counted as burned, and burning cells are put
+     * out, so fire can no longer enter or leave the rectangle. Cells outside the forest are ignored.
+     * 
+     * @param top The first row
+     * @param left The first column
+     * @param bottom The last row
+     * @param right The last column
+     * @return The number of cells cleared
+     */
+    public int clearArea(int top, int left, int bottom, int right) {
+        return burnOutArea(top, left, bottom, right, true);
+    }
+    
+    /**
+     * Puts out the burning cells of a rectangle, which become ash; trees are left standing.
+     * Cells outside the forest are ignored.
+     * 
+     * @param top The first row
+     * @param left The first column
+     * @param bottom The last row
+     * @param right The last column
+     * @return The number of cells put out
+     */
+    public int extinguishArea(int top, int left, int bottom, int right) {
+        return burnOutArea(top, left, bottom, right, false);
+    }
+    
+    /**
+     * Turns the burning cells of a rectangle into ash and optionally clears its trees. The
+     * burning frontier is only marked stale here and pruned once before the next step, so that
+     * any number of areas costs a single pass over it.
+     * 
+     * @param top The first row
+     * @param left The first column
+     * @param bottom The last row
+     * @param right The last column
+     * @param trees true to clear the trees as well
+     * @return The number of cells changed
+     */
+    private int burnOutArea(int top, int left, int bottom, int right, boolean trees) {
+        int changed = 0;
+        for (int r = Math.max(top, 0); r <= Math.min(bottom, height - 1); r++) {
+            for (int c = Math.max(left, 0); c <= Math.min(right, width - 1); c++) {
+                int index = r * width + c;
+                byte state = states.get(index);
+                if (state == FIRE) {
+                    fireCount--;
+                    ashCount++;
+                    states.set(index, ASH);
+                    frontierStale = true;
+                } else if (state == TREE && trees) {
+                    treeCount--;
+                    clearedCount++;
+                    states.set(index, CLEARED);
+                } else {
+                    continue;
+                }
+                changed++;
+            }
+        }
+        if (changed > 0) {
+            gridDirty = true;
+        }
+        return changed;
+    }
+    
+    /**
+     * Drops the cells put out since the last step from the burning frontier. The event-driven
+     * engine drops the pending burnouts and ignitions of those cells, and keeps the events
+     * already drawn for the cells still burning.
+     */
+    private void pruneFrontier() {
+        frontierStale = false;
+        if (engine == PropagationEngine.EVENT_DRIVEN) {
+            events.removeSources(source -> states.get(source) != FIRE);
+            return;
+        }
+        int kept = 0;
+        for (int k = 0; kept < fireCount; k++) {
+            if (states.get(fireCells[k]) == FIRE) {
+                fireCells[kept++] = fireCells[k];
+            }
+        }
+    }
+    
+    /**
+     * Sets a cell on fire and adds it to the burning frontier.
+     * 
+     * @param index The row-major index of the cell
+     */
+    private void ignite(int index) {
+        byte state = states.get(index);
+        if (state == FIRE || state == CLEARED) {
+            return;
+        }
+        if (frontierStale) {
+            // Drop the events of a cell put out before it burns again
+            pruneFrontier();
+        }
+        if (state == TREE) {
+            treeCount--;
+        } else {
+            ashCount--;
+        }
+        states.set(index, FIRE);
+        if (ignitionSteps != null) {
+            ignitionSteps[index] = step;
+        }
+        if (engine == PropagationEngine.EVENT_DRIVEN) {
+            fireCount++;
+            scheduleFrom(index, time);
+        } else {
+            fireCells = ensureCapacity(fireCells, fireCount + 1);
+            fireCells[fireCount++] = index;
+        }
+        gridDirty = true;
+    }
+    
+    /**
+     * Sets a per-cell propagation probability map that replaces the global probability.
+     * 
+     * @param map The probability map, or null to use the global probability for every cell
+     * @throws IllegalArgumentException If the map dimensions do not match the forest
+     */
+    public void setProbabilityMap(ProbabilityMap map) throws IllegalArgumentException {
+        if (map == null) {
+            probabilityMap = null;
+            mapValuePresent = null;
+            return;
+        }
+        if (map.getHeight() != height || map.getWidth() != width) {
+            throw new IllegalArgumentException("Probability map is " + map.getHeight() + "x" + map.getWidth()
+                + " but the forest is " + height + "x" + width);
+        }
+        probabilityMap = map.getValues();
+        
+        // Remember which values occur so deterministic maps can be detected without a rescan
+        mapValuePresent = new boolean[ProbabilityMap.SCALE + 1];
+        for (byte value : probabilityMap) {
+            mapValuePresent[value & 0xFF] = true;
+        }
+    }
+    
+    /**
+     * Sets the neighbourhood fire spreads into and rebuilds the propagation table.
+     * 
+     * @param neighbourhood The von Neumann (4) or Moore (8) neighbourhood
+     */
+    public void setNeighbourhood(Neighbourhood neighbourhood) {
+        this.neighbourhood = neighbourhood;
+        this.propagationTable = new PropagationTable(neighbourhood, propagationProbability, windSpeed, windDirection);
+    }
+    
+    /**
+     * Sets the wind and rebuilds the propagation table.
+     * 
+     * @param windSpeed The wind speed in m/s (0 for no wind)
+     * @param windDirection The direction the wind blows towards, in degrees clockwise from north (up)
+     */
+    public void setWind(double windSpeed, double windDirection) {
+        this.windSpeed = windSpeed;
+        this.windDirection = windDirection;
+        this.propagationTable = new PropagationTable(neighbourhood, propagationProbability, windSpeed, windDirection);
+    }
+    
+    /**
+     * Sets the global propagation probability and rebuilds the propagation table, keeping the grid,
+     * so that a series of runs at different probabilities can reuse the same forest.
+     * 
+     * @param propagationProbability The probability of fire spreading to adjacent cells
+     */
+    public void setPropagationProbability(double propagationProbability) {
+        this.propagationProbability = propagationProbability;
+        this.propagationTable = new PropagationTable(neighbourhood, propagationProbability, windSpeed, windDirection);
+    }
+    
+    /**
+     * Enables the Drossel-Schwabl regrowth mode.
+     * Each step, every ash cell regrows into a tree with probability g and every tree
+     * not ignited by a neighbour is struck by lightning with probability f.
+     * Both are 0 by default, which gives the classic single-fire model.
+     * 
+     * @param regrowthProbability The regrowth probability g
+     * @param lightningProbability The lightning probability f
+     */
+    public void setRegrowth(double regrowthProbability, double lightningProbability) {
+        this.regrowthProbability = regrowthProbability;
+        this.lightningProbability = lightningProbability;
+    }
+    
+    /**
+     * Reseeds the random number generator, so a run from the same state can be repeated.
+     * The event-driven engine draws the spread of a cell as soon as it ignites, so the pending
+     * events of the burning cells are drawn again from the new seed.
+     * 
+     * @param seed The seed
+     */
+    public void setSeed(long seed) {
+        random = new Random(seed);
+        drawSeed = seed;
+        if (events != null && events.size() > 0) {
+            redrawEvents();
+        }
+    }
+    
+    /**
+     * Replaces the pending events with new draws for every burning cell. Each burning cell has
+     * exactly one pending burnout, one time unit after it ignited, from which its ignition time
+     * is recovered; pending ignitions of trees all came from these cells and are dropped, as are
+     * the burnouts of cells that were put out.
+     */
+    private void redrawEvents() {
+        int[] burning = new int[fireCount];
+        double[] ignitionTimes = new double[fireCount];
+        int count = 0;
+        while (events.size() > 0) {
+            double eventTime = events.peekTime();
+            int event = events.pop();
+            if (event < 0 && states.get(~event) == FIRE) {
+                burning[count] = ~event;
+                ignitionTimes[count++] = eventTime - 1;
             }
         }
+        for (int k = 0; k < count; k++) {
+            scheduleFrom(burning[k], ignitionTimes[k]);
+        }
+    }
+    
+    /**
+     * Switches the spread of fire between sequential and keyed random draws. A sequential draw
+     * is the next number of the generator, so it depends on how many draws came before; a keyed
+     * draw is a hash of the seed, the step, the burning cell and the neighbour direction, so it
+     * is the same in every forest with the same seed whatever else differs between them.
+     * Two forests that differ by a firebreak then make the same draw on every edge both can
+     * still cross, which couples their runs for a paired comparison. Regrowth and lightning
+     * always use the sequential generator.
+     * 
+     * @param keyedDraws true for keyed draws
+     */
+    public void setKeyedDraws(boolean keyedDraws) {
+        this.keyedDraws = keyedDraws;
+    }
+    
+    /**
+     * Checks if the spread of fire uses keyed random draws.
+     * 
+     * @return true for keyed draws, false for sequential ones
+     */
+    public boolean isKeyedDraws() {
+        return keyedDraws;
+    }
+    
+    /**
+     * Computes a keyed draw with the SplitMix64 finaliser.
+     * 
+     * @param key The step, or a negative constant for the draws of the event-driven engine
+     * @param index The row-major index of the burning cell
+     * @param direction The neighbour direction
+     * @return 64 random bits
+     */
+    private long keyedBits(long key, int index, int direction) {
+        long z = drawSeed + key * 0x9E3779B97F4A7C15L + ((long) index * 16 + direction + 1) * 0xD1B54A32D192ED03L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+    
+    /**
+     * Selects the engine that advances the fire.
+     * Must be called before any cell is set on fire.
+     * 
+     * @param engine The synchronous or event-driven engine
+     * @throws IllegalStateException If cells are already burning
+     */
+    public void setEngine(PropagationEngine engine) throws IllegalStateException {
+        if (fireCount > 0) {
+            throw new IllegalStateException("The engine cannot be changed while cells are burning");
+        }
+        this.engine = engine;
+        if (engine == PropagationEngine.EVENT_DRIVEN && events == null) {
+            events = new EventQueue(Math.min(states.length(), 1024));
+            eventIgnitions = new int[Math.min(states.length(), 1024)];
+        }
+    }
+    
+    /**
+     * Checks if the forest runs in the continuous regrowth mode.
+     * 
+     * @return true if regrowth or lightning is enabled
+     */
+    public boolean isContinuous() {
+        return regrowthProbability > 0 || lightningProbability > 0;
     }
     
     /**
@@ -65,32 +474,39 @@ public class Forest {
      * @return true if there are still cells on fire, false otherwise
      */
     public boolean simulateStep() {
-        // Create a copy of the current grid to calculate the next state
-        Cell[][] nextGrid = new Cell[height][width];
-        for (int i = 0; i < height; i++) {
-            for (int j = 0; j < width; j++) {
-                // Create a new cell with the same state
-                nextGrid[i][j] = new Cell(grid[i][j].getState(), i, j);
-            }
+        if (frontierStale) {
+            pruneFrontier();
+        }
+        if (engine == PropagationEngine.EVENT_DRIVEN) {
+            boolean burning = advanceEvents();
+            step++;
+            return burning;
         }
         
-        // Apply fire propagation rules
-        for (int i = 0; i < height; i++) {
-            for (int j = 0; j < width; j++) {
-                Cell cell = grid[i][j];
-                
-                // If the cell is on fire, it becomes ash in the next step
-                if (cell.getState() == Cell.State.FIRE) {
-                    nextGrid[i][j].setState(Cell.State.ASH);
-                    
-                    // Try to spread fire to adjacent cells
-                    spreadFireToAdjacentCells(i, j, nextGrid);
-                }
-            }
+        // Regrowth and lightning act on the state at the start of the step, before fire spreads
+        int regrownCount = regrowthProbability > 0 ? markRegrowth() : 0;
+        int nextFireCount = lightningProbability > 0 ? strikeLightning() : 0;
+        
+        // Burning cells become ash and try to spread fire to adjacent cells
+        for (int k = 0; k < fireCount; k++) {
+            int index = fireCells[k];
+            states.set(index, ASH);
+            nextFireCount = spreadFireToAdjacentCells(index, nextFireCount);
         }
+        ashCount += fireCount;
         
-        // Update the grid with the new state
-        grid = nextGrid;
+        // Saplings become trees only now, so they could not catch fire in the step they regrew
+        for (int k = 0; k < regrownCount; k++) {
+            states.set(regrownCells[k], TREE);
+        }
+        
+        // The cells ignited in this step form the next burning frontier
+        int[] swap = fireCells;
+        fireCells = nextFireCells;
+        nextFireCells = swap;
+        fireCount = nextFireCount;
+        gridDirty = true;
+        step++;
         
         // Check if there are still cells on fire
         return hasFireCells();
@@ -99,26 +515,397 @@ public class Forest {
     /**
      * Attempts to spread fire from a burning cell to its adjacent cells.
      * 
-     * @param row The row of the burning cell
-     * @param col The column of the burning cell
-     * @param nextGrid The grid representing the next state
+     * @param index The row-major index of the burning cell
+     * @param nextFireCount The number of cells already ignited in this step
+     * @return The number of cells ignited in this step, including any ignited here
      */
-    private void spreadFireToAdjacentCells(int row, int col, Cell[][] nextGrid) {
-        // Check the four adjacent cells (up, right, down, left)
-        int[][] directions = {{-1, 0}, {0, 1}, {1, 0}, {0, -1}};
+    private int spreadFireToAdjacentCells(int index, int nextFireCount) {
+        // Check each neighbour direction using the precomputed per-direction thresholds
+        int[] rowOffsets = propagationTable.getRowOffsets();
+        int[] colOffsets = propagationTable.getColOffsets();
+        int[] thresholds = propagationTable.getThresholds();
+        int[][] mapThresholds = propagationTable.getMapThresholds();
+        int row = index / width;
+        int col = index - row * width;
         
-        for (int[] dir : directions) {
-            int newRow = row + dir[0];
-            int newCol = col + dir[1];
+        for (int d = 0; d < rowOffsets.length; d++) {
+            int newRow = row + rowOffsets[d];
+            int newCol = col + colOffsets[d];
             
             // Check if the position is valid and contains a tree
-            if (isValidPosition(newRow, newCol) && grid[newRow][newCol].getState() == Cell.State.TREE) {
-                // Determine if fire spreads based on the propagation probability
-                if (random.nextDouble() < propagationProbability) {
-                    nextGrid[newRow][newCol].setState(Cell.State.FIRE);
+            if (!isValidPosition(newRow, newCol)) {
+                continue;
+            }
+            int neighbour = newRow * width + newCol;
+            if (states.get(neighbour) == TREE) {
+                // Determine if fire spreads based on the cell's or the global propagation probability
+                int threshold = probabilityMap != null
+                    ? mapThresholds[d][probabilityMap[neighbour] & 0xFF]
+                    : thresholds[d];
+                int draw = keyedDraws ? (int) (keyedBits(step, index, d) >>> 40) : random.nextInt(PropagationTable.SCALE);
+                if (draw < threshold) {
+                    states.set(neighbour, FIRE);
+                    if (ignitionSteps != null) {
+                        ignitionSteps[neighbour] = step + 1;
+                    }
+                    treeCount--;
+                    nextFireCells = ensureCapacity(nextFireCells, nextFireCount + 1);
+                    nextFireCells[nextFireCount++] = neighbour;
+                }
+            }
+        }
+        return nextFireCount;
+    }
+    
+    /**
+     * Checks if the rest of the run is fully determined, i.e. every edge fire can cross
+     * ignites with probability 0 or 1. This is the case for p = 0 and p = 1 without a
+     * probability map, and for maps and wind that only produce those two probabilities.
+     * 
+     * @return true if the synchronous run can be completed analytically with burnOut()
+     */
+    public boolean isDeterministic() {
+        if (engine != PropagationEngine.SYNCHRONOUS || isContinuous()) {
+            return false;
+        }
+        for (int d = 0; d < propagationTable.getThresholds().length; d++) {
+            if (probabilityMap == null) {
+                if (!isCertain(propagationTable.getThresholds()[d])) {
+                    return false;
+                }
+                continue;
+            }
+            for (int v = 0; v <= ProbabilityMap.SCALE; v++) {
+                if (mapValuePresent[v] && !isCertain(propagationTable.getMapThresholds()[d][v])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Checks if a threshold means fire never or always crosses an edge.
+     * 
+     * @param threshold The threshold on the table scale
+     * @return true if the threshold is 0 or the full scale
+     */
+    private static boolean isCertain(int threshold) {
+        return threshold == 0 || threshold == PropagationTable.SCALE;
+    }
+    
+    /**
+     * Completes a deterministic run in a single breadth-first pass from the burning cells.
+     * Each tree ignites at its BFS distance from the fire along edges that always transmit,
+     * which is exactly the step at which the synchronous engine would ignite it.
+     * Only valid when isDeterministic() returns true.
+     * 
+     * @param currentStep The step count at which the current burning cells ignited
+     * @return The number of steps the synchronous engine would need to extinguish the fire
+     */
+    public int burnOut(int currentStep) {
+        int[] rowOffsets = propagationTable.getRowOffsets();
+        int[] colOffsets = propagationTable.getColOffsets();
+        int[] thresholds = propagationTable.getThresholds();
+        int[][] mapThresholds = propagationTable.getMapThresholds();
+        
+        if (ignitionSteps == null) {
+            ignitionSteps = newIgnitionSteps();
+        }
+        
+        // The burning frontier is the head of the BFS queue
+        if (frontierStale) {
+            pruneFrontier();
+        }
+        int[] queue = fireCells;
+        int tail = fireCount;
+        for (int k = 0; k < tail; k++) {
+            ignitionSteps[queue[k]] = currentStep;
+        }
+        
+        int lastStep = currentStep;
+        for (int head = 0; head < tail; head++) {
+            int index = queue[head];
+            int step = ignitionSteps[index];
+            lastStep = step;
+            states.set(index, ASH);
+            
+            int row = index / width;
+            int col = index - row * width;
+            for (int d = 0; d < rowOffsets.length; d++) {
+                int newRow = row + rowOffsets[d];
+                int newCol = col + colOffsets[d];
+                if (!isValidPosition(newRow, newCol)) {
+                    continue;
+                }
+                int neighbour = newRow * width + newCol;
+                if (states.get(neighbour) != TREE) {
+                    continue;
+                }
+                int threshold = probabilityMap != null
+                    ? mapThresholds[d][probabilityMap[neighbour] & 0xFF]
+                    : thresholds[d];
+                if (threshold == PropagationTable.SCALE) {
+                    states.set(neighbour, FIRE);
+                    ignitionSteps[neighbour] = step + 1;
+                    queue = ensureCapacity(queue, tail + 1);
+                    queue[tail++] = neighbour;
+                }
+            }
+        }
+        
+        fireCells = queue;
+        treeCount -= tail - fireCount;
+        ashCount += tail;
+        fireCount = 0;
+        gridDirty = true;
+        
+        // The last cells to ignite burn out one step later
+        step += lastStep + 1 - currentStep;
+        return lastStep + 1 - currentStep;
+    }
+    
+    /**
+     * Gets the step at which each cell last ignited: 0 for the initial fires, s for cells that
+     * caught fire in the step that brought the count to s. Cells that never ignited hold -1.
+     * The steps are recorded as cells ignite while recording is enabled; otherwise only a
+     * burnOut() pass fills them in, for the cells it ignites.
+     * 
+     * @return The row-major ignition steps, or null if neither has happened
+     */
+    public int[] getIgnitionSteps() {
+        return ignitionSteps;
+    }
+    
+    /**
+     * Enables or disables recording the step at which each cell ignites. Recording costs 4 bytes per cell
+     * and one store per ignition. Cells ignited before recording was enabled are reported as never ignited.
+     * 
+     * @param record true to record ignition steps
+     */
+    public void setRecordIgnitionSteps(boolean record) {
+        recordIgnitionSteps = record;
+        if (record && ignitionSteps == null) {
+            ignitionSteps = newIgnitionSteps();
+        } else if (!record) {
+            ignitionSteps = null;
+        }
+    }
+    
+    /**
+     * Checks if ignition steps are recorded.
+     * 
+     * @return true if recording is enabled
+     */
+    public boolean isRecordingIgnitionSteps() {
+        return recordIgnitionSteps;
+    }
+    
+    /**
+     * Copies the ignition steps of a rectangular window into an array, row by row.
+     * 
+     * @param row The first row of the window
+     * @param col The first column of the window
+     * @param windowHeight The number of rows
+     * @param windowWidth The number of columns
+     * @param target The array to fill, with at least windowHeight * windowWidth entries
+     * @throws IllegalStateException If no ignition steps are available
+     * @throws IllegalArgumentException If the window is not inside the forest
+     */
+    public void copyIgnitionSteps(int row, int col, int windowHeight, int windowWidth, int[] target)
+            throws IllegalStateException, IllegalArgumentException {
+        if (ignitionSteps == null) {
+            throw new IllegalStateException("Ignition steps are not being recorded");
+        }
+        if (row < 0 || col < 0 || windowHeight < 0 || windowWidth < 0
+                || row + windowHeight > height || col + windowWidth > width) {
+            throw new IllegalArgumentException("Window " + windowHeight + "x" + windowWidth + " at (" + row + "," + col
+                + ") is outside the forest");
+        }
+        for (int r = 0; r < windowHeight; r++) {
+            System.arraycopy(ignitionSteps, (row + r) * width + col, target, r * windowWidth, windowWidth);
+        }
+    }
+    
+    /**
+     * Gets the number of steps the forest has advanced since it was created or reset.
+     * 
+     * @return The step count
+     */
+    public int getStep() {
+        return step;
+    }
+    
+    /**
+     * Creates an ignition step array with every cell marked as never ignited.
+     * 
+     * @return The new array
+     */
+    private int[] newIgnitionSteps() {
+        int[] steps = new int[height * width];
+        Arrays.fill(steps, -1);
+        return steps;
+    }
+    
+    /**
+     * Advances the event-driven engine by one time unit.
+     * Every burning cell burns for exactly one time unit, so the state after each call
+     * matches the discrete step count even though ignitions happen in continuous time.
+     * 
+     * @return true if there are still cells on fire, false otherwise
+     */
+    private boolean advanceEvents() {
+        double horizon = time + 1;
+        eventIgnitionCount = 0;
+        while (events.peekTime() <= horizon) {
+            double eventTime = events.peekTime();
+            int event = events.pop();
+            if (event < 0) {
+                // Burnouts are stored as the complement of the cell index
+                states.set(~event, ASH);
+                fireCount--;
+                ashCount++;
+            } else if (states.get(event) == TREE) {
+                states.set(event, FIRE);
+                if (ignitionSteps != null) {
+                    ignitionSteps[event] = step + 1;
+                }
+                treeCount--;
+                fireCount++;
+                eventIgnitions = ensureCapacity(eventIgnitions, eventIgnitionCount + 1);
+                eventIgnitions[eventIgnitionCount++] = event;
+                scheduleFrom(event, eventTime);
+            }
+        }
+        time = horizon;
+        gridDirty = true;
+        
+        return hasFireCells();
+    }
+    
+    /**
+     * Schedules the burnout of a newly ignited cell and the ignition of each neighbour it reaches.
+     * An edge transmits with the same probability as in the synchronous engine; only then is
+     * its ignition time drawn, from an exponential distribution truncated to the burn time.
+     * 
+     * @param index The row-major index of the ignited cell
+     * @param ignitionTime The time at which the cell ignited
+     */
+    private void scheduleFrom(int index, double ignitionTime) {
+        events.push(ignitionTime + 1, ~index, index);
+        
+        int[] rowOffsets = propagationTable.getRowOffsets();
+        int[] colOffsets = propagationTable.getColOffsets();
+        int row = index / width;
+        int col = index - row * width;
+        
+        for (int d = 0; d < rowOffsets.length; d++) {
+            int newRow = row + rowOffsets[d];
+            int newCol = col + colOffsets[d];
+            if (!isValidPosition(newRow, newCol)) {
+                continue;
+            }
+            int neighbour = newRow * width + newCol;
+            if (states.get(neighbour) != TREE) {
+                continue;
+            }
+            
+            int threshold;
+            double rate;
+            if (probabilityMap != null) {
+                int value = probabilityMap[neighbour] & 0xFF;
+                threshold = propagationTable.getMapThresholds()[d][value];
+                rate = propagationTable.getMapRates()[d][value];
+            } else {
+                threshold = propagationTable.getThresholds()[d];
+                rate = propagationTable.getRates()[d];
+            }
+            
+            int draw = keyedDraws ? (int) (keyedBits(-1, index, d) >>> 40) : random.nextInt(PropagationTable.SCALE);
+            if (draw < threshold) {
+                // Inverse CDF of Exp(rate) conditioned on falling within the burn time
+                double uniform = keyedDraws ? (keyedBits(-2, index, d) >>> 11) * 0x1.0p-53 : random.nextDouble();
+                double delay = -Math.log1p(uniform * Math.expm1(-rate)) / rate;
+                events.push(ignitionTime + delay, neighbour, index);
+            }
+        }
+    }
+    
+    /**
+     * Marks ash cells that regrow in this step as saplings.
+     * Instead of one Bernoulli trial per cell, the gap to the next selected cell is drawn
+     * from a geometric distribution, so the cost is proportional to g * cells.
+     * 
+     * @return The number of regrown cells
+     */
+    private int markRegrowth() {
+        int count = 0;
+        int cells = states.length();
+        double logMiss = Math.log1p(-regrowthProbability);
+        for (long index = nextSkip(-1, logMiss); index < cells; index = nextSkip(index, logMiss)) {
+            int i = (int) index;
+            if (states.get(i) == ASH) {
+                states.set(i, SAPLING);
+                regrownCells = ensureCapacity(regrownCells, count + 1);
+                regrownCells[count++] = i;
+            }
+        }
+        ashCount -= count;
+        treeCount += count;
+        return count;
+    }
+    
+    /**
+     * Ignites trees struck by lightning in this step, using the same geometric skip-ahead.
+     * 
+     * @return The number of cells ignited
+     */
+    private int strikeLightning() {
+        int count = 0;
+        int cells = states.length();
+        double logMiss = Math.log1p(-lightningProbability);
+        for (long index = nextSkip(-1, logMiss); index < cells; index = nextSkip(index, logMiss)) {
+            int i = (int) index;
+            if (states.get(i) == TREE) {
+                states.set(i, FIRE);
+                if (ignitionSteps != null) {
+                    ignitionSteps[i] = step + 1;
                 }
+                treeCount--;
+                nextFireCells = ensureCapacity(nextFireCells, count + 1);
+                nextFireCells[count++] = i;
             }
         }
+        return count;
+    }
+    
+    /**
+     * Draws the index of the next selected cell after the given one.
+     * 
+     * @param index The previously selected index, or -1 to start
+     * @param logMiss log(1 - q) for selection probability q
+     * @return The next selected index, which may be past the end of the grid
+     */
+    private long nextSkip(long index, double logMiss) {
+        if (logMiss == Double.NEGATIVE_INFINITY) {
+            return index + 1;
+        }
+        double gap = Math.floor(Math.log(1.0 - random.nextDouble()) / logMiss);
+        return gap >= Integer.MAX_VALUE ? Long.MAX_VALUE : index + 1 + (long) gap;
+    }
+    
+    /**
+     * Grows an index buffer if it cannot hold the required number of entries.
+     * 
+     * @param buffer The buffer to check
+     * @param required The number of entries required
+     * @return The buffer, or a larger copy of it
+     */
+    private int[] ensureCapacity(int[] buffer, int required) {
+        if (required <= buffer.length) {
+            return buffer;
+        }
+        return Arrays.copyOf(buffer, Math.min(states.length(), Math.max(required, buffer.length * 2)));
     }
     
     /**
@@ -138,25 +925,185 @@ public class Forest {
      * @return true if there are cells on fire, false otherwise
      */
     public boolean hasFireCells() {
-        for (int i = 0; i < height; i++) {
-            for (int j = 0; j < width; j++) {
-                if (grid[i][j].getState() == Cell.State.FIRE) {
-                    return true;
-                }
-            }
+        return fireCount > 0;
+    }
+    
+    /**
+     * Gets the cells that ignited during the last simulated step.
+     * Only the first getIgnitedCount() entries are valid, and only until the next step.
+     * 
+     * @return The row-major indices of the ignited cells
+     */
+    public int[] getIgnitedCells() {
+        if (frontierStale && engine == PropagationEngine.SYNCHRONOUS) {
+            pruneFrontier();
         }
-        return false;
+        return engine == PropagationEngine.EVENT_DRIVEN ? eventIgnitions : fireCells;
+    }
+    
+    /**
+     * Gets the number of cells that ignited during the last simulated step.
+     * 
+     * @return The number of valid entries in getIgnitedCells()
+     */
+    public int getIgnitedCount() {
+        return engine == PropagationEngine.EVENT_DRIVEN ? eventIgnitionCount : fireCount;
     }
     
     /**
      * Gets the current state of the forest grid.
+     * The returned cells are a view that is refreshed from the state array on each call.
      * 
      * @return The 2D array of cells representing the forest
      */
     public Cell[][] getGrid() {
+        if (grid == null || grid.length != height || grid[0].length != width) {
+            grid = new Cell[height][width];
+            for (int i = 0; i < height; i++) {
+                for (int j = 0; j < width; j++) {
+                    grid[i][j] = new Cell(Cell.State.TREE, i, j);
+                }
+            }
+            gridDirty = true;
+        }
+        if (gridDirty) {
+            for (int i = 0; i < height; i++) {
+                Cell[] row = grid[i];
+                int offset = i * width;
+                for (int j = 0; j < width; j++) {
+                    row[j].setState(STATES[states.get(offset + j)]);
+                }
+            }
+            gridDirty = false;
+        }
         return grid;
     }
     
+    /**
+     * Gets the state of a single cell.
+     * 
+     * @param row The row of the cell
+     * @param col The column of the cell
+     * @return The state of the cell
+     */
+    public Cell.State getState(int row, int col) {
+        return STATES[states.get(row * width + col)];
+    }
+    
+    /**
+     * Gets the row-major cell states, one Cell.State ordinal per cell; cleared cells read as ash.
+     * The array is a snapshot reused across calls and must not be modified.
+     * 
+     * @return The state array
+     */
+    public byte[] getStates() {
+        if (flatStates == null || flatStates.length != states.length()) {
+            flatStates = new byte[states.length()];
+        }
+        states.copyTo(flatStates);
+        showClearedAsAsh(flatStates, flatStates.length);
+        return flatStates;
+    }
+    
+    /**
+     * Copies the states of one row, one Cell.State ordinal per cell, without materialising the whole grid.
+     * Cleared cells read as ash.
+     * 
+     * @param row The row to copy
+     * @param target The array to fill, at least width long
+     */
+    public void copyRow(int row, byte[] target) {
+        states.copyRange(row * width, target, 0, width);
+        showClearedAsAsh(target, width);
+    }
+    
+    /**
+     * Copies the states of one row like copyRow(), except that cleared cells keep a code of
+     * their own that is none of TREE, FIRE and ASH. Scans for burned cells read rows this way
+     * so that firebreaks are not taken for burned ground.
+     * 
+     * @param row The row to copy
+     * @param target The array to fill, at least width long
+     */
+    public void copyBurnRow(int row, byte[] target) {
+        states.copyRange(row * width, target, 0, width);
+    }
+    
+    /**
+     * Replaces the code of cleared cells with that of ash.
+     * 
+     * @param target The state codes
+     * @param length The number of codes to check
+     */
+    private void showClearedAsAsh(byte[] target, int length) {
+        if (clearedCount == 0) {
+            return;
+        }
+        for (int k = 0; k < length; k++) {
+            if (target[k] == CLEARED) {
+                target[k] = ASH;
+            }
+        }
+    }
+    
+    /**
+     * Gets the number of cells currently in the TREE state.
+     * 
+     * @return The tree count
+     */
+    public int getTreeCount() {
+        return treeCount;
+    }
+    
+    /**
+     * Gets the number of cells currently on fire.
+     * 
+     * @return The fire count
+     */
+    public int getFireCount() {
+        return fireCount;
+    }
+    
+    /**
+     * Gets the number of cells currently in the ASH state.
+     * 
+     * @return The ash count
+     */
+    public int getAshCount() {
+        return ashCount;
+    }
+    
+    /**
+     * Gets the number of cells cleared for firebreaks. They are in none of the other counts.
+     * 
+     * @return The cleared count
+     */
+    public int getClearedCount() {
+        return clearedCount;
+    }
+    
+    /**
+     * Estimates the heap memory held by the grid and its working buffers.
+     * 
+     * @return The approximate size in bytes
+     */
+    public long getMemoryBytes() {
+        // State tiles still shared copy-on-write with another forest are not counted
+        long bytes = states.getOwnedBytes();
+        bytes += 4L * (fireCells.length + nextFireCells.length + regrownCells.length);
+        if (probabilityMap != null) {
+            bytes += probabilityMap.length;
+        }
+        if (ignitionSteps != null) {
+            bytes += 4L * ignitionSteps.length;
+        }
+        if (grid != null) {
+            // Cell view: one reference plus an object header, state reference and two ints per cell
+            bytes += 32L * states.length();
+        }
+        return bytes;
+    }
+    
     /**
      * Gets the height of the forest grid.
      * 
@@ -175,6 +1122,63 @@ public class Forest {
         return width;
     }
     
+    /**
+     * Creates an independent copy of the forest at its current step.
+     * The cell states are shared tile by tile and copied only when either forest first
+     * writes to a tile, so a fork costs little more than its burning frontier until the
+     * two runs diverge. The fork draws from its own random number generator; keyed draws
+     * keep the seed of this forest until the fork is reseeded.
+     * 
+     * @return The forked forest
+     */
+    public Forest fork() {
+        Forest copy = new Forest(this);
+        copy.states = states.share();
+        return copy;
+    }
+    
+    /**
+     * Creates a forest with the settings and the non-shared state of another forest.
+     * 
+     * @param source The forest to copy
+     */
+    private Forest(Forest source) {
+        this.height = source.height;
+        this.width = source.width;
+        this.propagationProbability = source.propagationProbability;
+        this.probabilityMap = source.probabilityMap;
+        this.mapValuePresent = source.mapValuePresent;
+        this.neighbourhood = source.neighbourhood;
+        this.windSpeed = source.windSpeed;
+        this.windDirection = source.windDirection;
+        this.propagationTable = source.propagationTable;
+        this.regrowthProbability = source.regrowthProbability;
+        this.lightningProbability = source.lightningProbability;
+        this.engine = source.engine;
+        this.random = new Random();
+        this.keyedDraws = source.keyedDraws;
+        this.drawSeed = source.drawSeed;
+        this.frontierStale = source.frontierStale;
+        
+        this.fireCells = source.fireCells.clone();
+        this.fireCount = source.fireCount;
+        this.nextFireCells = new int[source.nextFireCells.length];
+        this.regrownCells = new int[source.regrownCells.length];
+        this.treeCount = source.treeCount;
+        this.ashCount = source.ashCount;
+        this.clearedCount = source.clearedCount;
+        this.ignitionSteps = source.ignitionSteps == null ? null : source.ignitionSteps.clone();
+        this.recordIgnitionSteps = source.recordIgnitionSteps;
+        this.step = source.step;
+        this.time = source.time;
+        if (source.events != null) {
+            this.events = source.events.copy();
+            this.eventIgnitions = source.eventIgnitions.clone();
+            this.eventIgnitionCount = source.eventIgnitionCount;
+        }
+        this.gridDirty = true;
+    }
+    
     /**
      * Resets the forest to its initial state with all cells as trees.
      */
@@ -192,7 +1196,8 @@ public class Forest {
         StringBuilder sb = new StringBuilder();
         for (int i = 0; i < height; i++) {
             for (int j = 0; j < width; j++) {
-                sb.append(grid[i][j].toString()).append(" ");
+                sb.append(getState(i, j) == Cell.State.TREE ? "T" : getState(i, j) == Cell.State.FIRE ? "F" : "A")
+                    .append(" ");
             }
             sb.append("\n");
         }
@@ -0,0 +1,59 @@
+package com.forestfire.model;
+
+/**
+ * Neighbourhoods that fire can spread into from a burning cell.
+ */
+public enum Neighbourhood {
+    VON_NEUMANN(new int[]{-1, 0, 1, 0}, new int[]{0, 1, 0, -1}),                          // up, right, down, left
+    MOORE(new int[]{-1, -1, 0, 1, 1, 1, 0, -1}, new int[]{0, 1, 1, 1, 0, -1, -1, -1});   // clockwise from up
+    
+    private final int[] rowOffsets;
+    private final int[] colOffsets;
+    
+    Neighbourhood(int[] rowOffsets, int[] colOffsets) {
+        this.rowOffsets = rowOffsets;
+        this.colOffsets = colOffsets;
+    }
+    
+    /**
+     * Gets the row offset of each neighbour direction.
+     * 
+     * @return The row offsets, indexed by direction
+     */
+    public int[] getRowOffsets() {
+        return rowOffsets.clone();
+    }
+    
+    /**
+     * Gets the column offset of each neighbour direction.
+     * 
+     * @return The column offsets, indexed by direction
+     */
+    public int[] getColOffsets() {
+        return colOffsets.clone();
+    }
+    
+    /**
+     * Gets the number of neighbour directions.
+     * 
+     * @return 4 for von Neumann, 8 for Moore
+     */
+    public int size() {
+        return rowOffsets.length;
+    }
+    
+    /**
+     * Parses a neighbourhood name, ignoring case and accepting "-" in place of "_".
+     * 
+     * @param name The neighbourhood name, e.g. "moore" or "von-neumann"
+     * @return The matching neighbourhood
+     * @throws IllegalArgumentException If the name is not a known neighbourhood
+     */
+    public static Neighbourhood parse(String name) throws IllegalArgumentException {
+        try {
+            return valueOf(name.trim().toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown neighbourhood: " + name + " (expected von_neumann or moore)");
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.forestfire.model;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Per-cell fire propagation probabilities derived from fuel and terrain.
+ * Probabilities are quantised to one unsigned byte per cell (0 = never ignites,
+ * 255 = always ignites) and stored row-major so the step kernel can index them directly.
+ */
+public class ProbabilityMap {
+    
+    /**
+     * Quantisation scale: a stored value v represents the probability v / SCALE.
+     */
+    public static final int SCALE = 255;
+    
+    private final byte[] values;
+    private final int height;
+    private final int width;
+    
+    /**
+     * Creates a probability map from already quantised values.
+     * 
+     * @param values Row-major quantised probabilities, one byte per cell
+     * @param height The height of the map
+     * @param width The width of the map
+     * @throws IllegalArgumentException If the number of values does not match the dimensions
+     */
+    public ProbabilityMap(byte[] values, int height, int width) throws IllegalArgumentException {
+        if ((long) height * width != values.length) {
+            throw new IllegalArgumentException(
+                "Probability map has " + values.length + " cells but expected " + height + "x" + width);
+        }
+        this.values = values;
+        this.height = height;
+        this.width = width;
+    }
+    
+    /**
+     * Loads a probability map from a raster file using memory-mapped I/O.
+     * Binary PGM files (P5) are detected by their header and rescaled from their
+     * maximum grey value; any other file is read as a raw raster of height*width bytes.
+     * 
+     * @param path Path to the raster file
+     * @param height The expected height of the map
+     * @param width The expected width of the map
+     * @return The loaded probability map
+     * @throws IOException If the file cannot be read
+     * @throws IllegalArgumentException If the file is malformed or its dimensions do not match
+     */
+    public static ProbabilityMap load(String path, int height, int width) throws IOException, IllegalArgumentException {
+        Path file = Paths.get(path);
+        
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            
+            if (buffer.remaining() >= 2 && buffer.get(0) == 'P' && buffer.get(1) == '5') {
+                return readPgm(buffer, path, height, width);
+            }
+            
+            if ((long) height * width != buffer.remaining()) {
+                throw new IllegalArgumentException("Raw probability map " + path + " has " + buffer.remaining()
+                    + " bytes but the forest is " + height + "x" + width);
+            }
+            byte[] values = new byte[height * width];
+            buffer.get(values);
+            return new ProbabilityMap(values, height, width);
+        }
+    }
+    
+    /**
+     * Reads the body of a binary PGM file, rescaling grey values to the quantisation scale.
+     * 
+     * @param buffer Buffer positioned at the start of the file
+     * @param path Path of the file, used in error messages
+     * @param height The expected height of the map
+     * @param width The expected width of the map
+     * @return The loaded probability map
+     * @throws IllegalArgumentException If the header is malformed or the dimensions do not match
+     */
+    private static ProbabilityMap readPgm(MappedByteBuffer buffer, String path, int height, int width)
+            throws IllegalArgumentException {
+        buffer.position(2);
+        int pgmWidth = readHeaderInt(buffer, path);
+        int pgmHeight = readHeaderInt(buffer, path);
+        int maxValue = readHeaderInt(buffer, path);
+        
+        // Exactly one whitespace byte separates the header from the samples
+        buffer.get();
+        
+        if (pgmHeight != height || pgmWidth != width) {
+            throw new IllegalArgumentException("Probability map " + path + " is " + pgmHeight + "x" + pgmWidth
+                + " but the forest is " + height + "x" + width);
+        }
+        if (maxValue <= 0 || maxValue > 65535) {
+            throw new IllegalArgumentException("Invalid PGM maximum value in " + path + ": " + maxValue);
+        }
+        
+        int bytesPerSample = maxValue > 255 ? 2 : 1;
+        if (buffer.remaining() < (long) height * width * bytesPerSample) {
+            throw new IllegalArgumentException("Probability map " + path + " is truncated");
+        }
+        
+        byte[] values = new byte[height * width];
+        if (maxValue == SCALE) {
+            buffer.get(values);
+        } else {
+            for (int i = 0; i < values.length; i++) {
+                int sample = bytesPerSample == 2 ? buffer.getShort() & 0xFFFF : buffer.get() & 0xFF;
+                values[i] = (byte) ((Math.min(sample, maxValue) * SCALE + maxValue / 2) / maxValue);
+            }
+        }
+        return new ProbabilityMap(values, height, width);
+    }
+    
+    /**
+     * Reads the next whitespace-delimited decimal number from a PGM header, skipping comments.
+     * 
+     * @param buffer Buffer positioned inside the header
+     * @param path Path of the file, used in error messages
+     * @return The parsed number
+     * @throws IllegalArgumentException If the header ends before a number is found
+     */
+    private static int readHeaderInt(MappedByteBuffer buffer, String path) throws IllegalArgumentException {
+        while (buffer.hasRemaining()) {
+            byte b = buffer.get(buffer.position());
+            if (b == '#') {
+                while (buffer.hasRemaining() && buffer.get() != '\n') {
+                    // Skip the rest of the comment line
+                }
+            } else if (Character.isWhitespace(b)) {
+                buffer.get();
+            } else {
+                break;
+            }
+        }
+        
+        int value = 0;
+        int digits = 0;
+        while (buffer.hasRemaining()) {
+            byte b = buffer.get(buffer.position());
+            if (b < '0' || b > '9') {
+                break;
+            }
+            value = value * 10 + (b - '0');
+            digits++;
+            buffer.get();
+        }
+        
+        if (digits == 0) {
+            throw new IllegalArgumentException("Malformed PGM header in " + path);
+        }
+        return value;
+    }
+    
+    /**
+     * Quantises a probability to the byte scale used by the map.
+     * 
+     * @param probability A probability between 0 and 1
+     * @return The quantised value between 0 and SCALE
+     */
+    public static int quantise(double probability) {
+        return (int) Math.round(probability * SCALE);
+    }
+    
+    /**
+     * Gets the raw quantised values in row-major order.
+     * Values are unsigned and must be read as (value &amp; 0xFF).
+     * 
+     * @return The backing array of quantised probabilities
+     */
+    public byte[] getValues() {
+        return values;
+    }
+    
+    /**
+     * Gets the propagation probability of a single cell.
+     * 
+     * @param row The row of the cell
+     * @param col The column of the cell
+     * @return The probability of fire spreading into the cell
+     */
+    public double getProbability(int row, int col) {
+        return (values[row * width + col] & 0xFF) / (double) SCALE;
+    }
+    
+    /**
+     * Gets the height of the map.
+     * 
+     * @return The height
+     */
+    public int getHeight() {
+        return height;
+    }
+    
+    /**
+     * Gets the width of the map.
+     * 
+     * @return The width
+     */
+    public int getWidth() {
+        return width;
+    }
+}
@@ -0,0 +1,24 @@
+package com.forestfire.model;
+
+/**
+ * Engines that advance the fire through the forest.
+ */
+public enum PropagationEngine {
+    SYNCHRONOUS, // Every burning cell tries each neighbour once per discrete step
+    EVENT_DRIVEN; // Ignition times are sampled per edge and processed in continuous time order
+    
+    /**
+     * Parses an engine name, ignoring case and accepting "-" in place of "_".
+     * 
+     * @param name The engine name, e.g. "synchronous" or "event-driven"
+     * @return The matching engine
+     * @throws IllegalArgumentException If the name is not a known engine
+     */
+    public static PropagationEngine parse(String name) throws IllegalArgumentException {
+        try {
+            return valueOf(name.trim().toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown engine: " + name + " (expected synchronous or event_driven)");
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.forestfire.model;
+
+/**
+ * Precomputed ignition thresholds for each neighbour direction.
+ * Wind is applied with the Alexandridis et al. factor exp(c1*V) * exp(c2*V*(cos(theta) - 1)),
+ * where theta is the angle between the wind and the direction of spread, so the step kernel
+ * only compares a random integer against a table entry and never evaluates trigonometry.
+ */
+public class PropagationTable {
+    
+    /**
+     * Resolution of the thresholds: fire spreads when random.nextInt(SCALE) &lt; threshold.
+     */
+    public static final int SCALE = 1 << 24;
+    
+    private static final double C1 = 0.045;
+    private static final double C2 = 0.131;
+    
+    private final Neighbourhood neighbourhood;
+    private final int[] rowOffsets;
+    private final int[] colOffsets;
+    private final int[] thresholds;
+    private final int[][] mapThresholds;
+    private final double[] rates;
+    private final double[][] mapRates;
+    
+    /**
+     * Builds the threshold tables for a neighbourhood, base probability and wind.
+     * 
+     * @param neighbourhood The neighbourhood fire spreads into
+     * @param probability The global propagation probability
+     * @param windSpeed The wind speed in m/s (0 for no wind)
+     * @param windDirection The direction the wind blows towards, in degrees clockwise from north (up)
+     */
+    public PropagationTable(Neighbourhood neighbourhood, double probability, double windSpeed, double windDirection) {
+        this.neighbourhood = neighbourhood;
+        this.rowOffsets = neighbourhood.getRowOffsets();
+        this.colOffsets = neighbourhood.getColOffsets();
+        this.thresholds = new int[rowOffsets.length];
+        this.mapThresholds = new int[rowOffsets.length][ProbabilityMap.SCALE + 1];
+        this.rates = new double[rowOffsets.length];
+        this.mapRates = new double[rowOffsets.length][ProbabilityMap.SCALE + 1];
+        
+        double windRadians = Math.toRadians(windDirection);
+        for (int d = 0; d < rowOffsets.length; d++) {
+            // Compass bearing of this neighbour: up is 0, right is 90 degrees
+            double spreadRadians = Math.atan2(colOffsets[d], -rowOffsets[d]);
+            double cosTheta = Math.cos(windRadians - spreadRadians);
+            double factor = Math.exp(C1 * windSpeed) * Math.exp(C2 * windSpeed * (cosTheta - 1));
+            
+            thresholds[d] = toThreshold(probability * factor);
+            rates[d] = toRate(thresholds[d]);
+            for (int v = 0; v <= ProbabilityMap.SCALE; v++) {
+                mapThresholds[d][v] = toThreshold(v / (double) ProbabilityMap.SCALE * factor);
+                mapRates[d][v] = toRate(mapThresholds[d][v]);
+            }
+        }
+    }
+    
+    /**
+     * Converts a probability to a threshold on the table scale, clamping to [0, 1].
+     * 
+     * @param probability The probability to convert
+     * @return The threshold between 0 and SCALE
+     */
+    private static int toThreshold(double probability) {
+        if (probability <= 0) {
+            return 0;
+        }
+        if (probability >= 1) {
+            return SCALE;
+        }
+        return (int) Math.round(probability * SCALE);
+    }
+    
+    /**
+     * Converts a threshold to the ignition rate of an edge whose source burns for one time unit.
+     * An exponential ignition time with rate -ln(1 - p) falls within the burn time with probability p;
+     * p = 1 is capped just below 1 so the rate stays finite.
+     * 
+     * @param threshold The threshold on the table scale
+     * @return The ignition rate per time unit
+     */
+    private static double toRate(int threshold) {
+        int capped = Math.min(threshold, SCALE - 1);
+        return -Math.log1p(-capped / (double) SCALE);
+    }
+    
+    /**
+     * Gets the neighbourhood the table was built for.
+     * 
+     * @return The neighbourhood
+     */
+    public Neighbourhood getNeighbourhood() {
+        return neighbourhood;
+    }
+    
+    /**
+     * Gets the row offset of each direction.
+     * 
+     * @return The row offsets, indexed by direction
+     */
+    public int[] getRowOffsets() {
+        return rowOffsets;
+    }
+    
+    /**
+     * Gets the column offset of each direction.
+     * 
+     * @return The column offsets, indexed by direction
+     */
+    public int[] getColOffsets() {
+        return colOffsets;
+    }
+    
+    /**
+     * Gets the threshold of each direction for the global probability.
+     * 
+     * @return The thresholds, indexed by direction
+     */
+    public int[] getThresholds() {
+        return thresholds;
+    }
+    
+    /**
+     * Gets the thresholds of each direction for every quantised probability map value.
+     * 
+     * @return The thresholds, indexed by direction then by unsigned map value
+     */
+    public int[][] getMapThresholds() {
+        return mapThresholds;
+    }
+    
+    /**
+     * Gets the ignition rate of each direction for the global probability.
+     * 
+     * @return The rates, indexed by direction
+     */
+    public double[] getRates() {
+        return rates;
+    }
+    
+    /**
+     * Gets the ignition rates of each direction for every quantised probability map value.
+     * 
+     * @return The rates, indexed by direction then by unsigned map value
+     */
+    public double[][] getMapRates() {
+        return mapRates;
+    }
+}
@@ -0,0 +1,163 @@
+package com.forestfire.model;
+
+import java.util.Arrays;
+
+/**
+ * Row-major cell states split into fixed-size tiles that can be shared copy-on-write.
+ * Sharing copies only the tile references; a tile is copied the first time either owner
+ * writes to it, so a fork costs memory only for the tiles its fire actually reaches.
+ */
+class TiledStates {
+    
+    static final int TILE_SHIFT = 16;
+    static final int TILE_SIZE = 1 << TILE_SHIFT;
+    private static final int TILE_MASK = TILE_SIZE - 1;
+    
+    private final int length;
+    private final byte[][] tiles;
+    private final boolean[] owned;
+    
+    /**
+     * Creates states for the given number of cells, all owned by this instance.
+     * 
+     * @param length The number of cells
+     */
+    TiledStates(int length) {
+        this.length = length;
+        int tileCount = (length + TILE_MASK) >>> TILE_SHIFT;
+        this.tiles = new byte[tileCount][];
+        this.owned = new boolean[tileCount];
+        for (int t = 0; t < tileCount; t++) {
+            tiles[t] = new byte[tileLength(t)];
+            owned[t] = true;
+        }
+    }
+    
+    /**
+     * Creates states that share every tile of another instance.
+     * 
+     * @param source The states to share
+     */
+    private TiledStates(TiledStates source) {
+        this.length = source.length;
+        this.tiles = source.tiles.clone();
+        this.owned = new boolean[tiles.length];
+    }
+    
+    /**
+     * Gets the number of cells in a tile; only the last tile can be shorter.
+     * 
+     * @param tile The tile index
+     * @return The number of cells in the tile
+     */
+    private int tileLength(int tile) {
+        return Math.min(TILE_SIZE, length - (tile << TILE_SHIFT));
+    }
+    
+    /**
+     * Gets the state of a cell.
+     * 
+     * @param index The row-major index of the cell
+     * @return The state code
+     */
+    byte get(int index) {
+        return tiles[index >>> TILE_SHIFT][index & TILE_MASK];
+    }
+    
+    /**
+     * Sets the state of a cell, copying its tile first if it is shared.
+     * 
+     * @param index The row-major index of the cell
+     * @param state The state code
+     */
+    void set(int index, byte state) {
+        int tile = index >>> TILE_SHIFT;
+        if (!owned[tile]) {
+            tiles[tile] = tiles[tile].clone();
+            owned[tile] = true;
+        }
+        tiles[tile][index & TILE_MASK] = state;
+    }
+    
+    /**
+     * Sets every cell to the same state. Shared tiles are replaced rather than copied.
+     * 
+     * @param state The state code
+     */
+    void fill(byte state) {
+        for (int t = 0; t < tiles.length; t++) {
+            if (!owned[t]) {
+                tiles[t] = new byte[tileLength(t)];
+                owned[t] = true;
+            }
+            Arrays.fill(tiles[t], state);
+        }
+    }
+    
+    /**
+     * Shares every tile with a new instance. Both instances copy a shared tile before
+     * writing to it; a tile is never handed back to exclusive ownership, so one of them may
+     * copy a tile the other has already stopped sharing.
+     * 
+     * @return The new instance
+     */
+    TiledStates share() {
+        Arrays.fill(owned, false);
+        return new TiledStates(this);
+    }
+    
+    /**
+     * Copies the states into a flat row-major array.
+     * 
+     * @param target The array to fill, at least length() long
+     */
+    void copyTo(byte[] target) {
+        for (int t = 0; t < tiles.length; t++) {
+            System.arraycopy(tiles[t], 0, target, t << TILE_SHIFT, tiles[t].length);
+        }
+    }
+    
+    /**
+     * Copies a run of consecutive cells into an array.
+     * 
+     * @param from The row-major index of the first cell
+     * @param target The array to fill
+     * @param offset The position in the target of the first cell
+     * @param count The number of cells to copy
+     */
+    void copyRange(int from, byte[] target, int offset, int count) {
+        while (count > 0) {
+            int tile = from >>> TILE_SHIFT;
+            int start = from & TILE_MASK;
+            int chunk = Math.min(count, TILE_SIZE - start);
+            System.arraycopy(tiles[tile], start, target, offset, chunk);
+            from += chunk;
+            offset += chunk;
+            count -= chunk;
+        }
+    }
+    
+    /**
+     * Gets the number of cells.
+     * 
+     * @return The number of cells
+     */
+    int length() {
+        return length;
+    }
+    
+    /**
+     * Gets the number of bytes held in tiles this instance owns exclusively.
+     * 
+     * @return The owned size in bytes
+     */
+    long getOwnedBytes() {
+        long bytes = 0;
+        for (int t = 0; t < tiles.length; t++) {
+            if (owned[t]) {
+                bytes += tiles[t].length;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,90 @@
+package com.forestfire.service;
+
+import com.forestfire.model.Forest;
+
+/**
+ * A change to a rectangle of the forest, queued while a simulation runs and applied between
+ * two steps. A single cell is a rectangle of one row and one column.
+ */
+public class Intervention {
+    
+    private final InterventionType type;
+    private final int top;
+    private final int left;
+    private final int bottom;
+    private final int right;
+    
+    /**
+     * Creates an intervention on a rectangle, bounds inclusive. Parts of the rectangle outside
+     * the forest are ignored when it is applied.
+     * 
+     * @param type What to do to the cells
+     * @param top The first row
+     * @param left The first column
+     * @param bottom The last row
+     * @param right The last column
+     * @throws IllegalArgumentException If the rectangle is empty
+     */
+    public Intervention(InterventionType type, int top, int left, int bottom, int right) throws IllegalArgumentException {
+        if (top > bottom || left > right) {
+            throw new IllegalArgumentException("Intervention area " + top + ":" + left + ":" + bottom + ":" + right + " is empty");
+        }
+        this.type = type;
+        this.top = top;
+        this.left = left;
+        this.bottom = bottom;
+        this.right = right;
+    }
+    
+    /**
+     * Parses an intervention.
+     * 
+     * @param spec TYPE=ROW:COL for one cell or TYPE=TOP:LEFT:BOTTOM:RIGHT for a rectangle,
+     *             e.g. "clear=0:50:199:52" or "ignite=10:10"
+     * @return The intervention
+     * @throws IllegalArgumentException If the spec is malformed
+     */
+    public static Intervention parse(String spec) throws IllegalArgumentException {
+        String[] parts = spec.split("=", 2);
+        String[] bounds = parts.length == 2 ? parts[1].split(":") : new String[0];
+        if (bounds.length != 2 && bounds.length != 4) {
+            throw new IllegalArgumentException("Intervention must be TYPE=ROW:COL or TYPE=TOP:LEFT:BOTTOM:RIGHT: " + spec);
+        }
+        int top = Integer.parseInt(bounds[0].trim());
+        int left = Integer.parseInt(bounds[1].trim());
+        int bottom = bounds.length == 4 ? Integer.parseInt(bounds[2].trim()) : top;
+        int right = bounds.length == 4 ? Integer.parseInt(bounds[3].trim()) : left;
+        return new Intervention(InterventionType.parse(parts[0]), top, left, bottom, right);
+    }
+    
+    /**
+     * Applies the intervention to a forest.
+     * 
+     * @param forest The forest to change
+     * @return The number of cells changed
+     */
+    int applyTo(Forest forest) {
+        switch (type) {
+            case CLEAR:
+                return forest.clearArea(top, left, bottom, right);
+            case EXTINGUISH:
+                return forest.extinguishArea(top, left, bottom, right);
+            default:
+                return forest.igniteArea(top, left, bottom, right);
+        }
+    }
+    
+    /**
+     * Gets what the intervention does to the cells.
+     * 
+     * @return The intervention type
+     */
+    public InterventionType getType() {
+        return type;
+    }
+    
+    @Override
+    public String toString() {
+        return type.name().toLowerCase() + "=" + top + ":" + left + ":" + bottom + ":" + right;
+    }
+}
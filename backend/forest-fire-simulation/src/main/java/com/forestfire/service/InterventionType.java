@@ -0,0 +1,25 @@
+package com.forestfire.service;
+
+/**
+ * Changes that can be made to the forest of a running simulation.
+ */
+public enum InterventionType {
+    CLEAR, // Remove the fuel of an area, as a firebreak: trees are cleared and burning cells put out
+    EXTINGUISH, // Put out the burning cells of an area; trees are left standing
+    IGNITE; // Set the trees of an area on fire
+    
+    /**
+     * Parses an intervention name, ignoring case.
+     * 
+     * @param name The intervention name, e.g. "clear" or "extinguish"
+     * @return The matching intervention
+     * @throws IllegalArgumentException If the name is not a known intervention
+     */
+    public static InterventionType parse(String name) throws IllegalArgumentException {
+        try {
+            return valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown intervention: " + name + " (expected clear, extinguish or ignite)");
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.forestfire.service;
+
+/**
+ * Operations shared by a simulation running in this JVM and one distributed over worker processes,
+ * so runners can drive either without knowing where the grid lives.
+ */
+public interface Simulation {
+    
+    /**
+     * Executes a single step of the simulation.
+     * 
+     * @return true if the simulation is still running after the step
+     */
+    boolean executeStep();
+    
+    /**
+     * Runs up to the given number of steps, stopping early if the simulation ends.
+     * 
+     * @param steps The maximum number of steps to execute
+     * @return The number of steps executed
+     */
+    int runSteps(int steps);
+    
+    /**
+     * Runs the simulation until no cell is burning.
+     * 
+     * @return The total number of steps executed
+     * @throws IllegalStateException If the simulation never completes
+     */
+    int runToCompletion() throws IllegalStateException;
+    
+    /**
+     * Resets the simulation to its initial state.
+     */
+    void reset();
+    
+    /**
+     * Gets the current step count.
+     * 
+     * @return The number of steps executed
+     */
+    int getStepCount();
+    
+    /**
+     * Checks if the simulation is still running.
+     * 
+     * @return true if the simulation is running, false if it has ended
+     */
+    boolean isRunning();
+    
+    /**
+     * Gets the number of rows of the grid.
+     * 
+     * @return The grid height
+     */
+    int getHeight();
+    
+    /**
+     * Gets the number of columns of the grid.
+     * 
+     * @return The grid width
+     */
+    int getWidth();
+    
+    /**
+     * Gets the number of trees.
+     * 
+     * @return The tree count
+     */
+    long getTreeCount();
+    
+    /**
+     * Gets the number of burning cells.
+     * 
+     * @return The fire count
+     */
+    long getFireCount();
+    
+    /**
+     * Gets the number of ash cells.
+     * 
+     * @return The ash count
+     */
+    long getAshCount();
+    
+    /**
+     * Checks if the simulation runs in the continuous regrowth mode, which never completes.
+     * 
+     * @return true if trees regrow
+     */
+    boolean isContinuous();
+    
+    /**
+     * Releases the resources held by the simulation.
+     */
+    void close();
+}
@@ -0,0 +1,206 @@
+package com.forestfire.service;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-producer ring buffer that carries simulation events from the step loop to listeners.
+ * Slots are preallocated primitive arrays, so publishing an event does not allocate; a daemon
+ * thread consumes the slots in order and dispatches them. When the buffer is full the producer
+ * waits for the consumer rather than dropping events. An idle consumer parks for longer and longer,
+ * up to MAX_IDLE_PARK_NANOS, and the producer wakes it as soon as it publishes again, so a bus
+ * nobody publishes to costs next to nothing.
+ */
+class SimulationEventBus {
+    
+    static final int STEP_COMPLETED = 0;
+    static final int CELL_IGNITED = 1;
+    static final int FIRE_EXTINGUISHED = 2;
+    static final int RUN_FINISHED = 3;
+    
+    private static final long IDLE_PARK_NANOS = 100_000;
+    private static final long MAX_IDLE_PARK_NANOS = 100_000_000;
+    
+    private final int mask;
+    private final int[] types;
+    private final int[] steps;
+    private final int[] first;
+    private final int[] second;
+    private final int[] third;
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private final List<SimulationListener> listeners = new CopyOnWriteArrayList<>();
+    private final Thread consumer;
+    private volatile boolean running = true;
+    private volatile boolean idle;
+    
+    /**
+     * Creates the bus and starts its dispatch thread.
+     * 
+     * @param capacity The number of slots, rounded up to a power of two
+     */
+    SimulationEventBus(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        this.mask = size - 1;
+        this.types = new int[size];
+        this.steps = new int[size];
+        this.first = new int[size];
+        this.second = new int[size];
+        this.third = new int[size];
+        
+        this.consumer = new Thread(this::consume, "simulation-events");
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+    }
+    
+    /**
+     * Adds a listener.
+     * 
+     * @param listener The listener to add
+     */
+    void addListener(SimulationListener listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Removes a listener.
+     * 
+     * @param listener The listener to remove
+     */
+    void removeListener(SimulationListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Checks if any listener is registered.
+     * 
+     * @return true if at least one listener is registered
+     */
+    boolean hasListeners() {
+        return !listeners.isEmpty();
+    }
+    
+    /**
+     * Publishes an event. Must only be called from the simulation thread.
+     * 
+     * @param type The event type
+     * @param step The step the event belongs to
+     * @param a The first event argument
+     * @param b The second event argument
+     * @param c The third event argument
+     */
+    void publish(int type, int step, int a, int b, int c) {
+        long sequence = published.get();
+        while (sequence - consumed.get() > mask) {
+            // Buffer full: wait for the consumer to free a slot
+            LockSupport.parkNanos(1_000);
+        }
+        
+        int slot = (int) sequence & mask;
+        types[slot] = type;
+        steps[slot] = step;
+        first[slot] = a;
+        second[slot] = b;
+        third[slot] = c;
+        
+        // Ordered store makes the slot contents visible before the new sequence
+        published.lazySet(sequence + 1);
+        if (idle) {
+            LockSupport.unpark(consumer);
+        }
+    }
+    
+    /**
+     * Gets the number of events published but not yet dispatched.
+     * 
+     * @return The backlog size
+     */
+    long getBacklog() {
+        return published.get() - consumed.get();
+    }
+    
+    /**
+     * Waits for every published event to be dispatched.
+     */
+    void drain() {
+        while (getBacklog() > 0 && consumer.isAlive()) {
+            LockSupport.unpark(consumer);
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+    
+    /**
+     * Dispatches the remaining events and stops the dispatch thread.
+     */
+    void close() {
+        drain();
+        running = false;
+        LockSupport.unpark(consumer);
+    }
+    
+    /**
+     * Dispatch loop run by the consumer thread.
+     */
+    private void consume() {
+        long sequence = consumed.get();
+        long parkNanos = IDLE_PARK_NANOS;
+        while (running) {
+            long available = published.get();
+            if (sequence == available) {
+                // Check again once the producer can see the flag; a wakeup still missed
+                // only delays dispatch by one park
+                idle = true;
+                if (published.get() == sequence) {
+                    LockSupport.parkNanos(this, parkNanos);
+                }
+                idle = false;
+                parkNanos = Math.min(parkNanos * 2, MAX_IDLE_PARK_NANOS);
+                continue;
+            }
+            parkNanos = IDLE_PARK_NANOS;
+            
+            while (sequence < available) {
+                int slot = (int) sequence & mask;
+                dispatch(types[slot], steps[slot], first[slot], second[slot], third[slot]);
+                consumed.lazySet(++sequence);
+            }
+        }
+    }
+    
+    /**
+     * Delivers one event to every listener, isolating listener failures from each other.
+     * 
+     * @param type The event type
+     * @param step The step the event belongs to
+     * @param a The first event argument
+     * @param b The second event argument
+     * @param c The third event argument
+     */
+    private void dispatch(int type, int step, int a, int b, int c) {
+        for (SimulationListener listener : listeners) {
+            try {
+                switch (type) {
+                    case STEP_COMPLETED:
+                        listener.onStepCompleted(step, a, b, c);
+                        break;
+                    case CELL_IGNITED:
+                        listener.onCellIgnited(step, a, b);
+                        break;
+                    case FIRE_EXTINGUISHED:
+                        listener.onFireExtinguished(step);
+                        break;
+                    case RUN_FINISHED:
+                        listener.onRunFinished(step);
+                        break;
+                    default:
+                        break;
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Simulation listener failed: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+}
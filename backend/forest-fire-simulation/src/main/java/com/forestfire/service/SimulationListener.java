@@ -0,0 +1,47 @@
+package com.forestfire.service;
+
+/**
+ * Receives simulation events published by a SimulationService.
+ * Events are delivered in order on a dedicated dispatch thread, never on the thread running the steps,
+ * so listeners may do slow work without holding up the simulation. All methods default to doing nothing.
+ */
+public interface SimulationListener {
+    
+    /**
+     * Called after each executed step.
+     * 
+     * @param step The step count after the step
+     * @param trees The number of trees
+     * @param fires The number of burning cells
+     * @param ashes The number of ash cells
+     */
+    default void onStepCompleted(int step, int trees, int fires, int ashes) {
+    }
+    
+    /**
+     * Called for each cell that caught fire during a step.
+     * 
+     * @param step The step in which the cell ignited
+     * @param row The row of the cell
+     * @param col The column of the cell
+     */
+    default void onCellIgnited(int step, int row, int col) {
+    }
+    
+    /**
+     * Called when the last burning cell goes out.
+     * In the continuous regrowth mode the run may continue and fire may start again.
+     * 
+     * @param step The step after which no cell is burning
+     */
+    default void onFireExtinguished(int step) {
+    }
+    
+    /**
+     * Called when the simulation stops running.
+     * 
+     * @param steps The total number of steps executed
+     */
+    default void onRunFinished(int steps) {
+    }
+}
@@ -0,0 +1,22 @@
+package com.forestfire.service;
+
+/**
+ * Receives timing measurements from the simulation engine.
+ * Keeps the core service independent of any particular metrics library.
+ */
+public interface SimulationMetrics {
+    
+    /**
+     * Metrics sink that discards all measurements.
+     */
+    SimulationMetrics NONE = (durationNanos, cellsProcessed) -> { };
+    
+    /**
+     * Records one executed step.
+     * 
+     * @param durationNanos The wall time of the step in nanoseconds
+     * @param cellsProcessed The number of cells the step visited: the burning frontier and the
+     *        cells it ignited, or the whole grid when regrowth scans it
+     */
+    void recordStep(long durationNanos, long cellsProcessed);
+}
@@ -2,20 +2,44 @@ package com.forestfire.service;
 
 import com.forestfire.model.Cell;
 import com.forestfire.model.Forest;
+import com.forestfire.model.ProbabilityMap;
+import com.forestfire.analysis.SpanningMonitor;
+import com.forestfire.analysis.StopCondition;
+import com.forestfire.config.FirePositions;
+import com.forestfire.config.IgnitionGenerator;
 import com.forestfire.config.SimulationConfig;
+import com.forestfire.jfr.StepEvent;
 
 import java.io.IOException;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Service class that manages the forest fire simulation.
  * Handles initialization, step execution, and simulation state.
  */
-public class SimulationService {
+public class SimulationService implements Simulation {
+    
+    private static final int EVENT_BUFFER_SIZE = 1 << 16;
     
     private Forest forest;
+    private Forest template;
     private SimulationConfig config;
     private boolean isRunning;
     private int stepCount;
+    private SimulationMetrics metrics = SimulationMetrics.NONE;
+    private SimulationEventBus eventBus;
+    private SpanningMonitor spanningMonitor;
+    private StopCondition stopCondition;
+    private Forest conditionForest;
+    private int conditionStep = -1;
+    private boolean conditionMet;
+    private boolean conditionRewindable;
+    private boolean atTemplate;
+    private boolean burnedOut;
+    private final Queue<Intervention> interventions = new ConcurrentLinkedQueue<>();
+    private long interventionBatches;
     
     /**
      * Creates a new simulation service with the specified configuration file path.
@@ -29,6 +53,16 @@ public class SimulationService {
         initialize();
     }
     
+    /**
+     * Creates a new simulation service with a configuration that is already loaded.
+     * 
+     * @param config The simulation configuration
+     */
+    public SimulationService(SimulationConfig config) {
+        this.config = config;
+        initialize();
+    }
+    
     /**
      * Creates a new simulation service with default configuration.
      * This constructor is provided for API compatibility.
@@ -39,23 +73,61 @@ public class SimulationService {
         initialize();
     }
     
+    /**
+     * Creates a copy of another simulation at its current step. The copy has its own configuration
+     * and template, so reconfiguring either simulation leaves the other and its resets unchanged.
+     * 
+     * @param source The simulation to copy
+     */
+    private SimulationService(SimulationService source) {
+        this.config = new SimulationConfig(source.config);
+        this.template = source.template.fork();
+        this.forest = source.forest.fork();
+        this.isRunning = source.isRunning;
+        this.stepCount = source.stepCount;
+        this.burnedOut = source.burnedOut;
+        this.metrics = source.metrics;
+    }
+    
     /**
      * Initializes the simulation with the loaded configuration.
+     * The initial state is kept as a template that reset() forks from.
      */
     private void initialize() {
         // Create a new forest with the configured dimensions and propagation probability
-        forest = new Forest(
+        Forest forest = new Forest(
             config.getForestHeight(),
             config.getForestWidth(),
             config.getFirePropagationProbability()
         );
         
+        // Apply the per-cell propagation probabilities, if configured
+        forest.setProbabilityMap(config.getPropagationMap());
+        
+        // Apply the neighbourhood, wind, regrowth mode and engine
+        forest.setNeighbourhood(config.getNeighbourhood());
+        forest.setWind(config.getWindSpeed(), config.getWindDirection());
+        forest.setRegrowth(config.getRegrowthProbability(), config.getLightningProbability());
+        forest.setEngine(config.getEngine());
+        forest.setRecordIgnitionSteps(config.isRecordIgnitionSteps());
+        forest.setKeyedDraws(config.isKeyedRandom());
+        
         // Set the initial fire positions
         forest.setInitialFirePositions(config.getInitialFirePositions());
+        FirePositions bulkPositions = config.getBulkFirePositions();
+        if (bulkPositions != null) {
+            forest.igniteAll(bulkPositions.getCoordinates(), bulkPositions.size());
+        }
+        IgnitionGenerator randomIgnitions = config.getRandomIgnitions();
+        if (randomIgnitions != null) {
+            FirePositions randomPositions = randomIgnitions.generate(config.getForestHeight(), config.getForestWidth());
+            forest.igniteAll(randomPositions.getCoordinates(), randomPositions.size());
+        }
         
-        // Reset simulation state
-        isRunning = true;
-        stepCount = 0;
+        template = forest;
+        spanningMonitor = null;
+        stopCondition = null;
+        reset();
     }
     
     /**
@@ -69,55 +141,455 @@ public class SimulationService {
      */
     public void updateConfiguration(int height, int width, double probability, String positions) 
             throws IllegalArgumentException {
-        // Update configuration
-        config.setForestHeight(height);
-        config.setForestWidth(width);
-        config.setFirePropagationProbability(probability);
-        config.setInitialFirePositions(positions);
+        updateConfiguration(height, width, probability, FirePositions.parse(positions).toArray());
+    }
+    
+    /**
+     * Updates the simulation configuration and reinitializes the simulation.
+     * A configured propagation map must match the new size. Bulk and random ignitions are kept;
+     * those outside a smaller forest are ignored. If anything fails, the configuration and the
+     * simulation are left as they were.
+     * 
+     * @param height The new forest height
+     * @param width The new forest width
+     * @param probability The new fire propagation probability
+     * @param positions The new initial fire positions, each [row, col]
+     * @throws IllegalArgumentException If any parameter is invalid, or the size differs from the propagation map
+     */
+    public void updateConfiguration(int height, int width, double probability, int[][] positions)
+            throws IllegalArgumentException {
+        ProbabilityMap map = config.getPropagationMap();
+        if (map != null && (map.getHeight() != height || map.getWidth() != width)) {
+            throw new IllegalArgumentException("The propagation map is " + map.getHeight() + "x" + map.getWidth()
+                + " and cannot be used with a " + height + "x" + width + " forest");
+        }
         
-        // Reinitialize the simulation with the new configuration
-        initialize();
+        int oldHeight = config.getForestHeight();
+        int oldWidth = config.getForestWidth();
+        double oldProbability = config.getFirePropagationProbability();
+        int[][] oldPositions = config.getInitialFirePositions();
+        try {
+            config.setForestHeight(height);
+            config.setForestWidth(width);
+            config.setFirePropagationProbability(probability);
+            config.setInitialFirePositions(positions);
+            
+            initialize();
+        } catch (RuntimeException e) {
+            // The old forest is still live, so keep the configuration it was built from
+            config.setForestHeight(oldHeight);
+            config.setForestWidth(oldWidth);
+            config.setFirePropagationProbability(oldProbability);
+            config.setInitialFirePositions(oldPositions);
+            throw e;
+        }
+    }
+    
+    /**
+     * Sets additional trees on fire in the current simulation, without reinitializing it.
+     * A finished simulation starts running again if any tree ignites.
+     * 
+     * @param positions The positions to ignite
+     * @return The number of trees set on fire
+     */
+    public int addIgnitions(FirePositions positions) {
+        int ignited = forest.igniteAll(positions.getCoordinates(), positions.size());
+        if (ignited > 0) {
+            isRunning = true;
+            atTemplate = false;
+            conditionStep = -1;
+        }
+        return ignited;
+    }
+    
+    /**
+     * Queues a change to the forest, such as a firebreak, to be applied with any others
+     * before the next step. Can be called from any thread, also while a run is in progress.
+     * 
+     * @param intervention The intervention
+     */
+    public void submitIntervention(Intervention intervention) {
+        interventions.add(intervention);
+    }
+    
+    /**
+     * Checks if interventions are waiting for the next step.
+     * 
+     * @return true if any intervention is queued
+     */
+    public boolean hasPendingInterventions() {
+        return !interventions.isEmpty();
+    }
+    
+    /**
+     * Applies the queued interventions now, in the order they were submitted, without waiting
+     * for the next step. The cells are changed in place; the grid is not rebuilt. The simulation
+     * ends if no cell is left burning, and starts running again if any tree was set on fire.
+     * 
+     * @return The number of cells changed
+     */
+    public int applyInterventions() {
+        int changed = 0;
+        Intervention intervention;
+        while ((intervention = interventions.poll()) != null) {
+            changed += intervention.applyTo(forest);
+        }
+        if (changed > 0) {
+            isRunning = forest.hasFireCells() || forest.isContinuous();
+            atTemplate = false;
+            conditionStep = -1;
+            interventionBatches++;
+        }
+        return changed;
+    }
+    
+    /**
+     * Changes the propagation probability of the simulation and its initial template without
+     * reinitializing them, so the grid buffers are kept. Takes effect from the next step.
+     * 
+     * @param probability The probability of fire spreading to adjacent cells
+     * @throws IllegalArgumentException If the probability is not between 0 and 1
+     */
+    public void updatePropagationProbability(double probability) throws IllegalArgumentException {
+        config.setFirePropagationProbability(probability);
+        forest.setPropagationProbability(probability);
+        template.setPropagationProbability(probability);
     }
     
     /**
-     * Executes a single step of the simulation.
+     * Changes the wind of the running simulation without reinitializing it.
+     * 
+     * @param windSpeed The wind speed in m/s
+     * @param windDirection The direction the wind blows towards, in degrees clockwise from north
+     * @throws IllegalArgumentException If the wind speed is negative
+     */
+    public void updateWind(double windSpeed, double windDirection) throws IllegalArgumentException {
+        config.setWind(windSpeed, windDirection);
+        forest.setWind(windSpeed, windDirection);
+        template.setWind(windSpeed, windDirection);
+    }
+    
+    /**
+     * Executes a single step of the simulation, after applying any queued interventions.
      * 
      * @return true if the simulation is still running, false if it has ended
      */
     public boolean executeStep() {
+        applyInterventions();
         if (!isRunning) {
             return false;
         }
         
         // Simulate one step of fire propagation
+        boolean hadFireCells = forest.hasFireCells();
+        int burningCells = forest.getFireCount();
+        StepEvent event = new StepEvent();
+        event.begin();
+        long start = System.nanoTime();
         boolean hasFireCells = forest.simulateStep();
+        long gridCells = (long) forest.getHeight() * forest.getWidth();
+        // A step visits the cells that were burning and those they ignited; regrowth scans the whole grid
+        long visitedCells = forest.isContinuous() ? gridCells : (long) burningCells + forest.getIgnitedCount();
+        metrics.recordStep(System.nanoTime() - start, visitedCells);
+        event.end();
+        if (event.shouldCommit()) {
+            event.step = stepCount + 1;
+            event.gridCells = gridCells;
+            event.burningCells = burningCells;
+            event.commit();
+        }
         
         // Increment step count
         stepCount++;
+        atTemplate = false;
+        
+        // Update running state; the continuous regrowth mode never runs out of fire for good
+        isRunning = hasFireCells || forest.isContinuous();
         
-        // Update running state
-        isRunning = hasFireCells;
+        if (eventBus != null && eventBus.hasListeners()) {
+            publishStepEvents(hadFireCells && !hasFireCells);
+        }
         
         return isRunning;
     }
     
+    /**
+     * Publishes the events of the step that just executed to the listeners.
+     * 
+     * @param extinguished Whether the last burning cell went out in this step
+     */
+    private void publishStepEvents(boolean extinguished) {
+        int[] ignited = forest.getIgnitedCells();
+        int ignitedCount = forest.getIgnitedCount();
+        int width = forest.getWidth();
+        for (int k = 0; k < ignitedCount; k++) {
+            int index = ignited[k];
+            int row = index / width;
+            eventBus.publish(SimulationEventBus.CELL_IGNITED, stepCount, row, index - row * width, 0);
+        }
+        
+        eventBus.publish(SimulationEventBus.STEP_COMPLETED, stepCount,
+            forest.getTreeCount(), forest.getFireCount(), forest.getAshCount());
+        
+        if (extinguished) {
+            eventBus.publish(SimulationEventBus.FIRE_EXTINGUISHED, stepCount, 0, 0, 0);
+        }
+        if (!isRunning) {
+            eventBus.publish(SimulationEventBus.RUN_FINISHED, stepCount, 0, 0, 0);
+        }
+    }
+    
+    /**
+     * Runs up to the given number of steps, stopping early if the simulation ends.
+     * 
+     * @param steps The maximum number of steps to execute
+     * @return The number of steps executed
+     */
+    public int runSteps(int steps) {
+        return runSteps(steps, null);
+    }
+    
+    /**
+     * Runs up to the given number of steps, recording the cell counts after each one.
+     * 
+     * @param steps The maximum number of steps to execute
+     * @param summary The summary to record into, or null to skip recording
+     * @return The number of steps executed
+     */
+    public int runSteps(int steps, StepSummary summary) {
+        applyInterventions();
+        int executed = 0;
+        while (executed < steps && isRunning) {
+            executeStep();
+            executed++;
+            if (summary != null) {
+                summary.record(forest.getTreeCount(), forest.getFireCount(), forest.getAshCount());
+            }
+        }
+        return executed;
+    }
+    
     /**
      * Runs the simulation until completion (no more fire cells).
      * 
      * @return The number of steps executed
+     * @throws IllegalStateException If the simulation runs in the continuous regrowth mode, which never completes
      */
-    public int runToCompletion() {
+    public int runToCompletion() throws IllegalStateException {
+        return runToCompletion(null);
+    }
+    
+    /**
+     * Runs the simulation until completion, recording the cell counts after each step.
+     * 
+     * @param summary The summary to record into, or null to skip recording
+     * @return The number of steps executed
+     * @throws IllegalStateException If the simulation runs in the continuous regrowth mode, which never completes
+     */
+    public int runToCompletion(StepSummary summary) throws IllegalStateException {
+        if (forest.isContinuous()) {
+            throw new IllegalStateException("A continuous regrowth simulation never completes; use runSteps instead");
+        }
+        applyInterventions();
+        
+        // With p = 0 or p = 1 the outcome is fixed and can be computed in one pass,
+        // unless listeners need to see every step
+        boolean hasListeners = eventBus != null && eventBus.hasListeners();
+        if (isRunning && !hasListeners && forest.isDeterministic()) {
+            int startStep = stepCount;
+            int trees = forest.getTreeCount();
+            int ashes = forest.getAshCount() + forest.getFireCount();
+            stepCount += forest.burnOut(stepCount);
+            isRunning = false;
+            burnedOut = true;
+            if (summary != null) {
+                recordBurnOut(summary, startStep, trees, ashes);
+            }
+            return stepCount;
+        }
+        
         while (isRunning) {
             executeStep();
+            if (summary != null) {
+                summary.record(forest.getTreeCount(), forest.getFireCount(), forest.getAshCount());
+            }
         }
         return stepCount;
     }
     
     /**
-     * Resets the simulation to its initial state.
+     * Checks if the run was completed analytically by runToCompletion() in a single burn-out pass
+     * instead of step by step, so that its wall time says nothing about the step rate.
+     * 
+     * @return true if the run ended in a burn-out pass
+     */
+    public boolean isBurnedOut() {
+        return burnedOut;
+    }
+    
+    /**
+     * Runs until a stop condition holds, the simulation ends or a step limit is reached,
+     * recording the cell counts after each step. The condition is updated from the cells each
+     * step ignites; the grid is only read when the condition is new or the forest changed outside
+     * this method since the last call. A condition first started right after a reset is rewound
+     * by later resets instead of being started again.
+     * 
+     * @param condition The condition to stop at
+     * @param maxSteps The maximum number of steps to execute, or -1 for no limit
+     * @param summary The summary to record into, or null to skip recording
+     * @return The number of steps executed
+     * @throws IllegalStateException If there is no step limit in the continuous regrowth mode
+     */
+    public int runUntil(StopCondition condition, int maxSteps, StepSummary summary) throws IllegalStateException {
+        if (maxSteps < 0 && forest.isContinuous()) {
+            throw new IllegalStateException("A continuous regrowth simulation needs a step limit");
+        }
+        applyInterventions();
+        if (condition != stopCondition || conditionForest != forest || conditionStep != stepCount) {
+            startCondition(condition);
+        }
+        
+        int executed = 0;
+        while (isRunning && !conditionMet && (maxSteps < 0 || executed < maxSteps)) {
+            // Interventions applied before the step changed cells the condition has not seen
+            long batches = interventionBatches;
+            executeStep();
+            executed++;
+            if (interventionBatches == batches) {
+                conditionMet = condition.update(forest);
+            } else {
+                startCondition(condition);
+            }
+            if (summary != null) {
+                summary.record(forest.getTreeCount(), forest.getFireCount(), forest.getAshCount());
+            }
+        }
+        conditionStep = stepCount;
+        return executed;
+    }
+    
+    /**
+     * Starts evaluating a stop condition from the current state of the forest.
+     * 
+     * @param condition The condition
+     */
+    private void startCondition(StopCondition condition) {
+        stopCondition = condition;
+        conditionMet = condition.start(forest);
+        conditionForest = forest;
+        conditionRewindable = atTemplate;
+    }
+    
+    /**
+     * Checks if the condition of the last runUntil() call held when it returned, and the forest
+     * has not changed since.
+     * 
+     * @return true if the stop condition holds
+     */
+    public boolean isConditionMet() {
+        return stopCondition != null && conditionForest == forest && conditionStep == stepCount && conditionMet;
+    }
+    
+    /**
+     * Runs until the burned area first connects two opposite edges of the grid, the simulation
+     * ends or a step limit is reached, recording the cell counts after each step.
+     * 
+     * @param maxSteps The maximum number of steps to execute, or -1 for no limit
+     * @param summary The summary to record into, or null to skip recording
+     * @return The number of steps executed
+     * @throws IllegalStateException If there is no step limit in the continuous regrowth mode
+     * @see #runUntil(StopCondition, int, StepSummary)
+     */
+    public int runUntilSpanning(int maxSteps, StepSummary summary) throws IllegalStateException {
+        if (spanningMonitor == null) {
+            spanningMonitor = new SpanningMonitor(config.getNeighbourhood());
+        }
+        return runUntil(spanningMonitor, maxSteps, summary);
+    }
+    
+    /**
+     * Checks if the burned area connected two opposite edges by the end of the last runUntilSpanning() call.
+     * 
+     * @return true if the burned area spanned the grid
+     */
+    public boolean isSpanning() {
+        return stopCondition == spanningMonitor && isConditionMet();
+    }
+    
+    /**
+     * Reconstructs the per-step counts of an analytic burn-out from the ignition steps.
+     * Every cell burns for exactly one step, so the cells on fire after step k are those ignited at step k.
+     * 
+     * @param summary The summary to record into
+     * @param startStep The step count before the burn-out
+     * @param trees The number of trees before the burn-out
+     * @param ashes The number of ash cells after the first step: existing ash plus the cells burning before the burn-out
+     */
+    private void recordBurnOut(StepSummary summary, int startStep, int trees, int ashes) {
+        int steps = stepCount - startStep;
+        int[] ignitedAt = new int[steps + 1];
+        for (int ignitionStep : forest.getIgnitionSteps()) {
+            if (ignitionStep > startStep) {
+                ignitedAt[ignitionStep - startStep]++;
+            }
+        }
+        for (int k = 1; k <= steps; k++) {
+            trees -= ignitedAt[k];
+            summary.record(trees, ignitedAt[k], ashes);
+            ashes += ignitedAt[k];
+        }
+    }
+    
+    /**
+     * Resets the simulation to its initial state, dropping any queued interventions.
+     * The forest is forked from the initial template, so only the tiles a run changes are ever copied,
+     * and reseeded at random, so that each run draws its own spread from the current probability and wind.
      */
     public void reset() {
-        initialize();
+        restart(new Random().nextLong());
+    }
+    
+    /**
+     * Resets the simulation to its initial state with seeded random draws,
+     * so that replica runs can be reproduced.
+     * 
+     * @param seed The seed for the fire spread
+     */
+    public void reset(long seed) {
+        restart(seed);
+    }
+    
+    /**
+     * Forks the forest from the template and seeds it. The template has already drawn the
+     * spread of its first fires with the event-driven engine, so the seed makes the fork draw
+     * them again.
+     * 
+     * @param seed The seed for the fire spread
+     */
+    private void restart(long seed) {
+        interventions.clear();
+        forest = template.fork();
+        forest.setSeed(seed);
+        isRunning = true;
+        stepCount = 0;
+        burnedOut = false;
+        atTemplate = true;
+        if (stopCondition != null && conditionRewindable) {
+            conditionMet = stopCondition.rewind(forest);
+            conditionForest = forest;
+            conditionStep = 0;
+        }
+    }
+    
+    /**
+     * Creates an independent copy of the simulation at its current step, for example to
+     * explore what-if branches from a mid-run state. The copy gets its own copy of the configuration,
+     * shares the unchanged parts of the grid copy-on-write, reports to the same metrics and has no listeners.
+     * 
+     * @return The forked simulation
+     */
+    public SimulationService fork() {
+        return new SimulationService(this);
     }
     
     /**
@@ -158,6 +630,108 @@ public class SimulationService {
         return isRunning;
     }
     
+    @Override
+    public int getHeight() {
+        return forest.getHeight();
+    }
+    
+    @Override
+    public int getWidth() {
+        return forest.getWidth();
+    }
+    
+    @Override
+    public long getTreeCount() {
+        return forest.getTreeCount();
+    }
+    
+    @Override
+    public long getFireCount() {
+        return forest.getFireCount();
+    }
+    
+    @Override
+    public long getAshCount() {
+        return forest.getAshCount();
+    }
+    
+    @Override
+    public boolean isContinuous() {
+        return forest.isContinuous();
+    }
+    
+    /**
+     * Estimates the heap memory held by the forest and its initial template.
+     * 
+     * @return The approximate size in bytes
+     */
+    public long getMemoryBytes() {
+        // The template is never written, so all its state tiles are shared and counted here once
+        long templateStates = (long) template.getHeight() * template.getWidth();
+        return forest.getMemoryBytes() + template.getMemoryBytes() + templateStates;
+    }
+    
+    /**
+     * Sets the sink that receives step timings.
+     * 
+     * @param metrics The metrics sink, or SimulationMetrics.NONE to discard timings
+     */
+    public void setMetrics(SimulationMetrics metrics) {
+        this.metrics = metrics;
+    }
+    
+    /**
+     * Registers a listener for simulation events.
+     * The dispatch thread is started with the first listener.
+     * 
+     * @param listener The listener to add
+     */
+    public void addListener(SimulationListener listener) {
+        if (eventBus == null) {
+            eventBus = new SimulationEventBus(EVENT_BUFFER_SIZE);
+        }
+        eventBus.addListener(listener);
+    }
+    
+    /**
+     * Unregisters a listener.
+     * 
+     * @param listener The listener to remove
+     */
+    public void removeListener(SimulationListener listener) {
+        if (eventBus != null) {
+            eventBus.removeListener(listener);
+        }
+    }
+    
+    /**
+     * Waits until every published event has been delivered to the listeners.
+     */
+    public void awaitEvents() {
+        if (eventBus != null) {
+            eventBus.drain();
+        }
+    }
+    
+    /**
+     * Delivers any pending events and stops the event dispatch thread.
+     */
+    public void close() {
+        if (eventBus != null) {
+            eventBus.close();
+            eventBus = null;
+        }
+    }
+    
+    /**
+     * Gets the number of events waiting to be delivered to listeners.
+     * 
+     * @return The event backlog
+     */
+    public long getEventBacklog() {
+        return eventBus == null ? 0 : eventBus.getBacklog();
+    }
+    
     /**
      * Gets the simulation configuration.
      * 
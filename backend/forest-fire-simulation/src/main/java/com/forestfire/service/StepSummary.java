@@ -0,0 +1,70 @@
+package com.forestfire.service;
+
+import java.util.Arrays;
+
+/**
+ * Per-step cell counts recorded while running several steps at once.
+ * Counts are kept in growable primitive arrays so recording a step does not allocate.
+ */
+public class StepSummary {
+    
+    private int[] treeCounts = new int[64];
+    private int[] fireCounts = new int[64];
+    private int[] ashCounts = new int[64];
+    private int size;
+    
+    /**
+     * Records the cell counts after one step.
+     * 
+     * @param trees The number of trees
+     * @param fires The number of burning cells
+     * @param ashes The number of ash cells
+     */
+    public void record(int trees, int fires, int ashes) {
+        if (size == treeCounts.length) {
+            treeCounts = Arrays.copyOf(treeCounts, size * 2);
+            fireCounts = Arrays.copyOf(fireCounts, size * 2);
+            ashCounts = Arrays.copyOf(ashCounts, size * 2);
+        }
+        treeCounts[size] = trees;
+        fireCounts[size] = fires;
+        ashCounts[size] = ashes;
+        size++;
+    }
+    
+    /**
+     * Gets the number of recorded steps.
+     * 
+     * @return The number of steps
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Gets the number of trees after each recorded step.
+     * 
+     * @return The tree counts, one per step
+     */
+    public int[] getTreeCounts() {
+        return Arrays.copyOf(treeCounts, size);
+    }
+    
+    /**
+     * Gets the number of burning cells after each recorded step.
+     * 
+     * @return The fire counts, one per step
+     */
+    public int[] getFireCounts() {
+        return Arrays.copyOf(fireCounts, size);
+    }
+    
+    /**
+     * Gets the number of ash cells after each recorded step.
+     * 
+     * @return The ash counts, one per step
+     */
+    public int[] getAshCounts() {
+        return Arrays.copyOf(ashCounts, size);
+    }
+}